@@ -57,14 +57,16 @@ public class DefaultTestLifecycle implements TestLifecycle {
    * @param method the test method about to be run
    */
   public void beforeTest(final Method method) {
-    if (Robolectric.application instanceof TestLifecycleApplication) {
-      ((TestLifecycleApplication) Robolectric.application).beforeTest(method);
+    Application application = Robolectric.getApplicationIfSetUp();
+    if (application instanceof TestLifecycleApplication) {
+      ((TestLifecycleApplication) application).beforeTest(method);
     }
   }
 
   public void prepareTest(final Object test) {
-    if (Robolectric.application instanceof TestLifecycleApplication) {
-      ((TestLifecycleApplication) Robolectric.application).prepareTest(test);
+    Application application = Robolectric.getApplicationIfSetUp();
+    if (application instanceof TestLifecycleApplication) {
+      ((TestLifecycleApplication) application).prepareTest(test);
     }
   }
 
@@ -74,8 +76,9 @@ public class DefaultTestLifecycle implements TestLifecycle {
    * @param method the test method that just ran.
    */
   public void afterTest(final Method method) {
-    if (Robolectric.application instanceof TestLifecycleApplication) {
-      ((TestLifecycleApplication) Robolectric.application).afterTest(method);
+    Application application = Robolectric.getApplicationIfSetUp();
+    if (application instanceof TestLifecycleApplication) {
+      ((TestLifecycleApplication) application).afterTest(method);
     }
   }
 
@@ -13,9 +13,64 @@ import java.util.Hashtable;
 import java.util.Map;
 
 public class MavenCentral {
+  /**
+   * If set to {@code true}, dependencies which aren't in the {@link ResolvedArtifactCache} fail to resolve, rather than
+   * being looked for in Maven repositories.
+   */
+  public static final String OFFLINE_PROPERTY = "robolectric.offline";
+
   private final Project project = new Project();
+  private final ResolvedArtifactCache resolvedArtifactCache;
+  private final Map<String, Map<String, String>> resolvedPaths = new HashMap<String, Map<String, String>>();
+
+  public MavenCentral() {
+    this(ResolvedArtifactCache.fromSystemProperties());
+  }
+
+  /**
+   * @param resolvedArtifactCache where to remember resolved artifacts between JVMs, or null
+   */
+  public MavenCentral(ResolvedArtifactCache resolvedArtifactCache) {
+    this.resolvedArtifactCache = resolvedArtifactCache;
+  }
 
   public Map<String, URL> getLocalArtifactUrls(RobolectricTestRunner robolectricTestRunner, Dependency... dependencies) {
+    String request = describeRequest(robolectricTestRunner, dependencies);
+
+    Map<String, String> paths;
+    synchronized (this) {
+      paths = resolvedPaths.get(request);
+      if (paths == null && resolvedArtifactCache != null) {
+        paths = resolvedArtifactCache.get(request);
+      }
+
+      if (paths == null) {
+        if (Boolean.getBoolean(OFFLINE_PROPERTY)) {
+          throw new RuntimeException("no resolved artifacts cached for " + request + " and " + OFFLINE_PROPERTY
+              + " is set; run once online with " + ResolvedArtifactCache.CACHE_DIR_PROPERTY + " set");
+        }
+
+        paths = resolve(robolectricTestRunner, dependencies);
+        if (resolvedArtifactCache != null) {
+          resolvedArtifactCache.put(request, paths);
+        }
+      }
+      resolvedPaths.put(request, paths);
+    }
+
+    Map<String, URL> urls = new HashMap<String, URL>();
+    for (Map.Entry<String, String> entry : paths.entrySet()) {
+      try {
+        urls.put(entry.getKey(), Util.url(entry.getValue()));
+      } catch (MalformedURLException e) {
+        throw new RuntimeException(e);
+      }
+
+    }
+    return urls;
+  }
+
+  private Map<String, String> resolve(RobolectricTestRunner robolectricTestRunner, Dependency... dependencies) {
     DependenciesTask dependenciesTask = new DependenciesTask();
     if (robolectricTestRunner != null) {
       robolectricTestRunner.configureMaven(dependenciesTask);
@@ -32,16 +87,24 @@ public class MavenCentral {
 
     @SuppressWarnings("unchecked")
     Hashtable<String, String> artifacts = project.getProperties();
-    Map<String, URL> urls = new HashMap<String, URL>();
-    for (Map.Entry<String, String> entry : artifacts.entrySet()) {
-      try {
-        urls.put(entry.getKey(), Util.url(entry.getValue()));
-      } catch (MalformedURLException e) {
-        throw new RuntimeException(e);
-      }
+    return new HashMap<String, String>(artifacts);
+  }
 
+  /**
+   * The class implementing the runner's {@link RobolectricTestRunner#configureMaven(DependenciesTask)} is part of the
+   * request, since it may configure Maven differently; runners which don't override it share requests with
+   * {@code RobolectricTestRunner}, whatever their class.
+   */
+  static String describeRequest(RobolectricTestRunner robolectricTestRunner, Dependency... dependencies) {
+    Class<?> mavenConfigurationClass = robolectricTestRunner == null
+        ? RobolectricTestRunner.class : robolectricTestRunner.getMavenConfigurationClass();
+    StringBuilder buf = new StringBuilder(mavenConfigurationClass.getName());
+    for (Dependency dependency : dependencies) {
+      buf.append(' ').append(dependency.getGroupId()).append(':').append(dependency.getArtifactId())
+          .append(':').append(dependency.getVersion()).append(':').append(dependency.getType())
+          .append(':').append(dependency.getClassifier());
     }
-    return urls;
+    return buf.toString();
   }
 
   public URL getLocalArtifactUrl(RobolectricTestRunner robolectricTestRunner, Dependency dependency) {
@@ -0,0 +1,139 @@
+package org.robolectric;
+
+import org.robolectric.util.AtomicFiles;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Remembers where {@link MavenCentral} found the artifacts for each set of dependencies, so later JVMs needn't run
+ * Maven to find them again.
+ * <p/>
+ * Each entry records the size, modification time and SHA-1 checksum of every artifact. An artifact whose size or
+ * modification time has changed is checksummed again, and if that doesn't match either, the entry is ignored and the
+ * dependencies are resolved afresh.
+ * <p/>
+ * Enable by setting the {@code robolectric.resolvedArtifactCache} system property to a directory.
+ */
+public class ResolvedArtifactCache {
+  public static final String CACHE_DIR_PROPERTY = "robolectric.resolvedArtifactCache";
+
+  private static final int FORMAT_VERSION = 1;
+
+  private final File cacheDir;
+
+  public ResolvedArtifactCache(File cacheDir) {
+    this.cacheDir = cacheDir;
+  }
+
+  /**
+   * @return a cache in the directory named by the {@code robolectric.resolvedArtifactCache} system property, or null
+   *     if it isn't set
+   */
+  public static ResolvedArtifactCache fromSystemProperties() {
+    String cacheDirName = System.getProperty(CACHE_DIR_PROPERTY);
+    if (cacheDirName == null || cacheDirName.isEmpty()) return null;
+
+    return new ResolvedArtifactCache(new File(cacheDirName));
+  }
+
+  /**
+   * @return the paths of the artifacts resolved for {@code request}, keyed by artifact, or null if there's no entry
+   *     or any of its artifacts has changed
+   */
+  public Map<String, String> get(String request) {
+    File file = fileFor(request);
+    if (!file.exists()) return null;
+
+    Properties properties = new Properties();
+    try {
+      InputStream in = new FileInputStream(file);
+      try {
+        properties.load(in);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      System.out.println("[WARN] couldn't read " + file + ": " + e);
+      return null;
+    }
+
+    if (!String.valueOf(FORMAT_VERSION).equals(properties.getProperty("formatVersion"))
+        || !request.equals(properties.getProperty("request"))) {
+      return null;
+    }
+
+    Map<String, String> paths = new HashMap<String, String>();
+    boolean statsChanged = false;
+    int artifactCount = Integer.parseInt(properties.getProperty("artifactCount", "0"));
+    for (int i = 0; i < artifactCount; i++) {
+      String prefix = "artifact." + i + ".";
+      String path = properties.getProperty(prefix + "path");
+      File artifactFile = new File(path);
+      if (!artifactFile.isFile()) return null;
+
+      if (!String.valueOf(artifactFile.length()).equals(properties.getProperty(prefix + "size"))
+          || !String.valueOf(artifactFile.lastModified()).equals(properties.getProperty(prefix + "lastModified"))) {
+        if (!sha1(artifactFile).equals(properties.getProperty(prefix + "sha1"))) {
+          System.out.println("[INFO] " + path + " has changed; resolving " + request + " again");
+          return null;
+        }
+        statsChanged = true;
+      }
+      paths.put(properties.getProperty(prefix + "key"), path);
+    }
+
+    if (statsChanged) {
+      put(request, paths); // so we needn't checksum them next time
+    }
+    return paths;
+  }
+
+  public void put(String request, Map<String, String> paths) {
+    final Properties properties = new Properties();
+    properties.setProperty("formatVersion", String.valueOf(FORMAT_VERSION));
+    properties.setProperty("request", request);
+    properties.setProperty("artifactCount", String.valueOf(paths.size()));
+    int i = 0;
+    for (Map.Entry<String, String> entry : paths.entrySet()) {
+      File artifactFile = new File(entry.getValue());
+      if (!artifactFile.isFile()) return; // not something we can validate later
+
+      String prefix = "artifact." + i++ + ".";
+      properties.setProperty(prefix + "key", entry.getKey());
+      properties.setProperty(prefix + "path", entry.getValue());
+      properties.setProperty(prefix + "size", String.valueOf(artifactFile.length()));
+      properties.setProperty(prefix + "lastModified", String.valueOf(artifactFile.lastModified()));
+      properties.setProperty(prefix + "sha1", sha1(artifactFile));
+    }
+
+    File file = fileFor(request);
+    try {
+      AtomicFiles.write(file, new AtomicFiles.Writer() {
+        @Override public void writeTo(OutputStream out) throws IOException {
+          properties.store(out, null);
+        }
+      });
+    } catch (IOException e) {
+      System.out.println("[WARN] couldn't write " + file + ": " + e);
+    }
+  }
+
+  private File fileFor(String request) {
+    return new File(cacheDir, AtomicFiles.sha1(request.getBytes()) + ".properties");
+  }
+
+  private static String sha1(File file) {
+    try {
+      return AtomicFiles.sha1(file);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -354,6 +354,7 @@ public class Robolectric {
   public static Application application;
   public static RobolectricPackageManager packageManager;
   public static Object activityThread;
+  private static Runnable deferredApplicationSetUp;
 
   public static <T> T newInstanceOf(Class<T> clazz) {
     return RobolectricInternals.newInstanceOf(clazz);
@@ -1074,7 +1075,7 @@ public class Robolectric {
 
   @SuppressWarnings({"unchecked"})
   public static <P, R> P shadowOf_(R instance) {
-    return (P) getShadowWrangler().shadowOf(instance);
+    return (P) ShadowWrangler.shadowOf(instance);
   }
 
   /**
@@ -1306,7 +1307,40 @@ public class Robolectric {
   }
 
   public static ShadowApplication getShadowApplication() {
-    return Robolectric.application == null ? null : shadowOf(Robolectric.application);
+    Application application = getApplication();
+    return application == null ? null : shadowOf(application);
+  }
+
+  /**
+   * @return the application, first setting it up if that was deferred.
+   * <p/>
+   * If the {@code robolectric.lazyApplication} system property is {@code true}, tests' applications are only set up
+   * when they're first asked for, so tests which never touch them run faster. Reads of {@link #application} from
+   * anywhere but this class are redirected here, as are calls to {@link #getShadowApplication()} and
+   * {@code ActivityThread.currentActivityThread()}.
+   */
+  public static Application getApplication() {
+    Runnable applicationSetUp = deferredApplicationSetUp;
+    if (applicationSetUp != null) {
+      deferredApplicationSetUp = null;
+      applicationSetUp.run();
+    }
+    return application;
+  }
+
+  /**
+   * @return the application, or null if it hasn't been set up, without setting it up
+   */
+  public static Application getApplicationIfSetUp() {
+    return application;
+  }
+
+  public static void deferApplicationSetUp(Runnable applicationSetUp) {
+    deferredApplicationSetUp = applicationSetUp;
+  }
+
+  public static boolean isApplicationSetUpDeferred() {
+    return deferredApplicationSetUp != null;
   }
 
   public static void setDisplayMetricsDensity(float densityMultiplier) {
@@ -1384,6 +1418,7 @@ public class Robolectric {
 
   public static void reset() {
     Robolectric.application = null;
+    deferredApplicationSetUp = null;
     Robolectric.packageManager = null;
     Robolectric.activityThread = null;
     ShadowAccountManager.reset();
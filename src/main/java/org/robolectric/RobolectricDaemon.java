@@ -0,0 +1,454 @@
+package org.robolectric;
+
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.robolectric.util.AtomicFiles;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A long-lived process which runs tests for {@link RobolectricDaemonRunner}, so they don't each have to start a JVM,
+ * resolve the SDK jars, instrument the SDK classes and load the system resources all over again.
+ * <p/>
+ * Usage: {@code RobolectricDaemon [<port>]}, run with the same classpath as the tests. The port defaults to the
+ * {@code robolectric.daemonPort} system property, or 7357; only connections from this machine are accepted.
+ * <p/>
+ * Clients must send the token the daemon writes to {@code ~/.robolectric/daemon-<port>.token} (or the file named by the
+ * {@code robolectric.daemonTokenFile} system property), which only the daemon's owner may read, and may only ask for
+ * test classes in the daemon's classpath directories.
+ * <p/>
+ * Test classes are run one at a time, in the order they're asked for. Test classes on the classpath are loaded afresh
+ * whenever any class in a classpath directory changes; the environments are discarded then too, as they'll have loaded
+ * the old classes. Robolectric itself, and anything in a jar, is loaded only once, so restart the daemon if they
+ * change. Output from the tests goes to the daemon's console.
+ */
+public class RobolectricDaemon {
+  public static final String PORT_PROPERTY = "robolectric.daemonPort";
+  public static final int DEFAULT_PORT = 7357;
+  public static final String TOKEN_FILE_PROPERTY = "robolectric.daemonTokenFile";
+
+  static final String STARTED = "started";
+  static final String FINISHED = "finished";
+  static final String FAILED = "failed";
+  static final String ASSUMPTION_FAILED = "assumptionFailed";
+  static final String IGNORED = "ignored";
+  static final String DONE = "done";
+  static final String REJECTED = "rejected";
+
+  private static final int MAX_TEST_COUNT = 100000;
+
+  private static final ThreadLocal<Boolean> runningTests = new ThreadLocal<Boolean>();
+
+  private final ServerSocket serverSocket;
+  private final List<File> testClassDirectories;
+  private final File tokenFile;
+  private final byte[] token;
+  private ClassLoader testClassLoader;
+  private ClassDirectoriesState testClassesState;
+  private int requestCount;
+
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : configuredPort();
+    RobolectricDaemon daemon = new RobolectricDaemon(port);
+    System.out.println("[INFO] Robolectric daemon listening on port " + daemon.getPort());
+    daemon.serve();
+  }
+
+  static int configuredPort() {
+    return Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT);
+  }
+
+  static File tokenFileFor(int port) {
+    String tokenFileName = System.getProperty(TOKEN_FILE_PROPERTY);
+    if (tokenFileName != null && !tokenFileName.isEmpty()) return new File(tokenFileName);
+    return new File(new File(System.getProperty("user.home"), ".robolectric"), "daemon-" + port + ".token");
+  }
+
+  /**
+   * @return the token the daemon listening on the port wrote, or null if there isn't one this user can read
+   */
+  static String readToken(int port) {
+    File tokenFile = tokenFileFor(port);
+    try {
+      InputStream in = new FileInputStream(tokenFile);
+      try {
+        byte[] bytes = new byte[(int) tokenFile.length()];
+        new DataInputStream(in).readFully(bytes);
+        return new String(bytes, "UTF-8");
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return true if the current thread is running tests for a client, rather than being one
+   */
+  static boolean isRunningTests() {
+    return runningTests.get() != null;
+  }
+
+  /**
+   * @param port the port to listen on, or 0 for any free one
+   */
+  public RobolectricDaemon(int port) throws IOException {
+    serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+    testClassDirectories = findTestClassDirectories();
+
+    byte[] randomBytes = new byte[16];
+    new SecureRandom().nextBytes(randomBytes);
+    token = AtomicFiles.hex(randomBytes).getBytes("UTF-8");
+    tokenFile = tokenFileFor(getPort());
+    try {
+      writeOwnerOnly(tokenFile, token);
+    } catch (IOException e) {
+      serverSocket.close();
+      throw e;
+    }
+  }
+
+  private static void writeOwnerOnly(File file, byte[] contents) throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+      throw new IOException("couldn't create " + dir);
+    }
+
+    // restrict it before anything is written to it, so no one else can open it in the meantime
+    if (file.exists() && !file.delete()) throw new IOException("couldn't delete " + file);
+    if (!file.createNewFile()
+        || !file.setReadable(false, false) || !file.setReadable(true, true)
+        || !file.setWritable(false, false) || !file.setWritable(true, true)) {
+      file.delete();
+      throw new IOException("couldn't create " + file + " readable only by its owner");
+    }
+
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(contents);
+    } finally {
+      out.close();
+    }
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  public synchronized int getRequestCount() {
+    return requestCount;
+  }
+
+  /**
+   * Handles requests until {@link #close()} is called.
+   */
+  public void serve() throws IOException {
+    while (true) {
+      Socket socket;
+      try {
+        socket = serverSocket.accept();
+      } catch (SocketException e) {
+        if (serverSocket.isClosed()) return;
+        throw e;
+      }
+
+      try {
+        handle(socket);
+      } catch (Exception e) {
+        System.out.println("[WARN] couldn't handle request: " + e);
+      } finally {
+        socket.close();
+      }
+    }
+  }
+
+  public void close() throws IOException {
+    serverSocket.close();
+    tokenFile.delete();
+  }
+
+  /**
+   * Requests are the token, the test class name, the number of tests and then their display names, written with
+   * {@link java.io.DataOutputStream#writeUTF(String)} and {@link java.io.DataOutputStream#writeInt(int)}; nothing a
+   * client sends is deserialized.
+   */
+  private void handle(Socket socket) throws IOException, ClassNotFoundException {
+    ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    out.flush();
+    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    if (!MessageDigest.isEqual(token, in.readUTF().getBytes("UTF-8"))) {
+      reject(out, "wrong token; see " + tokenFile);
+      return;
+    }
+
+    String testClassName = in.readUTF();
+    int testCount = in.readInt();
+    if (testCount < 0 || testCount > MAX_TEST_COUNT) {
+      reject(out, "bad test count " + testCount);
+      return;
+    }
+    Set<String> testNames = new HashSet<String>();
+    for (int i = 0; i < testCount; i++) {
+      testNames.add(in.readUTF());
+    }
+
+    if (!isTestClass(testClassName)) {
+      reject(out, testClassName + " isn't in any of the daemon's test class directories " + testClassDirectories);
+      return;
+    }
+
+    synchronized (this) {
+      requestCount++;
+    }
+
+    Class<?> testClass = Class.forName(testClassName, false, getTestClassLoader());
+    JUnitCore core = new JUnitCore();
+    core.addListener(new EventWriter(out));
+    runningTests.set(true);
+    try {
+      core.run(Request.aClass(testClass).filterWith(new TestNameFilter(testNames)));
+    } finally {
+      runningTests.remove();
+    }
+
+    out.writeObject(DONE);
+    out.flush();
+  }
+
+  private void reject(ObjectOutputStream out, String reason) throws IOException {
+    System.out.println("[WARN] rejected request: " + reason);
+    out.writeObject(REJECTED);
+    out.writeObject(reason);
+    out.flush();
+  }
+
+  private boolean isTestClass(String className) {
+    for (String part : className.split("\\.", -1)) {
+      if (part.isEmpty() || !Character.isJavaIdentifierStart(part.charAt(0))) return false;
+      for (int i = 1; i < part.length(); i++) {
+        if (!Character.isJavaIdentifierPart(part.charAt(i))) return false;
+      }
+    }
+
+    String classFileName = className.replace('.', File.separatorChar) + ".class";
+    for (File directory : testClassDirectories) {
+      if (new File(directory, classFileName).isFile()) return true;
+    }
+    return false;
+  }
+
+  private ClassLoader getTestClassLoader() {
+    ClassDirectoriesState currentState = new ClassDirectoriesState(testClassDirectories);
+    if (testClassLoader == null || !currentState.equals(testClassesState)) {
+      if (testClassLoader != null) {
+        System.out.println("[INFO] test classes have changed; discarding environments");
+        RobolectricTestRunner.discardEnvironments();
+      }
+      testClassLoader = new ChildFirstClassLoader(toUrls(testClassDirectories), RobolectricDaemon.class.getClassLoader());
+      testClassesState = currentState;
+    }
+    return testClassLoader;
+  }
+
+  private static List<File> findTestClassDirectories() {
+    File robolectricLocation;
+    try {
+      robolectricLocation = new File(RobolectricDaemon.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    } catch (URISyntaxException e) {
+      throw new RuntimeException(e);
+    }
+
+    List<File> directories = new ArrayList<File>();
+    for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+      File file = new File(path).getAbsoluteFile();
+      if (file.isDirectory() && !file.equals(robolectricLocation.getAbsoluteFile())) {
+        directories.add(file);
+      }
+    }
+    return directories;
+  }
+
+  private static URL[] toUrls(List<File> files) {
+    URL[] urls = new URL[files.size()];
+    for (int i = 0; i < urls.length; i++) {
+      try {
+        urls[i] = files.get(i).toURI().toURL();
+      } catch (MalformedURLException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return urls;
+  }
+
+  /**
+   * How many class files the directories hold, and when the newest was written.
+   */
+  private static class ClassDirectoriesState {
+    private int classFileCount;
+    private long newestModificationTime;
+
+    ClassDirectoriesState(List<File> directories) {
+      for (File directory : directories) {
+        scan(directory);
+      }
+    }
+
+    private void scan(File directory) {
+      File[] files = directory.listFiles();
+      if (files == null) return;
+
+      for (File file : files) {
+        if (file.isDirectory()) {
+          scan(file);
+        } else if (file.getName().endsWith(".class")) {
+          classFileCount++;
+          newestModificationTime = Math.max(newestModificationTime, file.lastModified());
+        }
+      }
+    }
+
+    @Override public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      ClassDirectoriesState that = (ClassDirectoriesState) o;
+      return classFileCount == that.classFileCount && newestModificationTime == that.newestModificationTime;
+    }
+
+    @Override public int hashCode() {
+      return 31 * classFileCount + (int) (newestModificationTime ^ (newestModificationTime >>> 32));
+    }
+  }
+
+  /**
+   * Loads classes from its own directories in preference to its parent's, so changed test classes are picked up.
+   */
+  private static class ChildFirstClassLoader extends URLClassLoader {
+    ChildFirstClassLoader(URL[] urls, ClassLoader parent) {
+      super(urls, parent);
+    }
+
+    @Override protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      Class<?> loadedClass = findLoadedClass(name);
+      if (loadedClass == null) {
+        try {
+          loadedClass = findClass(name);
+        } catch (ClassNotFoundException e) {
+          return super.loadClass(name, resolve);
+        }
+      }
+      if (resolve) resolveClass(loadedClass);
+      return loadedClass;
+    }
+  }
+
+  private static class TestNameFilter extends Filter {
+    private final Set<String> testNames;
+
+    TestNameFilter(Set<String> testNames) {
+      this.testNames = testNames;
+    }
+
+    @Override public boolean shouldRun(Description description) {
+      if (description.isTest()) return testNames.contains(description.getDisplayName());
+
+      for (Description child : description.getChildren()) {
+        if (shouldRun(child)) return true;
+      }
+      return false;
+    }
+
+    @Override public String describe() {
+      return "tests " + testNames;
+    }
+  }
+
+  /**
+   * Sends test events to the client; see {@link RobolectricDaemonRunner}.
+   */
+  private static class EventWriter extends RunListener {
+    private final ObjectOutputStream out;
+
+    EventWriter(ObjectOutputStream out) {
+      this.out = out;
+    }
+
+    @Override public void testStarted(Description description) throws Exception {
+      write(STARTED, description);
+    }
+
+    @Override public void testFinished(Description description) throws Exception {
+      write(FINISHED, description);
+    }
+
+    @Override public void testFailure(Failure failure) throws Exception {
+      write(FAILED, failure);
+    }
+
+    @Override public void testAssumptionFailure(Failure failure) {
+      try {
+        write(ASSUMPTION_FAILED, failure);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @Override public void testIgnored(Description description) throws Exception {
+      write(IGNORED, description);
+    }
+
+    private synchronized void write(String event, Description description) throws IOException {
+      out.writeObject(event);
+      out.writeObject(description.getDisplayName());
+      out.flush();
+    }
+
+    private synchronized void write(String event, Failure failure) throws IOException {
+      out.writeObject(event);
+      out.writeObject(failure.getDescription().getDisplayName());
+      out.writeObject(serializable(failure.getException()));
+      out.flush();
+      out.reset();
+    }
+
+    private static Throwable serializable(Throwable throwable) {
+      try {
+        new ObjectOutputStream(new ByteArrayOutputStream()).writeObject(throwable);
+        return throwable;
+      } catch (IOException e) {
+        RuntimeException standIn = new RuntimeException(throwable.toString());
+        standIn.setStackTrace(throwable.getStackTrace());
+        return standIn;
+      }
+    }
+  }
+}
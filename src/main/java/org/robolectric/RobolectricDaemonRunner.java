@@ -0,0 +1,112 @@
+package org.robolectric;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.InitializationError;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs tests in a {@link RobolectricDaemon}, if one is listening on the {@code robolectric.daemonPort} port (7357 by
+ * default), or else in this JVM just like {@link RobolectricTestRunner} does.
+ * <p/>
+ * The daemon must have been started with the same classpath as the tests, by the same user, so this runner can read
+ * its token.
+ */
+public class RobolectricDaemonRunner extends RobolectricTestRunner {
+  public RobolectricDaemonRunner(Class<?> testClass) throws InitializationError {
+    super(testClass);
+  }
+
+  @Override public void run(RunNotifier notifier) {
+    // classes outside the shard are reported as skipped here, and the daemon only runs what it's asked to
+    if (!isInShard() || RobolectricDaemon.isRunningTests()) {
+      super.run(notifier);
+      return;
+    }
+
+    int port = RobolectricDaemon.configuredPort();
+    String token = RobolectricDaemon.readToken(port);
+    if (token == null) {
+      System.out.println("[WARN] couldn't read the Robolectric daemon's token from " + RobolectricDaemon.tokenFileFor(port) + "; running " + getTestClass().getName() + " here instead");
+      super.run(notifier);
+      return;
+    }
+
+    Socket socket;
+    try {
+      socket = new Socket(InetAddress.getByName(null), port);
+    } catch (IOException e) {
+      System.out.println("[WARN] couldn't reach the Robolectric daemon (" + e + "); running " + getTestClass().getName() + " here instead");
+      super.run(notifier);
+      return;
+    }
+
+    try {
+      try {
+        runInDaemon(socket, token, notifier);
+      } finally {
+        socket.close();
+      }
+    } catch (Exception e) {
+      notifier.fireTestFailure(new Failure(getDescription(), e));
+    }
+  }
+
+  private void runInDaemon(Socket socket, String token, RunNotifier notifier) throws IOException, ClassNotFoundException {
+    Description classDescription = getDescription();
+    Map<String, Description> descriptions = new HashMap<String, Description>();
+    descriptions.put(classDescription.getDisplayName(), classDescription);
+    ArrayList<String> testNames = new ArrayList<String>();
+    for (Description child : classDescription.getChildren()) {
+      descriptions.put(child.getDisplayName(), child);
+      testNames.add(child.getDisplayName());
+    }
+
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    out.writeUTF(token);
+    out.writeUTF(getTestClass().getName());
+    out.writeInt(testNames.size());
+    for (String testName : testNames) {
+      out.writeUTF(testName);
+    }
+    out.flush();
+
+    ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+    while (true) {
+      String event = (String) in.readObject();
+      if (event.equals(RobolectricDaemon.DONE)) return;
+      if (event.equals(RobolectricDaemon.REJECTED)) {
+        throw new IOException("the Robolectric daemon rejected " + getTestClass().getName() + ": " + in.readObject());
+      }
+
+      String displayName = (String) in.readObject();
+      Description description = descriptions.get(displayName);
+      if (description == null) description = Description.createSuiteDescription(displayName);
+
+      if (event.equals(RobolectricDaemon.STARTED)) {
+        notifier.fireTestStarted(description);
+      } else if (event.equals(RobolectricDaemon.FINISHED)) {
+        notifier.fireTestFinished(description);
+      } else if (event.equals(RobolectricDaemon.FAILED)) {
+        notifier.fireTestFailure(new Failure(description, (Throwable) in.readObject()));
+      } else if (event.equals(RobolectricDaemon.ASSUMPTION_FAILED)) {
+        notifier.fireTestAssumptionFailed(new Failure(description, (Throwable) in.readObject()));
+      } else if (event.equals(RobolectricDaemon.IGNORED)) {
+        notifier.fireTestIgnored(description);
+      } else {
+        throw new IOException("unexpected event from Robolectric daemon: " + event);
+      }
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package org.robolectric;
+
+import org.junit.runner.Computer;
+import org.junit.runner.Runner;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.RunnerScheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs test classes concurrently on a fixed number of threads, e.g.
+ * {@code JUnitCore.runClasses(new RobolectricParallelComputer(8), classes)}.
+ * <p/>
+ * Each running {@link RobolectricTestRunner} test gets an {@link SdkEnvironment} of its own (see {@link SdkEnvironmentCache}),
+ * so Robolectric's state isn't shared between threads; up to one environment per thread will be created. The methods
+ * within a class still run one at a time.
+ */
+public class RobolectricParallelComputer extends Computer {
+  public static final String THREAD_COUNT_PROPERTY = "robolectric.parallelThreads";
+
+  private final int threadCount;
+
+  /**
+   * Uses the number of threads in the {@code robolectric.parallelThreads} system property, or one per processor.
+   */
+  public RobolectricParallelComputer() {
+    this(Integer.getInteger(THREAD_COUNT_PROPERTY, Runtime.getRuntime().availableProcessors()));
+  }
+
+  public RobolectricParallelComputer(int threadCount) {
+    this.threadCount = threadCount;
+  }
+
+  @Override
+  public Runner getSuite(RunnerBuilder builder, Class<?>[] classes) throws InitializationError {
+    Runner suite = super.getSuite(builder, classes);
+    if (suite instanceof ParentRunner) {
+      ((ParentRunner<?>) suite).setScheduler(new ThreadPoolScheduler(threadCount));
+    }
+    return suite;
+  }
+
+  private static class ThreadPoolScheduler implements RunnerScheduler {
+    private final ExecutorService executorService;
+
+    ThreadPoolScheduler(int threadCount) {
+      executorService = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override public Thread newThread(Runnable runnable) {
+          return new Thread(runnable, "robolectric-test-" + threadNumber.incrementAndGet());
+        }
+      });
+    }
+
+    @Override public void schedule(Runnable childStatement) {
+      executorService.submit(childStatement);
+    }
+
+    @Override public void finished() {
+      executorService.shutdown();
+      try {
+        executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package org.robolectric;
+
+import org.junit.runner.Description;
+import org.junit.runner.manipulation.Filter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs only the test classes assigned to one of several shards, e.g. one per forked JVM, balanced by how long each
+ * class took last time (see {@link TestTimings}).
+ * <p/>
+ * Classes whose tests ran in the same environment (SDK and app manifest) are kept on one shard where that doesn't
+ * unbalance the shards, so they can reuse each other's {@link SdkEnvironment}s and resources. Classes with no timing
+ * yet are spread by name.
+ * <p/>
+ * {@link RobolectricTestRunner} applies it itself if the {@code robolectric.shardIndex} (from zero) and
+ * {@code robolectric.shardCount} system properties are set. Timings are read from the file named by
+ * {@code robolectric.shardTimings}, or else from a snapshot of the one named by {@code robolectric.testTimings},
+ * taken when the run's first shard starts (see {@link TestTimings#forShard(java.io.File, int, int)}), since every
+ * shard must see the same timings.
+ */
+public class RobolectricShardFilter extends Filter {
+  public static final String SHARD_INDEX_PROPERTY = "robolectric.shardIndex";
+  public static final String SHARD_COUNT_PROPERTY = "robolectric.shardCount";
+  public static final String SHARD_TIMINGS_FILE_PROPERTY = "robolectric.shardTimings";
+
+  private final int shardIndex;
+  private final int shardCount;
+  private final Map<String, Integer> shardsByClassName;
+
+  /**
+   * @param timings how long classes took last time, or null to spread all classes by name
+   */
+  public RobolectricShardFilter(int shardIndex, int shardCount, TestTimings timings) {
+    if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+      throw new IllegalArgumentException("no shard " + shardIndex + " of " + shardCount);
+    }
+    this.shardIndex = shardIndex;
+    this.shardCount = shardCount;
+    this.shardsByClassName = timings == null ? new HashMap<String, Integer>() : assignShards(timings, shardCount);
+  }
+
+  /**
+   * @return a filter for the shard given by the {@code robolectric.shard*} system properties, or null if they aren't
+   *     set
+   */
+  public static RobolectricShardFilter fromSystemProperties() {
+    Integer shardCount = Integer.getInteger(SHARD_COUNT_PROPERTY);
+    Integer shardIndex = Integer.getInteger(SHARD_INDEX_PROPERTY);
+    if (shardCount == null || shardIndex == null) return null;
+
+    TestTimings timings = TestTimings.fromFileProperty(SHARD_TIMINGS_FILE_PROPERTY);
+    String timingsFileName = System.getProperty(TestTimings.TIMINGS_FILE_PROPERTY);
+    if (timings == null && timingsFileName != null && !timingsFileName.isEmpty()) {
+      timings = TestTimings.forShard(new File(timingsFileName), shardIndex, shardCount);
+    }
+    return new RobolectricShardFilter(shardIndex, shardCount, timings);
+  }
+
+  @Override public boolean shouldRun(Description description) {
+    if (description.isTest() || description.getChildren().isEmpty()) {
+      return shouldRunClass(description.getClassName());
+    }
+
+    // a class or suite; run it if any of its tests should run
+    for (Description child : description.getChildren()) {
+      if (shouldRun(child)) return true;
+    }
+    return false;
+  }
+
+  @Override public String describe() {
+    return "Robolectric shard " + shardIndex + " of " + shardCount;
+  }
+
+  public boolean shouldRunClass(String className) {
+    return shardFor(className) == shardIndex;
+  }
+
+  int shardFor(String className) {
+    Integer shard = shardsByClassName.get(className);
+    if (shard != null) return shard;
+
+    return (className.hashCode() & Integer.MAX_VALUE) % shardCount;
+  }
+
+  /**
+   * Greedily packs the timed classes into shards, biggest first, onto whichever shard has least to do so far. Each
+   * environment's classes are packed as one piece, unless together they'd take longer than a shard should, in which
+   * case they're cut into pieces no longer than that.
+   */
+  static Map<String, Integer> assignShards(TestTimings timings, int shardCount) {
+    // sorted, so every shard comes up with the same assignments
+    Map<String, List<String>> classNamesByEnvironment = new TreeMap<String, List<String>>();
+    long totalMillis = 0;
+    for (String className : timings.getClassNames()) {
+      String environment = timings.getEnvironment(className);
+      if (environment == null) environment = "";
+      List<String> classNames = classNamesByEnvironment.get(environment);
+      if (classNames == null) {
+        classNames = new ArrayList<String>();
+        classNamesByEnvironment.put(environment, classNames);
+      }
+      classNames.add(className);
+      totalMillis += millis(timings, className);
+    }
+    long millisPerShard = (totalMillis + shardCount - 1) / shardCount;
+
+    List<Piece> pieces = new ArrayList<Piece>();
+    for (List<String> classNames : classNamesByEnvironment.values()) {
+      Collections.sort(classNames, new ByMillis(timings));
+      Piece piece = new Piece();
+      for (String className : classNames) {
+        long millis = millis(timings, className);
+        if (!piece.classNames.isEmpty() && piece.millis + millis > millisPerShard) {
+          pieces.add(piece);
+          piece = new Piece();
+        }
+        piece.classNames.add(className);
+        piece.millis += millis;
+      }
+      pieces.add(piece);
+    }
+
+    Collections.sort(pieces, new Comparator<Piece>() {
+      @Override public int compare(Piece a, Piece b) {
+        if (a.millis != b.millis) return a.millis > b.millis ? -1 : 1;
+        return a.classNames.get(0).compareTo(b.classNames.get(0));
+      }
+    });
+
+    long[] shardMillis = new long[shardCount];
+    Map<String, Integer> shardsByClassName = new HashMap<String, Integer>();
+    for (Piece piece : pieces) {
+      int shard = 0;
+      for (int i = 1; i < shardCount; i++) {
+        if (shardMillis[i] < shardMillis[shard]) shard = i;
+      }
+      shardMillis[shard] += piece.millis;
+      for (String className : piece.classNames) {
+        shardsByClassName.put(className, shard);
+      }
+    }
+    return shardsByClassName;
+  }
+
+  private static long millis(TestTimings timings, String className) {
+    return Math.max(0, timings.getMillis(className));
+  }
+
+  private static class Piece {
+    private final List<String> classNames = new ArrayList<String>();
+    private long millis;
+  }
+
+  private static class ByMillis implements Comparator<String> {
+    private final TestTimings timings;
+
+    ByMillis(TestTimings timings) {
+      this.timings = timings;
+    }
+
+    @Override public int compare(String a, String b) {
+      long aMillis = millis(timings, a);
+      long bMillis = millis(timings, b);
+      if (aMillis != bMillis) return aMillis > bMillis ? -1 : 1;
+      return a.compareTo(b);
+    }
+  }
+}
@@ -10,12 +10,16 @@ import java.lang.reflect.Method;
 import java.net.URL;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.maven.artifact.ant.DependenciesTask;
 import org.jetbrains.annotations.TestOnly;
+import org.junit.runner.manipulation.NoTestsRemainException;
 import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.BlockJUnit4ClassRunner;
 import org.junit.runners.model.FrameworkMethod;
@@ -28,6 +32,9 @@ import org.robolectric.annotation.WithConstantInt;
 import org.robolectric.annotation.WithConstantString;
 import org.robolectric.bytecode.AsmInstrumentingClassLoader;
 import org.robolectric.bytecode.ClassHandler;
+import org.robolectric.bytecode.ClassPreloader;
+import org.robolectric.bytecode.InstrumentedClassCache;
+import org.robolectric.bytecode.PreinstrumentedJar;
 import org.robolectric.bytecode.RobolectricInternals;
 import org.robolectric.bytecode.Setup;
 import org.robolectric.bytecode.ShadowMap;
@@ -56,22 +63,48 @@ import static org.fest.reflect.core.Reflection.staticField;
  */
 public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
   private static final MavenCentral MAVEN_CENTRAL = new MavenCentral();
+  private static final TestTimings TEST_TIMINGS = TestTimings.fromSystemProperties();
+  private static final RobolectricShardFilter SHARD_FILTER = RobolectricShardFilter.fromSystemProperties();
 
   private static final Map<Class<? extends RobolectricTestRunner>, EnvHolder> envHoldersByTestRunner = new HashMap<Class<? extends RobolectricTestRunner>, EnvHolder>();
   private static final Map<AndroidManifest, ResourceLoader> resourceLoadersByAppManifest = new HashMap<AndroidManifest, ResourceLoader>();
 
-  private static Class<? extends RobolectricTestRunner> lastTestRunnerClass;
-  private static SdkConfig lastSdkConfig;
-  private static SdkEnvironment lastSdkEnvironment;
-
-  private static ShadowMap mainShadowMap;
+  private static volatile ShadowMap mainShadowMap;
+  // guards constants in classes shared by all environments
+  private static final Object SHARED_CONSTANTS_LOCK = new Object();
+  private static final AtomicInteger testsWithDeferrableApplication = new AtomicInteger();
+  private static final AtomicInteger testsWithoutApplicationSetUp = new AtomicInteger();
 
   private final EnvHolder envHolder;
+  private String environmentFingerprint;
+  private String setupFingerprint;
   private DatabaseMap databaseMap;
+  private boolean inShard = true;
   private TestLifecycle<Application> testLifecycle;
+  private Config globalConfig;
+  private boolean globalConfigRead;
+  private final Map<SdkEnvironment, ExecutionPlan> executionPlans = new HashMap<SdkEnvironment, ExecutionPlan>();
+  private String timedEnvironment;
 
   static {
     new SecureRandom(); // this starts up the Poller SunPKCS11-Darwin thread early, outside of any Robolectric classloader
+
+    if (TEST_TIMINGS != null) {
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+        @Override public void run() {
+          TEST_TIMINGS.save();
+        }
+      });
+    }
+
+    if (Setup.shouldDeferApplicationSetUp()) {
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+        @Override public void run() {
+          System.out.println("[INFO] " + testsWithoutApplicationSetUp.get() + " of " + testsWithDeferrableApplication.get()
+              + " tests didn't need their application set up");
+        }
+      });
+    }
   }
 
   /**
@@ -96,6 +129,29 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
     this.envHolder = envHolder;
 
     databaseMap = setupDatabaseMap(testClass, new SQLiteMap());
+    if (SHARD_FILTER != null) applyShardFilter(SHARD_FILTER);
+  }
+
+  void applyShardFilter(RobolectricShardFilter shardFilter) {
+    try {
+      filter(shardFilter);
+    } catch (NoTestsRemainException e) {
+      inShard = false;
+    }
+  }
+
+  /**
+   * Forgets every environment and app resource loader, so classes and resources will be loaded afresh by the next
+   * tests to run. System resources are kept.
+   */
+  static void discardEnvironments() {
+    synchronized (envHoldersByTestRunner) {
+      envHoldersByTestRunner.clear();
+    }
+    synchronized (resourceLoadersByAppManifest) {
+      resourceLoadersByAppManifest.clear();
+    }
+    SdkEnvironmentCache.getDefault().clear();
   }
 
   private void assureTestLifecycle(SdkEnvironment sdkEnvironment) {
@@ -114,6 +170,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
   public SdkEnvironment createSdkEnvironment(SdkConfig sdkConfig) {
     Setup setup = createSetup();
     ClassLoader robolectricClassLoader = createRobolectricClassLoader(setup, sdkConfig);
+    ClassPreloader.fromSystemProperties(robolectricClassLoader);
     return new SdkEnvironment(sdkConfig, robolectricClassLoader);
   }
 
@@ -143,7 +200,8 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
 
   protected ClassLoader createRobolectricClassLoader(Setup setup, SdkConfig sdkConfig) {
     URL[] urls = MAVEN_CENTRAL.getLocalArtifactUrls(this, sdkConfig.getSdkClasspathDependencies()).values().toArray(new URL[0]);
-    return new AsmInstrumentingClassLoader(setup, urls);
+    return new AsmInstrumentingClassLoader(setup, InstrumentedClassCache.fromSystemProperties(setup),
+        PreinstrumentedJar.fromSystemProperties(setup, sdkConfig.getArtifactVersionString()), urls);
   }
 
   public static void injectClassHandler(ClassLoader robolectricClassLoader, ClassHandler classHandler) {
@@ -167,15 +225,36 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
     // maybe you want to override this method and some settings?
   }
 
+  @Override public void run(RunNotifier notifier) {
+    if (!isInShard()) {
+      // reported as JUnit reports an @Ignore'd class, so IDEs and build tools show it was skipped
+      notifier.fireTestIgnored(getDescription());
+      return;
+    }
+    super.run(notifier);
+  }
+
+  /**
+   * @return false if the {@code robolectric.shard*} system properties assign this class to some other shard
+   * @see RobolectricShardFilter
+   */
+  boolean isInShard() {
+    return inShard;
+  }
+
   @Override
   protected Statement classBlock(RunNotifier notifier) {
     final Statement statement = super.classBlock(notifier);
     return new Statement() {
       @Override
       public void evaluate() throws Throwable {
+        long startTime = System.currentTimeMillis();
         try {
           statement.evaluate();
         } finally {
+          if (TEST_TIMINGS != null && timedEnvironment != null) {
+            TEST_TIMINGS.record(getTestClass().getName(), timedEnvironment, System.currentTimeMillis() - startTime);
+          }
           afterClass();
         }
       }
@@ -187,75 +266,103 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
       @Override public void evaluate() throws Throwable {
         final Config config = getConfig(method.getMethod());
         AndroidManifest appManifest = getAppManifest(config);
-        SdkEnvironment sdkEnvironment = getEnvironment(appManifest, config);
-
-        // todo: is this really needed?
-        Thread.currentThread().setContextClassLoader(sdkEnvironment.getRobolectricClassLoader());
-
-        Class bootstrappedTestClass = sdkEnvironment.bootstrappedClass(getTestClass().getJavaClass());
-        HelperTestRunner helperTestRunner = getHelperTestRunner(bootstrappedTestClass);
+        SdkConfig sdkConfig = pickSdkVersion(appManifest, config);
+        if (timedEnvironment == null) {
+          timedEnvironment = sdkConfig.getArtifactVersionString() + " "
+              + (appManifest == null ? "-" : appManifest.getResDirectory().getPath());
+        }
 
-        final Method bootstrappedMethod;
+        // no other test may use this environment until we're done with it, so tests can run on many threads at once
+        SdkEnvironmentCache.Key environmentKey = getEnvironmentKey(sdkConfig);
+        SdkEnvironment sdkEnvironment = checkOutEnvironment(environmentKey, sdkConfig);
         try {
-          //noinspection unchecked
-          bootstrappedMethod = bootstrappedTestClass.getMethod(method.getName());
-        } catch (NoSuchMethodException e) {
-          throw new RuntimeException(e);
+          runInEnvironment(method, config, appManifest, sdkEnvironment);
+        } finally {
+          SdkEnvironmentCache.getDefault().checkIn(environmentKey, sdkEnvironment);
         }
+      }
+    };
+  }
 
-        configureShadows(sdkEnvironment, config);
+  private void runInEnvironment(FrameworkMethod method, Config config, AndroidManifest appManifest, SdkEnvironment sdkEnvironment) throws Throwable {
+    // todo: is this really needed?
+    Thread.currentThread().setContextClassLoader(sdkEnvironment.getRobolectricClassLoader());
 
-        ParallelUniverseInterface parallelUniverseInterface = getHooksInterface(sdkEnvironment);
-        try {
-          assureTestLifecycle(sdkEnvironment);
+    ExecutionPlan executionPlan = getExecutionPlan(sdkEnvironment);
+    HelperTestRunner helperTestRunner = executionPlan.helperTestRunner;
+    MethodPlan methodPlan = executionPlan.methodPlanFor(method);
+    final Method bootstrappedMethod = methodPlan.bootstrappedMethod;
 
-          parallelUniverseInterface.resetStaticState();
-          parallelUniverseInterface.setDatabaseMap(databaseMap); //Set static DatabaseMap in DBConfig
+    configureShadows(sdkEnvironment, config);
 
-          boolean strictI18n = RobolectricTestRunner.determineI18nStrictState(bootstrappedMethod);
+    ParallelUniverseInterface parallelUniverseInterface = getHooksInterface(sdkEnvironment);
+    try {
+      assureTestLifecycle(sdkEnvironment);
 
-          int sdkVersion = pickReportedSdkVersion(config, appManifest);
-          Class<?> versionClass = sdkEnvironment.bootstrappedClass(Build.VERSION.class);
-          staticField("SDK_INT").ofType(int.class).in(versionClass).set(sdkVersion);
+      parallelUniverseInterface.resetStaticState();
+      parallelUniverseInterface.setDatabaseMap(databaseMap); //Set static DatabaseMap in DBConfig
 
-          ResourceLoader systemResourceLoader = sdkEnvironment.getSystemResourceLoader(MAVEN_CENTRAL, RobolectricTestRunner.this);
-          setUpApplicationState(bootstrappedMethod, parallelUniverseInterface, strictI18n, systemResourceLoader, appManifest, config);
-          testLifecycle.beforeTest(bootstrappedMethod);
-        } catch (Exception e) {
-          e.printStackTrace();
-          throw new RuntimeException(e);
-        }
+      boolean strictI18n = methodPlan.strictI18n;
 
-        final Statement statement = helperTestRunner.methodBlock(new FrameworkMethod(bootstrappedMethod));
+      int sdkVersion = pickReportedSdkVersion(config, appManifest);
+      Class<?> versionClass = sdkEnvironment.bootstrappedClass(Build.VERSION.class);
+      staticField("SDK_INT").ofType(int.class).in(versionClass).set(sdkVersion);
 
-        Map<Field, Object> withConstantAnnos = getWithConstantAnnotations(bootstrappedMethod);
+      ResourceLoader systemResourceLoader = sdkEnvironment.getSystemResourceLoader(MAVEN_CENTRAL, RobolectricTestRunner.this);
+      setUpApplicationState(bootstrappedMethod, parallelUniverseInterface, strictI18n, systemResourceLoader, appManifest, config);
+      testLifecycle.beforeTest(bootstrappedMethod);
+    } catch (Exception e) {
+      e.printStackTrace();
+      throw new RuntimeException(e);
+    }
+
+    final Statement statement = helperTestRunner.methodBlock(new FrameworkMethod(bootstrappedMethod));
+
+    // setupConstants() swaps the old values in, so give it a copy
+    Map<Field, Object> withConstantAnnos = new HashMap<Field, Object>(methodPlan.constants);
+
+    // todo: this try/finally probably isn't right -- should mimic RunAfters? [xw]
+    try {
+      if (withConstantAnnos.isEmpty()) {
+        statement.evaluate();
+      } else {
+        synchronized (constantsLockFor(sdkEnvironment, withConstantAnnos.keySet())) {
+          setupConstants(withConstantAnnos);
+          statement.evaluate();
+          setupConstants(withConstantAnnos);
+        }
+      }
+    } finally {
+      if (Setup.shouldDeferApplicationSetUp()) {
+        testsWithDeferrableApplication.incrementAndGet();
+        if (parallelUniverseInterface.isApplicationSetUpPending()) {
+          testsWithoutApplicationSetUp.incrementAndGet();
+        }
+      }
 
-        // todo: this try/finally probably isn't right -- should mimic RunAfters? [xw]
+      try {
+        parallelUniverseInterface.tearDownApplication();
+      } finally {
         try {
-          if (withConstantAnnos.isEmpty()) {
-            statement.evaluate();
-          } else {
-            synchronized (this) {
-              setupConstants(withConstantAnnos);
-              statement.evaluate();
-              setupConstants(withConstantAnnos);
-            }
-          }
+          internalAfterTest(bootstrappedMethod);
         } finally {
-          try {
-            parallelUniverseInterface.tearDownApplication();
-          } finally {
-            try {
-              internalAfterTest(bootstrappedMethod);
-            } finally {
-              parallelUniverseInterface.resetStaticState(); // afterward too, so stuff doesn't hold on to classes?
-              // todo: is this really needed?
-              Thread.currentThread().setContextClassLoader(RobolectricTestRunner.class.getClassLoader());
-            }
-          }
+          parallelUniverseInterface.resetStaticState(); // afterward too, so stuff doesn't hold on to classes?
+          // todo: is this really needed?
+          Thread.currentThread().setContextClassLoader(RobolectricTestRunner.class.getClassLoader());
         }
       }
-    };
+    }
+  }
+
+  private ExecutionPlan getExecutionPlan(SdkEnvironment sdkEnvironment) {
+    synchronized (executionPlans) {
+      ExecutionPlan executionPlan = executionPlans.get(sdkEnvironment);
+      if (executionPlan == null) {
+        executionPlan = new ExecutionPlan(sdkEnvironment);
+        executionPlans.put(sdkEnvironment, executionPlan);
+      }
+      return executionPlan;
+    }
   }
 
   protected HelperTestRunner getHelperTestRunner(Class bootstrappedTestClass) {
@@ -266,24 +373,60 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
     }
   }
 
-  private SdkEnvironment getEnvironment(final AndroidManifest appManifest, final Config config) {
-    final SdkConfig sdkConfig = pickSdkVersion(appManifest, config);
+  private synchronized SdkEnvironmentCache.Key getEnvironmentKey(SdkConfig sdkConfig) {
+    if (setupFingerprint == null) {
+      environmentFingerprint = getEnvironmentFingerprint();
+      setupFingerprint = createSetup().getFingerprint();
+    }
+    return new SdkEnvironmentCache.Key(environmentFingerprint, sdkConfig, setupFingerprint);
+  }
 
-    // keep the most recently-used SdkEnvironment strongly reachable to prevent thrashing in low-memory situations.
-    if (getClass().equals(lastTestRunnerClass) && sdkConfig.equals(sdkConfig)) {
-      return lastSdkEnvironment;
+  /**
+   * Describes everything about this runner that affects the {@link SdkEnvironment}s it creates. Runners with the same
+   * fingerprint and {@link Setup#getFingerprint() Setup fingerprint} share environments, whatever their class.
+   * <p/>
+   * By default it names the classes implementing {@link #createSetup()}, {@link #createSdkEnvironment(SdkConfig)},
+   * {@link #createRobolectricClassLoader(Setup, SdkConfig)}, {@link #configureMaven(DependenciesTask)} and
+   * {@link #createClassHandler(ShadowMap)}, so runners which only override, say, {@link #getTestLifecycleClass()}
+   * share environments with {@code RobolectricTestRunner}. Runners whose overrides of those methods depend on their
+   * own state should add that state here.
+   */
+  protected String getEnvironmentFingerprint() {
+    StringBuilder buf = new StringBuilder();
+    buf.append(implementingClass("createSetup").getName());
+    buf.append(';').append(implementingClass("createSdkEnvironment", SdkConfig.class).getName());
+    buf.append(';').append(implementingClass("createRobolectricClassLoader", Setup.class, SdkConfig.class).getName());
+    buf.append(';').append(getMavenConfigurationClass().getName());
+    buf.append(';').append(implementingClass("createClassHandler", ShadowMap.class).getName());
+    return buf.toString();
+  }
+
+  /**
+   * @return the class whose {@link #configureMaven(DependenciesTask)} this runner uses, which decides where its
+   *     artifacts are resolved from
+   */
+  Class<?> getMavenConfigurationClass() {
+    return implementingClass("configureMaven", DependenciesTask.class);
+  }
+
+  private Class<?> implementingClass(String methodName, Class<?>... parameterTypes) {
+    for (Class<?> clazz = getClass(); clazz != RobolectricTestRunner.class; clazz = clazz.getSuperclass()) {
+      try {
+        clazz.getDeclaredMethod(methodName, parameterTypes);
+        return clazz;
+      } catch (NoSuchMethodException e) {
+        // not overridden here; try the superclass
+      }
     }
+    return RobolectricTestRunner.class;
+  }
 
-    lastTestRunnerClass = null;
-    lastSdkConfig = null;
-    lastSdkEnvironment = envHolder.getSdkEnvironment(sdkConfig, new SdkEnvironment.Factory() {
+  private SdkEnvironment checkOutEnvironment(SdkEnvironmentCache.Key environmentKey, final SdkConfig sdkConfig) {
+    return SdkEnvironmentCache.getDefault().checkOut(environmentKey, new SdkEnvironment.Factory() {
       @Override public SdkEnvironment create() {
         return createSdkEnvironment(sdkConfig);
       }
     });
-    lastTestRunnerClass = getClass();
-    lastSdkConfig = sdkConfig;
-    return lastSdkEnvironment;
   }
 
   protected SdkConfig pickSdkVersion(AndroidManifest appManifest, Config config) {
@@ -327,7 +470,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
   public Config getConfig(Method method) {
     Config config = AnnotationUtil.defaultsFor(Config.class);
 
-    Config globalConfig = Config.Implementation.fromProperties(getConfigProperties());
+    Config globalConfig = getGlobalConfig();
     if (globalConfig != null) {
       config = new Config.Implementation(config, globalConfig);
     }
@@ -345,6 +488,14 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
     return config;
   }
 
+  private synchronized Config getGlobalConfig() {
+    if (!globalConfigRead) {
+      globalConfig = Config.Implementation.fromProperties(getConfigProperties());
+      globalConfigRead = true;
+    }
+    return globalConfig;
+  }
+
   protected Properties getConfigProperties() {
     ClassLoader classLoader = getTestClass().getClass().getClassLoader();
     InputStream resourceAsStream = classLoader.getResourceAsStream("org.robolectric.Config.properties");
@@ -380,6 +531,8 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
       classHandler = sdkEnvironment.classHandlersByShadowMap.get(shadowMap);
       if (classHandler == null) {
         classHandler = createClassHandler(shadowMap);
+        // reusing the handler keeps the plans cached at instrumented call sites valid from test to test
+        sdkEnvironment.classHandlersByShadowMap.put(shadowMap, classHandler);
       }
       sdkEnvironment.setCurrentClassHandler(classHandler);
     }
@@ -429,11 +582,17 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
   private void afterClass() {
     testLifecycle = null;
     databaseMap = null;
+    timedEnvironment = null;
+    synchronized (executionPlans) {
+      executionPlans.clear();
+    }
   }
 
   @TestOnly
   boolean allStateIsCleared() {
-    return testLifecycle == null && databaseMap == null;
+    synchronized (executionPlans) {
+      return testLifecycle == null && databaseMap == null && timedEnvironment == null && executionPlans.isEmpty();
+    }
   }
 
   @Override
@@ -549,6 +708,19 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
     }
   }
 
+  /**
+   * @return what to hold while the constants are changed: the environment, if its class loader defined all their
+   *     classes (though it's only used by one test at a time anyway), or else a lock shared by all environments
+   */
+  private Object constantsLockFor(SdkEnvironment sdkEnvironment, Collection<Field> fields) {
+    for (Field field : fields) {
+      if (field.getDeclaringClass().getClassLoader() != sdkEnvironment.getRobolectricClassLoader()) {
+        return SHARED_CONSTANTS_LOCK;
+      }
+    }
+    return sdkEnvironment;
+  }
+
   /**
    * Defines static finals from the provided hash and stores the old values back
    * into the hash.
@@ -566,12 +738,14 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
   }
 
   public static ResourceLoader getAppResourceLoader(ResourceLoader systemResourceLoader, final AndroidManifest appManifest) {
-    ResourceLoader resourceLoader = resourceLoadersByAppManifest.get(appManifest);
-    if (resourceLoader == null) {
-      resourceLoader = createAppResourceLoader(systemResourceLoader, appManifest);
-      resourceLoadersByAppManifest.put(appManifest, resourceLoader);
+    synchronized (resourceLoadersByAppManifest) {
+      ResourceLoader resourceLoader = resourceLoadersByAppManifest.get(appManifest);
+      if (resourceLoader == null) {
+        resourceLoader = createAppResourceLoader(systemResourceLoader, appManifest);
+        resourceLoadersByAppManifest.put(appManifest, resourceLoader);
+      }
+      return resourceLoader;
     }
-    return resourceLoader;
   }
 
   protected static ResourceLoader createAppResourceLoader(ResourceLoader systemResourceLoader, AndroidManifest appManifest) {
@@ -611,6 +785,9 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
   }
 
   protected ShadowMap createShadowMap() {
+    ShadowMap shadowMap = mainShadowMap;
+    if (shadowMap != null) return shadowMap;
+
     synchronized (RobolectricTestRunner.class) {
       if (mainShadowMap != null) return mainShadowMap;
 
@@ -624,6 +801,52 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
     }
   }
 
+  /**
+   * Everything about running this runner's tests in one environment that's the same for every test, so it's only
+   * worked out once.
+   */
+  private class ExecutionPlan {
+    private final Class<?> bootstrappedTestClass;
+    private final HelperTestRunner helperTestRunner;
+    private final Map<String, MethodPlan> methodPlans;
+
+    ExecutionPlan(SdkEnvironment sdkEnvironment) {
+      bootstrappedTestClass = sdkEnvironment.bootstrappedClass(getTestClass().getJavaClass());
+      helperTestRunner = getHelperTestRunner(bootstrappedTestClass);
+
+      Map<String, MethodPlan> methodPlans = new HashMap<String, MethodPlan>();
+      for (FrameworkMethod method : getChildren()) {
+        methodPlans.put(method.getName(), new MethodPlan(bootstrappedMethod(method.getName())));
+      }
+      this.methodPlans = Collections.unmodifiableMap(methodPlans);
+    }
+
+    MethodPlan methodPlanFor(FrameworkMethod method) {
+      MethodPlan methodPlan = methodPlans.get(method.getName());
+      return methodPlan != null ? methodPlan : new MethodPlan(bootstrappedMethod(method.getName()));
+    }
+
+    private Method bootstrappedMethod(String methodName) {
+      try {
+        return bootstrappedTestClass.getMethod(methodName);
+      } catch (NoSuchMethodException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  private class MethodPlan {
+    private final Method bootstrappedMethod;
+    private final boolean strictI18n;
+    private final Map<Field, Object> constants;
+
+    MethodPlan(Method bootstrappedMethod) {
+      this.bootstrappedMethod = bootstrappedMethod;
+      this.strictI18n = determineI18nStrictState(bootstrappedMethod);
+      this.constants = Collections.unmodifiableMap(getWithConstantAnnotations(bootstrappedMethod));
+    }
+  }
+
   public class HelperTestRunner extends BlockJUnit4ClassRunner {
     public HelperTestRunner(Class<?> testClass) throws InitializationError {
       super(testClass);
@@ -1,8 +1,8 @@
 package org.robolectric;
 
+import org.robolectric.bytecode.AsmInstrumentingClassLoader;
 import org.robolectric.bytecode.ClassHandler;
 import org.robolectric.bytecode.ShadowMap;
-import org.robolectric.bytecode.ShadowWrangler;
 import org.robolectric.res.Fs;
 import org.robolectric.res.PackageResourceLoader;
 import org.robolectric.res.ResourceExtractor;
@@ -14,11 +14,16 @@ import java.util.HashMap;
 import java.util.Map;
 
 public class SdkEnvironment {
+  private static final int RETAINED_BYTES_PER_CLASS_BYTE = 4;
+  // system resources don't depend on the class loader (android.R comes from the parent loader), so they're shared by
+  // all the environments for an SDK, and outlive them; keyed by the resolved resources artifact, which
+  // RobolectricTestRunner.configureMaven() may change
+  private static final Map<String, ResourceLoader> systemResourceLoaders = new HashMap<String, ResourceLoader>();
+
   private final SdkConfig sdkConfig;
   private final ClassLoader robolectricClassLoader;
-  public final Map<ShadowMap, ShadowWrangler> classHandlersByShadowMap = new HashMap<ShadowMap, ShadowWrangler>();
+  public final Map<ShadowMap, ClassHandler> classHandlersByShadowMap = new HashMap<ShadowMap, ClassHandler>();
   private ClassHandler currentClassHandler;
-  private ResourceLoader systemResourceLoader;
 
   public SdkEnvironment(SdkConfig sdkConfig, ClassLoader robolectricClassLoader) {
     this.sdkConfig = sdkConfig;
@@ -26,18 +31,27 @@ public class SdkEnvironment {
   }
 
   public PackageResourceLoader createSystemResourceLoader(MavenCentral mavenCentral, RobolectricTestRunner robolectricTestRunner) {
-    URL url = mavenCentral.getLocalArtifactUrl(robolectricTestRunner, sdkConfig.getSystemResourceDependency());
+    return createSystemResourceLoader(mavenCentral.getLocalArtifactUrl(robolectricTestRunner, sdkConfig.getSystemResourceDependency()));
+  }
+
+  private PackageResourceLoader createSystemResourceLoader(URL url) {
     Fs systemResFs = Fs.fromJar(url);
     ResourceExtractor resourceExtractor = new ResourceExtractor(getRobolectricClassLoader());
     ResourcePath resourcePath = new ResourcePath(resourceExtractor.getProcessedRFile(), resourceExtractor.getPackageName(), systemResFs.join("res"), systemResFs.join("assets"));
     return new PackageResourceLoader(resourcePath, resourceExtractor);
   }
 
-  public synchronized ResourceLoader getSystemResourceLoader(MavenCentral mavenCentral, RobolectricTestRunner robolectricTestRunner) {
-    if (systemResourceLoader == null) {
-      systemResourceLoader = createSystemResourceLoader(mavenCentral, robolectricTestRunner);
+  public ResourceLoader getSystemResourceLoader(MavenCentral mavenCentral, RobolectricTestRunner robolectricTestRunner) {
+    URL url = mavenCentral.getLocalArtifactUrl(robolectricTestRunner, sdkConfig.getSystemResourceDependency());
+    synchronized (systemResourceLoaders) {
+      // URL.equals() may resolve host names, so key by the string
+      ResourceLoader systemResourceLoader = systemResourceLoaders.get(url.toExternalForm());
+      if (systemResourceLoader == null) {
+        systemResourceLoader = createSystemResourceLoader(url);
+        systemResourceLoaders.put(url.toExternalForm(), systemResourceLoader);
+      }
+      return systemResourceLoader;
     }
-    return systemResourceLoader;
   }
 
   public Class<?> bootstrappedClass(Class<?> testClass) {
@@ -52,6 +66,21 @@ public class SdkEnvironment {
     return robolectricClassLoader;
   }
 
+  /**
+   * A heuristic for {@link SdkEnvironmentCache}'s budget, not a measurement: it's the bytecode the class loader has
+   * defined (see {@link AsmInstrumentingClassLoader#getDefinedClassBytes()}) times a fixed factor, since a loaded
+   * class also takes class metadata, compiled code and statics, which grow with its bytecode. The factor is a rough
+   * guess, not tuned for any JVM; tune {@code robolectric.environmentCache.maxBytes} against real heap usage if the
+   * budget matters.
+   *
+   * @return roughly how much memory this environment retains
+   */
+  public long getEstimatedSize() {
+    return robolectricClassLoader instanceof AsmInstrumentingClassLoader
+        ? ((AsmInstrumentingClassLoader) robolectricClassLoader).getDefinedClassBytes() * RETAINED_BYTES_PER_CLASS_BYTE
+        : 0;
+  }
+
   /**
    * @deprecated use {@link org.robolectric.Robolectric.Reflection#setFinalStaticField(Class, String, Object)}
    */
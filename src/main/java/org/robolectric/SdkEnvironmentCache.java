@@ -0,0 +1,194 @@
+package org.robolectric;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Keeps {@link SdkEnvironment}s for reuse by later tests, within a budget.
+ * <p/>
+ * An environment is used by only one test at a time, so tests running concurrently on different threads each get
+ * their own class loader, class handler and Robolectric statics. Environments not in use are evicted, least recently
+ * used first, once there are more than {@code robolectric.environmentCache.maxSize} of them (by default one per
+ * {@link RobolectricParallelComputer} thread, and at least two), or once their estimated size exceeds
+ * {@code robolectric.environmentCache.maxBytes} (by default a quarter of the maximum heap). The estimate is only a
+ * heuristic; see {@link SdkEnvironment#getEstimatedSize()}.
+ * <p/>
+ * Evicted environments are dropped, and rebuilt if they're needed again.
+ */
+public class SdkEnvironmentCache {
+  public static final String MAX_SIZE_PROPERTY = "robolectric.environmentCache.maxSize";
+  public static final String MAX_BYTES_PROPERTY = "robolectric.environmentCache.maxBytes";
+  private static final int MIN_DEFAULT_MAX_SIZE = 2;
+
+  private static SdkEnvironmentCache defaultCache;
+
+  private final int maxSize;
+  private final long maxBytes;
+  // least recently used first
+  private final LinkedList<IdleEnvironment> idleEnvironments = new LinkedList<IdleEnvironment>();
+  private int buildCount;
+  private int reuseCount;
+  private int evictionCount;
+
+  public SdkEnvironmentCache(int maxSize, long maxBytes) {
+    this.maxSize = maxSize;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @return the cache shared by all test runners, with the budget set by the {@code robolectric.environmentCache.*}
+   *     system properties
+   */
+  public static synchronized SdkEnvironmentCache getDefault() {
+    if (defaultCache == null) {
+      // so a parallel run can keep an environment for each of its threads
+      int threadCount = Integer.getInteger(RobolectricParallelComputer.THREAD_COUNT_PROPERTY,
+          Runtime.getRuntime().availableProcessors());
+      int maxSize = Integer.getInteger(MAX_SIZE_PROPERTY, Math.max(MIN_DEFAULT_MAX_SIZE, threadCount));
+      long maxBytes = Long.getLong(MAX_BYTES_PROPERTY, Runtime.getRuntime().maxMemory() / 4);
+      final SdkEnvironmentCache cache = new SdkEnvironmentCache(maxSize, maxBytes);
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+        @Override public void run() {
+          if (cache.getEvictionCount() > 0) {
+            System.out.println("[INFO] " + cache + "; raise " + MAX_SIZE_PROPERTY + " or " + MAX_BYTES_PROPERTY
+                + " (and the heap) to avoid rebuilding environments");
+          }
+        }
+      });
+      defaultCache = cache;
+    }
+    return defaultCache;
+  }
+
+  /**
+   * @return an idle environment for {@code key}, or else a new one from {@code factory}; no other test may use it
+   *     until it's given back with {@link #checkIn(Key, SdkEnvironment)}
+   */
+  public SdkEnvironment checkOut(Key key, SdkEnvironment.Factory factory) {
+    synchronized (this) {
+      Iterator<IdleEnvironment> iterator = idleEnvironments.descendingIterator();
+      while (iterator.hasNext()) {
+        IdleEnvironment idleEnvironment = iterator.next();
+        if (idleEnvironment.key.equals(key)) {
+          iterator.remove();
+          reuseCount++;
+          return idleEnvironment.sdkEnvironment;
+        }
+      }
+      buildCount++;
+    }
+
+    // don't hold the lock while creating it; it takes a while, and other threads may have idle environments to use
+    return factory.create();
+  }
+
+  public synchronized void checkIn(Key key, SdkEnvironment sdkEnvironment) {
+    idleEnvironments.addLast(new IdleEnvironment(key, sdkEnvironment));
+
+    while (idleEnvironments.size() > maxSize
+        || (idleEnvironments.size() > 1 && getEstimatedRetainedBytes() > maxBytes)) {
+      idleEnvironments.removeFirst();
+      evictionCount++;
+    }
+  }
+
+  /**
+   * Forgets every idle environment.
+   */
+  public synchronized void clear() {
+    idleEnvironments.clear();
+  }
+
+  /**
+   * @return the number of environments created, including any since evicted
+   */
+  public synchronized int getBuildCount() {
+    return buildCount;
+  }
+
+  /**
+   * @return the number of times an idle environment was used again
+   */
+  public synchronized int getReuseCount() {
+    return reuseCount;
+  }
+
+  public synchronized int getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * @return the number of idle environments within the budget
+   */
+  public synchronized int getIdleCount() {
+    return idleEnvironments.size();
+  }
+
+  /**
+   * @return the total estimated size of the idle environments
+   */
+  public synchronized long getEstimatedRetainedBytes() {
+    long bytes = 0;
+    for (IdleEnvironment idleEnvironment : idleEnvironments) {
+      bytes += idleEnvironment.estimatedSize;
+    }
+    return bytes;
+  }
+
+  @Override public synchronized String toString() {
+    return "SdkEnvironmentCache{" +
+        "builds=" + buildCount +
+        ", reuses=" + reuseCount +
+        ", evictions=" + evictionCount +
+        ", idle=" + idleEnvironments.size() +
+        ", estimatedRetainedBytes=" + getEstimatedRetainedBytes() +
+        '}';
+  }
+
+  /**
+   * What an environment is good for: tests may only use environments created for the same key.
+   */
+  public static class Key {
+    private final String runnerKey;
+    private final SdkConfig sdkConfig;
+    private final String setupFingerprint;
+
+    public Key(String runnerKey, SdkConfig sdkConfig, String setupFingerprint) {
+      this.runnerKey = runnerKey;
+      this.sdkConfig = sdkConfig;
+      this.setupFingerprint = setupFingerprint;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      Key key = (Key) o;
+      return runnerKey.equals(key.runnerKey) && sdkConfig.equals(key.sdkConfig)
+          && setupFingerprint.equals(key.setupFingerprint);
+    }
+
+    @Override public int hashCode() {
+      int result = runnerKey.hashCode();
+      result = 31 * result + sdkConfig.hashCode();
+      result = 31 * result + setupFingerprint.hashCode();
+      return result;
+    }
+
+    @Override public String toString() {
+      return runnerKey + " " + sdkConfig;
+    }
+  }
+
+  private static class IdleEnvironment {
+    private final Key key;
+    private final SdkEnvironment sdkEnvironment;
+    private final long estimatedSize;
+
+    IdleEnvironment(Key key, SdkEnvironment sdkEnvironment) {
+      this.key = key;
+      this.sdkEnvironment = sdkEnvironment;
+      this.estimatedSize = sdkEnvironment.getEstimatedSize();
+    }
+  }
+}
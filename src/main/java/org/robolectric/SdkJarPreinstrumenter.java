@@ -0,0 +1,46 @@
+package org.robolectric;
+
+import org.robolectric.bytecode.PreinstrumentedJar;
+import org.robolectric.bytecode.Setup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a {@link PreinstrumentedJar} of the Android SDK classes, so test JVMs don't have to instrument them at
+ * startup.
+ * <p/>
+ * Usage: {@code SdkJarPreinstrumenter <output dir> <sdk artifact version> [<Setup subclass>]}; pass the Setup
+ * subclass if your test runner overrides {@link RobolectricTestRunner#createSetup()}.
+ */
+public class SdkJarPreinstrumenter {
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2 || args.length > 3) {
+      System.err.println("usage: " + SdkJarPreinstrumenter.class.getName() + " <output dir> <sdk artifact version> [<Setup subclass>]");
+      System.exit(1);
+    }
+
+    File outputDir = new File(args[0]);
+    SdkConfig sdkConfig = new SdkConfig(args[1]);
+    Setup setup = args.length == 3 ? (Setup) Class.forName(args[2]).newInstance() : new Setup();
+
+    File outputFile = preinstrument(outputDir, sdkConfig, setup);
+    System.out.println("[INFO] wrote " + outputFile);
+  }
+
+  public static File preinstrument(File outputDir, SdkConfig sdkConfig, Setup setup) throws IOException {
+    List<URL> urls = new ArrayList<URL>(
+        new MavenCentral().getLocalArtifactUrls(null, sdkConfig.getSdkClasspathDependencies()).values());
+
+    if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+      throw new IOException("couldn't create " + outputDir);
+    }
+    File outputFile = new File(outputDir, PreinstrumentedJar.fileNameFor(sdkConfig.getArtifactVersionString()));
+    int classCount = PreinstrumentedJar.write(outputFile, setup, sdkConfig.getArtifactVersionString(), urls);
+    System.out.println("[INFO] instrumented " + classCount + " classes");
+    return outputFile;
+  }
+}
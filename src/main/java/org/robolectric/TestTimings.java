@@ -0,0 +1,177 @@
+package org.robolectric;
+
+import org.robolectric.util.AtomicFiles;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+
+/**
+ * How long each test class took to run last time, and which environment (SDK and app manifest) its tests ran in; used
+ * by {@link RobolectricShardFilter} to balance test classes across shards.
+ * <p/>
+ * If the {@code robolectric.testTimings} system property names a file, {@link RobolectricTestRunner} records the
+ * classes it runs and merges them into that file when the JVM exits. Shards read a snapshot of it instead; see
+ * {@link #forShard(File, int, int)}.
+ */
+public class TestTimings {
+  public static final String TIMINGS_FILE_PROPERTY = "robolectric.testTimings";
+
+  private static final String MILLIS_SUFFIX = ".millis";
+  private static final String ENVIRONMENT_SUFFIX = ".environment";
+  private static final String SNAPSHOT_SUFFIX = ".shards";
+  private static final String SHARD_COUNT_KEY = "robolectric.shardCount";
+  private static final String SHARD_STARTED_PREFIX = "robolectric.shardStarted.";
+
+  private final File file;
+  private final Properties timings;
+  private final Properties recordedTimings = new Properties();
+
+  public TestTimings(File file) {
+    this(file, read(file));
+  }
+
+  private TestTimings(File file, Properties timings) {
+    this.file = file;
+    this.timings = timings;
+  }
+
+  /**
+   * @return timings kept in the file named by the {@code robolectric.testTimings} system property, or null if it
+   *     isn't set
+   */
+  public static TestTimings fromSystemProperties() {
+    return fromFileProperty(TIMINGS_FILE_PROPERTY);
+  }
+
+  static TestTimings fromFileProperty(String propertyName) {
+    String fileName = System.getProperty(propertyName);
+    if (fileName == null || fileName.isEmpty()) return null;
+
+    return new TestTimings(new File(fileName));
+  }
+
+  /**
+   * Reads the timings one shard of a sharded run balances by, which must be the same for every shard of the run even
+   * if some shards finish and save their timings before others start. The first shard of a run to start copies the
+   * file to a snapshot beside it, and the others read that; a shard which finds it has read the snapshot already
+   * takes it as the start of a new run, and takes a fresh snapshot. So every shard of a run is expected to run.
+   */
+  public static TestTimings forShard(final File file, final int shardIndex, final int shardCount) {
+    final File snapshotFile = new File(file.getPath() + SNAPSHOT_SUFFIX);
+    try {
+      return AtomicFiles.withLock(lockFileFor(file), new Callable<TestTimings>() {
+        @Override public TestTimings call() throws Exception {
+          Properties snapshot = read(snapshotFile);
+          String startedKey = SHARD_STARTED_PREFIX + shardIndex;
+          if (!String.valueOf(shardCount).equals(snapshot.getProperty(SHARD_COUNT_KEY))
+              || snapshot.getProperty(startedKey) != null) {
+            snapshot = read(file);
+            snapshot.setProperty(SHARD_COUNT_KEY, String.valueOf(shardCount));
+          }
+          snapshot.setProperty(startedKey, "true");
+          write(snapshotFile, snapshot);
+          return new TestTimings(file, snapshot);
+        }
+      });
+    } catch (IOException e) {
+      System.out.println("[WARN] couldn't snapshot " + file + ": " + e);
+      return new TestTimings(file);
+    }
+  }
+
+  /**
+   * @return the names of the test classes with timings in the file, as it was when this was created
+   */
+  public Set<String> getClassNames() {
+    Set<String> classNames = new TreeSet<String>();
+    for (String key : timings.stringPropertyNames()) {
+      if (key.endsWith(MILLIS_SUFFIX)) {
+        classNames.add(key.substring(0, key.length() - MILLIS_SUFFIX.length()));
+      }
+    }
+    return classNames;
+  }
+
+  /**
+   * @return how long the class took to run, or -1 if it's unknown
+   */
+  public long getMillis(String className) {
+    String millis = timings.getProperty(className + MILLIS_SUFFIX);
+    if (millis == null) return -1;
+
+    try {
+      return Long.parseLong(millis);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * @return a description of the environment the class's tests ran in, or null if it's unknown
+   */
+  public String getEnvironment(String className) {
+    return timings.getProperty(className + ENVIRONMENT_SUFFIX);
+  }
+
+  public synchronized void record(String className, String environment, long millis) {
+    recordedTimings.setProperty(className + MILLIS_SUFFIX, String.valueOf(millis));
+    recordedTimings.setProperty(className + ENVIRONMENT_SUFFIX, environment);
+  }
+
+  /**
+   * Merges the recorded timings into the file, keeping timings other JVMs have written since it was read. The file is
+   * locked while it's read and rewritten, so JVMs saving at the same time don't lose each other's timings.
+   */
+  public synchronized void save() {
+    if (recordedTimings.isEmpty()) return;
+
+    try {
+      AtomicFiles.withLock(lockFileFor(file), new Callable<Void>() {
+        @Override public Void call() throws Exception {
+          Properties merged = read(file);
+          merged.putAll(recordedTimings);
+          write(file, merged);
+          return null;
+        }
+      });
+    } catch (IOException e) {
+      System.out.println("[WARN] couldn't write " + file + ": " + e);
+    }
+  }
+
+  private static File lockFileFor(File file) {
+    return new File(file.getPath() + ".lock");
+  }
+
+  private static void write(File file, final Properties properties) throws IOException {
+    AtomicFiles.write(file, new AtomicFiles.Writer() {
+      @Override public void writeTo(OutputStream out) throws IOException {
+        properties.store(out, "Robolectric test class timings");
+      }
+    });
+  }
+
+  private static Properties read(File file) {
+    Properties properties = new Properties();
+    if (!file.exists()) return properties;
+
+    try {
+      InputStream in = new FileInputStream(file);
+      try {
+        properties.load(in);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      System.out.println("[WARN] couldn't read " + file + ": " + e);
+    }
+    return properties;
+  }
+}
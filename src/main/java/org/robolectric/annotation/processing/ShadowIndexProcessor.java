@@ -0,0 +1,200 @@
+package org.robolectric.annotation.processing;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedSourceVersion;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Writes an index of the {@code @Implements} classes being compiled, so the runtime can find shadows without
+ * probing for them by name. See {@link org.robolectric.bytecode.ShadowIndex}.
+ * <p/>
+ * Each line of the index reads:
+ * <pre>
+ *   realClassName shadowClassName callThroughByDefault inheritImplementationMethods looseSignatures
+ * </pre>
+ * Entries from an existing index in the output directory are kept unless their shadow class is being recompiled, so
+ * incremental builds don't lose shadows that weren't recompiled.
+ * <p/>
+ * Each real class may be listed only once. When several shadows implement the same class, the one named by
+ * {@link #conventionalShadowName(String) convention} is indexed, since that's the one a lookup by name would find;
+ * if none of them is, the build fails.
+ */
+@SupportedAnnotationTypes(ShadowIndexProcessor.IMPLEMENTS_ANNOTATION_NAME)
+@SupportedSourceVersion(SourceVersion.RELEASE_6)
+public class ShadowIndexProcessor extends AbstractProcessor {
+  public static final String INDEX_RESOURCE_NAME = "META-INF/robolectric/shadows.index";
+  static final String IMPLEMENTS_ANNOTATION_NAME = "org.robolectric.annotation.Implements";
+
+  // keyed by shadow class name
+  private final Map<String, String> entries = new TreeMap<String, String>();
+  private boolean existingEntriesRead;
+
+  /**
+   * @return the name a shadow of the given class has by convention, e.g. {@code org.robolectric.shadows.ShadowView}
+   *     for {@code android.view.View}
+   */
+  public static String conventionalShadowName(String className) {
+    String shadowClassName =
+        "org.robolectric.shadows.Shadow" + className.substring(className.lastIndexOf(".") + 1);
+    shadowClassName = shadowClassName.replaceAll("\\$", "\\$Shadow");
+    return shadowClassName;
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (!existingEntriesRead) {
+      readExistingEntries();
+      existingEntriesRead = true;
+    }
+
+    for (TypeElement annotation : annotations) {
+      for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        if (element instanceof TypeElement) {
+          addEntry((TypeElement) element);
+        }
+      }
+    }
+
+    if (roundEnv.processingOver()) {
+      writeIndex();
+    }
+    return false;
+  }
+
+  private void addEntry(TypeElement shadowType) {
+    String shadowClassName = processingEnv.getElementUtils().getBinaryName(shadowType).toString();
+    String realClassName = null;
+    boolean callThroughByDefault = true;
+    boolean inheritImplementationMethods = false;
+    boolean looseSignatures = false;
+
+    for (AnnotationMirror annotationMirror : shadowType.getAnnotationMirrors()) {
+      TypeElement annotationType = (TypeElement) annotationMirror.getAnnotationType().asElement();
+      if (!annotationType.getQualifiedName().contentEquals(IMPLEMENTS_ANNOTATION_NAME)) continue;
+
+      String className = "";
+      String valueClassName = null;
+      Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+          processingEnv.getElementUtils().getElementValuesWithDefaults(annotationMirror);
+      for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+        String name = entry.getKey().getSimpleName().toString();
+        Object value = entry.getValue().getValue();
+        if (name.equals("value")) {
+          valueClassName = binaryNameOf((TypeMirror) value);
+        } else if (name.equals("className")) {
+          className = (String) value;
+        } else if (name.equals("callThroughByDefault")) {
+          callThroughByDefault = (Boolean) value;
+        } else if (name.equals("inheritImplementationMethods")) {
+          inheritImplementationMethods = (Boolean) value;
+        } else if (name.equals("looseSignatures")) {
+          looseSignatures = (Boolean) value;
+        }
+      }
+      realClassName = className.isEmpty() ? valueClassName : className;
+    }
+
+    if (realClassName == null) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+          "couldn't figure out which class " + shadowClassName + " shadows", shadowType);
+      return;
+    }
+
+    entries.put(shadowClassName, realClassName + " " + shadowClassName + " " + callThroughByDefault
+        + " " + inheritImplementationMethods + " " + looseSignatures);
+  }
+
+  private String binaryNameOf(TypeMirror typeMirror) {
+    if (!(typeMirror instanceof DeclaredType)) return null;
+    TypeElement typeElement = (TypeElement) ((DeclaredType) typeMirror).asElement();
+    return processingEnv.getElementUtils().getBinaryName(typeElement).toString();
+  }
+
+  private void readExistingEntries() {
+    try {
+      FileObject existingIndex = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE_NAME);
+      BufferedReader reader = new BufferedReader(new InputStreamReader(existingIndex.openInputStream(), "UTF-8"));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          String[] parts = line.split(" ");
+          if (parts.length == 5) {
+            entries.put(parts[1], line);
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (IOException e) {
+      // no existing index; fine
+    }
+  }
+
+  private void writeIndex() {
+    Map<String, List<String>> entriesByRealClassName = new TreeMap<String, List<String>>();
+    for (String entry : entries.values()) {
+      String realClassName = entry.split(" ")[0];
+      List<String> realClassEntries = entriesByRealClassName.get(realClassName);
+      if (realClassEntries == null) {
+        realClassEntries = new ArrayList<String>();
+        entriesByRealClassName.put(realClassName, realClassEntries);
+      }
+      realClassEntries.add(entry);
+    }
+
+    try {
+      FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE_NAME);
+      Writer writer = index.openWriter();
+      PrintWriter printWriter = new PrintWriter(writer);
+      try {
+        for (Map.Entry<String, List<String>> realClassEntries : entriesByRealClassName.entrySet()) {
+          String entry = chooseEntry(realClassEntries.getKey(), realClassEntries.getValue());
+          if (entry != null) {
+            printWriter.println(entry);
+          }
+        }
+      } finally {
+        printWriter.close();
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "couldn't write " + INDEX_RESOURCE_NAME + ": " + e);
+    }
+  }
+
+  private String chooseEntry(String realClassName, List<String> realClassEntries) {
+    if (realClassEntries.size() == 1) return realClassEntries.get(0);
+
+    List<String> shadowClassNames = new ArrayList<String>();
+    for (String entry : realClassEntries) {
+      String shadowClassName = entry.split(" ")[1];
+      if (shadowClassName.equals(conventionalShadowName(realClassName))) return entry;
+      shadowClassNames.add(shadowClassName);
+    }
+
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, realClassName + " is shadowed by "
+        + shadowClassNames + "; only one may be, or one must be named " + conventionalShadowName(realClassName));
+    return null;
+  }
+}
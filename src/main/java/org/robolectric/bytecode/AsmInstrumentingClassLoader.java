@@ -16,6 +16,8 @@ import org.objectweb.asm.tree.FieldInsnNode;
 import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
 import org.objectweb.asm.tree.LdcInsnNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
@@ -29,6 +31,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -39,6 +42,9 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.objectweb.asm.Type.*;
 import static org.robolectric.util.Util.readBytes;
@@ -51,58 +57,110 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
   private static final Type PLAN_TYPE = Type.getType(ClassHandler.Plan.class);
   private static final Type THROWABLE_TYPE = Type.getType(Throwable.class);
   private static final Method INITIALIZING_METHOD = new Method("initializing", "(Ljava/lang/Object;)Ljava/lang/Object;");
-  private static final Method METHOD_INVOKED_METHOD = new Method("methodInvoked", "(Ljava/lang/String;ZLjava/lang/Class;)L" + PLAN_TYPE.getInternalName() + ";");
+  private static final Type METHOD_CALL_SITE_TYPE = Type.getType(MethodCallSite.class);
+  private static final Method METHOD_CALL_SITE_METHOD = new Method("methodCallSite", "(Ljava/lang/String;ZLjava/lang/Class;)" + METHOD_CALL_SITE_TYPE.getDescriptor());
+  private static final Method GET_PLAN_METHOD = new Method("getPlan", "()" + PLAN_TYPE.getDescriptor());
+  private static final String ROBOLECTRIC_INTERNAL_NAME = "org/robolectric/Robolectric";
+  private static final String APPLICATION_INTERNAL_NAME = "android/app/Application";
   private static final Method PLAN_RUN_METHOD = new Method("run", OBJECT_TYPE, new Type[]{OBJECT_TYPE, OBJECT_TYPE, Type.getType(Object[].class)});
   private static final Method HANDLE_EXCEPTION_METHOD = new Method("cleanStackTrace", THROWABLE_TYPE, new Type[]{THROWABLE_TYPE});
+  private static final Type SHADOWED_OBJECT_TYPE = Type.getType(ShadowedObject.class);
   private static final String DIRECT_OBJECT_MARKER_TYPE_DESC = Type.getObjectType(DirectObjectMarker.class.getName().replace('.', '/')).getDescriptor();
   private static final String ROBO_INIT_METHOD_NAME = "$$robo$init";
   static final String GET_ROBO_DATA_METHOD_NAME = "$$robo$getData";
   private static final String GET_ROBO_DATA_SIGNATURE = "()Ljava/lang/Object;";
+  private static final String CALL_SITE_FIELD_PREFIX = RobolectricInternals.ROBO_PREFIX + "callSite$";
+  private static final Type INTERCEPTION_SITE_TYPE = Type.getType(InterceptionSite.class);
+  private static final String INTERCEPTION_SITE_FIELD_PREFIX = RobolectricInternals.ROBO_PREFIX + "interceptionSite$";
 
   private static boolean debug = false;
 
+  static {
+    // ClassLoader.registerAsParallelCapable() is new in Java 7; without it the JVM loads through us one class at a time
+    try {
+      java.lang.reflect.Method registerAsParallelCapable = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+      registerAsParallelCapable.invoke(null);
+    } catch (NoSuchMethodException e) {
+      // Java 6; never mind
+    } catch (IllegalAccessException e) {
+      // never mind
+    } catch (InvocationTargetException e) {
+      // never mind
+    }
+  }
+
   private final Setup setup;
   private final URLClassLoader urls;
-  private final Map<String, Class> classes = new HashMap<String, Class>();
+  private final ConcurrentMap<String, Class> classes = new ConcurrentHashMap<String, Class>();
+  private final ConcurrentMap<String, Object> classLoadingLocks = new ConcurrentHashMap<String, Object>();
   private final Set<Setup.MethodRef> methodsToIntercept;
   private final Map<String, String> classesToRemap;
+  private final InstrumentedClassCache classCache;
+  private final PreinstrumentedJar preinstrumentedJar;
+  private final AtomicLong definedClassBytes = new AtomicLong();
   private int number = 0;
 
 
   public AsmInstrumentingClassLoader(Setup setup, URL... urls) {
+    this(setup, InstrumentedClassCache.fromSystemProperties(setup), urls);
+  }
+
+  public AsmInstrumentingClassLoader(Setup setup, InstrumentedClassCache classCache, URL... urls) {
+    this(setup, classCache, null, urls);
+  }
+
+  /**
+   * @param preinstrumentedJar if not null, classes found in it are defined as they are, without instrumenting them
+   */
+  public AsmInstrumentingClassLoader(Setup setup, InstrumentedClassCache classCache, PreinstrumentedJar preinstrumentedJar, URL... urls) {
     super(AsmInstrumentingClassLoader.class.getClassLoader());
     this.setup = setup;
+    this.classCache = classCache;
+    this.preinstrumentedJar = preinstrumentedJar;
     this.urls = new URLClassLoader(urls, null);
     classesToRemap = convertToSlashes(setup.classNameTranslations());
     methodsToIntercept = convertToSlashes(setup.methodsToIntercept());
   }
 
   @Override
-  synchronized public Class loadClass(String name) throws ClassNotFoundException {
+  public Class loadClass(String name) throws ClassNotFoundException {
     Class<?> theClass = classes.get(name);
-    if (theClass != null) {
-      if (theClass == MissingClassMarker.class) {
-        throw new ClassNotFoundException(name);
-      } else {
-        return theClass;
+    if (theClass == null) {
+      // classes may be loaded in parallel, but each one only once
+      synchronized (lockFor(name)) {
+        theClass = classes.get(name);
+        if (theClass == null) {
+          try {
+            theClass = acquireOrDelegate(name);
+          } catch (ClassNotFoundException e) {
+            classes.put(name, MissingClassMarker.class);
+            throw e;
+          }
+          classes.put(name, theClass);
+        }
       }
     }
 
+    if (theClass == MissingClassMarker.class) {
+      throw new ClassNotFoundException(name);
+    }
+    return theClass;
+  }
+
+  private Object lockFor(String className) {
+    Object newLock = new Object();
+    Object lock = classLoadingLocks.putIfAbsent(className, newLock);
+    return lock == null ? newLock : lock;
+  }
+
+  private Class<?> acquireOrDelegate(String name) throws ClassNotFoundException {
     boolean shouldComeFromThisClassLoader = setup.shouldAcquire(name);
 
-    try {
-      if (shouldComeFromThisClassLoader) {
-        theClass = findClass(name);
-      } else {
-        theClass = getParent().loadClass(name);
-      }
-    } catch (ClassNotFoundException e) {
-      classes.put(name, MissingClassMarker.class);
-      throw e;
+    if (shouldComeFromThisClassLoader) {
+      return findClass(name);
+    } else {
+      return getParent().loadClass(name);
     }
-
-    classes.put(name, theClass);
-    return theClass;
   }
 
   private static class MissingClassMarker {
@@ -110,7 +168,17 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
 
   @Override
   protected Class<?> findClass(final String className) throws ClassNotFoundException {
+    if (SpecializedPlans.isSpecializedPlanInterface(className)) {
+      byte[] bytes = SpecializedPlans.generateInterface(className);
+      return define(className, bytes);
+    }
+
     if (setup.shouldAcquire(className)) {
+      byte[] preinstrumentedBytes = preinstrumentedJar == null ? null : preinstrumentedJar.get(className);
+      if (preinstrumentedBytes != null) {
+        return define(className, preinstrumentedBytes);
+      }
+
       String classFilename = className.replace('.', '/') + ".class";
       InputStream classBytesStream = urls.getResourceAsStream(classFilename);
       if (classBytesStream == null) {
@@ -125,32 +193,14 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
         throw new ClassNotFoundException("couldn't load " + className, e);
       }
 
-      final ClassReader classReader = new ClassReader(origClassBytes);
-      ClassNode classNode = new ClassNode() {
-        @Override
-        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
-          desc = remapParamType(desc);
-          return super.visitField(access, name, desc, signature, value);
-        }
-
-        @Override
-        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
-          return super.visitMethod(access, name, remapParams(desc), signature, exceptions);
-        }
-      };
-      classReader.accept(classNode, 0);
-
       try {
-        byte[] bytes;
-        AsmClassInfo classInfo = new AsmClassInfo(className, classNode);
-        if (setup.shouldInstrument(classInfo)) {
-          bytes = getInstrumentedBytes(className, classNode, setup.containsStubs(classInfo));
-        } else {
-          bytes = origClassBytes;
+        byte[] bytes = classCache == null ? null : classCache.get(origClassBytes);
+        if (bytes == null) {
+          bytes = transformClass(className, origClassBytes);
+          if (classCache != null) classCache.put(origClassBytes, bytes);
         }
 //                System.out.println("[DEBUG] Defining " + classFilename + " (" + bytes.length + ") in " + this + ": class" + number++);
-        ensurePackage(className);
-        return defineClass(className, bytes, 0, bytes.length);
+        return define(className, bytes);
       } catch (Exception e) {
         throw new ClassNotFoundException("couldn't load " + className, e);
       } catch (OutOfMemoryError e) {
@@ -163,13 +213,109 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
     }
   }
 
+  private Class<?> define(String className, byte[] bytes) {
+    ensurePackage(className);
+    Class<?> definedClass = defineClass(className, bytes, 0, bytes.length);
+    definedClassBytes.addAndGet(bytes.length);
+    return definedClass;
+  }
+
+  /**
+   * @return the total size of the bytecode of the classes this loader has defined, a rough proxy for how much memory
+   *     it retains
+   */
+  public long getDefinedClassBytes() {
+    return definedClassBytes.get();
+  }
+
+  /**
+   * @return the bytes this class loader would define for the class, without defining it
+   */
+  byte[] instrumentedBytesFor(String className, byte[] origClassBytes) throws ClassNotFoundException {
+    return transformClass(className, origClassBytes);
+  }
+
+  /**
+   * @return the instrumented bytes for the class, or {@code origClassBytes} itself if it shouldn't be instrumented
+   */
+  private byte[] transformClass(String className, byte[] origClassBytes) throws ClassNotFoundException {
+    final ClassReader classReader = new ClassReader(origClassBytes);
+    ClassNode classNode = new ClassNode() {
+      @Override
+      public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+        desc = remapParamType(desc);
+        return super.visitField(access, name, desc, signature, value);
+      }
+
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+        return super.visitMethod(access, name, remapParams(desc), signature, exceptions);
+      }
+    };
+    classReader.accept(classNode, 0);
+
+    AsmClassInfo classInfo = new AsmClassInfo(className, classNode);
+    if (setup.shouldInstrument(classInfo)) {
+      return getInstrumentedBytes(className, classNode, setup.containsStubs(classInfo));
+    } else if (Setup.shouldDeferApplicationSetUp() && readsApplicationField(classNode)) {
+      return redirectApplicationFieldReads(origClassBytes);
+    } else {
+      return origClassBytes;
+    }
+  }
+
+  private static boolean readsApplicationField(ClassNode classNode) {
+    if (classNode.name.equals(ROBOLECTRIC_INTERNAL_NAME)) return false;
+
+    for (Object methodNode : classNode.methods) {
+      for (ListIterator it = ((MethodNode) methodNode).instructions.iterator(); it.hasNext(); ) {
+        if (isApplicationFieldRead((AbstractInsnNode) it.next())) return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isApplicationFieldRead(AbstractInsnNode node) {
+    if (node.getOpcode() != GETSTATIC) return false;
+    FieldInsnNode fieldInsnNode = (FieldInsnNode) node;
+    return fieldInsnNode.owner.equals(ROBOLECTRIC_INTERNAL_NAME) && fieldInsnNode.name.equals("application");
+  }
+
+  /**
+   * Turns reads of {@code Robolectric.application} into calls to {@code Robolectric.getApplication()}, so an
+   * application whose set-up was deferred is set up before anything sees it.
+   */
+  private static byte[] redirectApplicationFieldReads(byte[] origClassBytes) {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(origClassBytes).accept(classNode, 0);
+    for (Object methodNode : classNode.methods) {
+      InsnList instructions = ((MethodNode) methodNode).instructions;
+      for (ListIterator it = instructions.iterator(); it.hasNext(); ) {
+        AbstractInsnNode node = (AbstractInsnNode) it.next();
+        if (isApplicationFieldRead(node)) {
+          instructions.set(node, new MethodInsnNode(INVOKESTATIC, ROBOLECTRIC_INTERNAL_NAME, "getApplication",
+              "()L" + APPLICATION_INTERNAL_NAME + ";"));
+        }
+      }
+    }
+
+    // a call that pushes the same value leaves stack sizes and frames unchanged
+    ClassWriter classWriter = new ClassWriter(0);
+    classNode.accept(classWriter);
+    return classWriter.toByteArray();
+  }
+
   private void ensurePackage(final String className) {
     int lastDotIndex = className.lastIndexOf('.');
     if (lastDotIndex != -1) {
       String pckgName = className.substring(0, lastDotIndex);
       Package pckg = getPackage(pckgName);
       if (pckg == null) {
-        definePackage(pckgName, null, null, null, null, null, null, null);
+        try {
+          definePackage(pckgName, null, null, null, null, null, null, null);
+        } catch (IllegalArgumentException e) {
+          // another thread just defined it; fine
+        }
       }
     }
   }
@@ -381,6 +527,9 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
     private final String internalClassName;
     private final String className;
     private final Type classType;
+    private int callSiteCount = 0;
+    // intercepted method signature -> name of the static field holding its InterceptionSite
+    private final Map<String, String> interceptionSiteFieldNames = new HashMap<String, String>();
 
     public ClassInstrumentor(ClassNode classNode, boolean containsStubs) {
       this.classNode = classNode;
@@ -414,6 +563,15 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
       }
 
       classNode.fields.add(0, new FieldNode(ACC_PUBLIC, CLASS_HANDLER_DATA_FIELD_NAME, OBJECT_DESC, OBJECT_DESC, null));
+      if (!classNode.interfaces.contains(SHADOWED_OBJECT_TYPE.getInternalName())) {
+        classNode.interfaces.add(SHADOWED_OBJECT_TYPE.getInternalName());
+      }
+
+      if (StaticStateSnapshot.isEnabled() && !foundMethods.contains("<clinit>()V") && hasNonFinalStaticFields()) {
+        // no static initializer to notify the class handler about, but StaticStateSnapshot still wants to know; the
+        // setup fingerprint includes whether it's enabled, so cached classes instrumented otherwise aren't reused
+        classNode.methods.add(generateStaticStateRecorderMethod());
+      }
 
       if (!foundMethods.contains("<init>()V")) {
         MethodNode defaultConstructor = new MethodNode(ACC_PUBLIC, "<init>", "()V", "()V", null);
@@ -468,7 +626,8 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
       }
 
       {
-        MethodNode initMethodNode = new MethodNode(ACC_PROTECTED, GET_ROBO_DATA_METHOD_NAME, GET_ROBO_DATA_SIGNATURE, null, null);
+        // public, since it implements ShadowedObject
+        MethodNode initMethodNode = new MethodNode(ACC_PUBLIC, GET_ROBO_DATA_METHOD_NAME, GET_ROBO_DATA_SIGNATURE, null, null);
         MyGenerator m = new MyGenerator(initMethodNode);
         m.loadThis();                                         // this
         m.getField(classType, CLASS_HANDLER_DATA_FIELD_NAME, OBJECT_TYPE);  // contents of __robo_data__
@@ -685,15 +844,26 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
       }
 
       // instance []
-      instructions.add(new LdcInsnNode(targetMethod.owner + "/" + targetMethod.name + targetMethod.desc)); // target method signature
-      // instance [] signature
-      instructions.add(new InsnNode(DUP_X2));       // signature instance [] signature
-      instructions.add(new InsnNode(POP));          // signature instance []
-
-      instructions.add(new LdcInsnNode(classType)); // signature instance [] class
-      instructions.add(new MethodInsnNode(INVOKESTATIC,
-          Type.getType(RobolectricInternals.class).getInternalName(), "intercept",
-          "(Ljava/lang/String;Ljava/lang/Object;[Ljava/lang/Object;Ljava/lang/Class;)Ljava/lang/Object;"));
+      // find the handler via this call's interception site, creating it on first call
+      String signature = targetMethod.owner + "/" + targetMethod.name + targetMethod.desc;
+      String interceptionSiteFieldName = interceptionSiteFieldFor(signature);
+      LabelNode haveInterceptionSite = new LabelNode();
+      instructions.add(new FieldInsnNode(GETSTATIC, internalClassName, interceptionSiteFieldName,
+          INTERCEPTION_SITE_TYPE.getDescriptor()));                        // instance [] site
+      instructions.add(new InsnNode(DUP));                                 // instance [] site site
+      instructions.add(new JumpInsnNode(IFNONNULL, haveInterceptionSite)); // instance [] site
+      instructions.add(new InsnNode(POP));                                 // instance []
+      instructions.add(new LdcInsnNode(signature));                        // instance [] signature
+      instructions.add(new LdcInsnNode(classType));                        // instance [] signature class
+      instructions.add(new MethodInsnNode(INVOKESTATIC, ROBOLECTRIC_INTERNALS_TYPE.getInternalName(),
+          "interceptionSite", "(Ljava/lang/String;Ljava/lang/Class;)" + INTERCEPTION_SITE_TYPE.getDescriptor()));
+      instructions.add(new InsnNode(DUP));                                 // instance [] site site
+      instructions.add(new FieldInsnNode(PUTSTATIC, internalClassName, interceptionSiteFieldName,
+          INTERCEPTION_SITE_TYPE.getDescriptor()));                        // instance [] site
+      instructions.add(haveInterceptionSite);
+
+      instructions.add(new MethodInsnNode(INVOKESTATIC, ROBOLECTRIC_INTERNALS_TYPE.getInternalName(), "intercept",
+          "(Ljava/lang/Object;[Ljava/lang/Object;" + INTERCEPTION_SITE_TYPE.getDescriptor() + ")Ljava/lang/Object;"));
       Type returnType = Type.getReturnType(targetMethod.desc);
       // todo: make this honor the return value if somebody cares about what intercept returns
       switch (returnType.getSort()) {
@@ -753,6 +923,34 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
       return methodNode;
     }
 
+    private MethodNode generateStaticStateRecorderMethod() {
+      MethodNode methodNode = new MethodNode(ACC_STATIC, "<clinit>", "()V", "()V", null);
+      MyGenerator m = new MyGenerator(methodNode);
+      m.push(classType);
+      m.invokeStatic(ROBOLECTRIC_INTERNALS_TYPE, new Method("recordStaticState", "(Ljava/lang/Class;)V"));
+      m.returnValue();
+      m.endMethod();
+      return methodNode;
+    }
+
+    private boolean hasNonFinalStaticFields() {
+      for (Object field : classNode.fields) {
+        FieldNode fieldNode = (FieldNode) field;
+        if (fieldNode.name.startsWith(RobolectricInternals.ROBO_PREFIX)) continue; // our own call sites
+        if ((fieldNode.access & ACC_STATIC) != 0 && (fieldNode.access & ACC_FINAL) == 0) return true;
+      }
+      return false;
+    }
+
+    private void loadRoboDataOrNull(MyGenerator m) {
+      if (m.isStatic()) {
+        m.loadNull();
+      } else {
+        m.loadThis();
+        m.invokeVirtual(classType, new Method(GET_ROBO_DATA_METHOD_NAME, GET_ROBO_DATA_SIGNATURE));
+      }
+    }
+
     private void generateCallToClassHandler(MethodNode originalMethod, String originalMethodName, MyGenerator m) {
       int planLocalVar = m.newLocal(PLAN_TYPE);
       int exceptionLocalVar = m.newLocal(THROWABLE_TYPE);
@@ -792,30 +990,54 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
         m.mark(notInstanceOfThis);
       }
 
-      // prepare for call to classHandler.methodInvoked(String signature, boolean isStatic)
+      // find the plan via this method's call site, creating it on first call
+      String callSiteFieldName = newCallSiteField();
+      Label haveCallSite = new Label();
+      m.getStatic(classType, callSiteFieldName, METHOD_CALL_SITE_TYPE); // callSite
+      m.dup();                                                   // callSite, callSite
+      m.ifNonNull(haveCallSite);                                 // callSite
+      m.pop();
       m.push(classType.getInternalName() + "/" + originalMethodName + originalMethod.desc);
       m.push(m.isStatic());
       m.push(classType);                                         // my class
-      m.invokeStatic(ROBOLECTRIC_INTERNALS_TYPE, METHOD_INVOKED_METHOD);
+      m.invokeStatic(ROBOLECTRIC_INTERNALS_TYPE, METHOD_CALL_SITE_METHOD); // callSite
+      m.dup();                                                   // callSite, callSite
+      m.putStatic(classType, callSiteFieldName, METHOD_CALL_SITE_TYPE);    // callSite
+      m.mark(haveCallSite);
+      m.invokeVirtual(METHOD_CALL_SITE_TYPE, GET_PLAN_METHOD);  // plan
       m.storeLocal(planLocalVar);
 
       m.loadLocal(planLocalVar); // plan
       m.ifNull(directCall);
 
-      // prepare for call to plan.run(Object instance, Object[] params)
       TryCatch tryCatchForHandler = m.tryStart(THROWABLE_TYPE);
+
+      // if the plan takes our params unboxed, call it without allocating
+      Type specializedPlanType = SpecializedPlans.interfaceTypeFor(originalMethod.desc);
+      Label genericCall = new Label();
+      m.loadLocal(planLocalVar); // plan
+      m.instanceOf(specializedPlanType);
+      m.ifZCmp(GeneratorAdapter.EQ, genericCall);
       m.loadLocal(planLocalVar); // plan
+      m.checkCast(specializedPlanType);
       m.loadThisOrNull();        // instance
-      if (m.isStatic()) {        // roboData
-        m.loadNull();
-      } else {
-        m.loadThis();
-        m.invokeVirtual(classType, new Method(GET_ROBO_DATA_METHOD_NAME, GET_ROBO_DATA_SIGNATURE));
+      loadRoboDataOrNull(m);     // roboData
+      m.loadArgs();              // params...
+      m.invokeInterface(specializedPlanType, SpecializedPlans.runMethodFor(originalMethod.desc));
+      Type returnType = m.getReturnType();
+      if (returnType.getSort() == OBJECT || returnType.getSort() == ARRAY) {
+        m.checkCast(returnType);
       }
+      m.goTo(doReturn);
+
+      // otherwise, prepare for call to plan.run(Object instance, Object[] params)
+      m.mark(genericCall);
+      m.loadLocal(planLocalVar); // plan
+      m.loadThisOrNull();        // instance
+      loadRoboDataOrNull(m);     // roboData
       m.loadArgArray();          // params
       m.invokeInterface(PLAN_TYPE, PLAN_RUN_METHOD);
 
-      Type returnType = m.getReturnType();
       int sort = returnType.getSort();
       switch (sort) {
         case VOID:
@@ -871,6 +1093,24 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
       m.returnValue();
     }
 
+    private String newCallSiteField() {
+      String fieldName = CALL_SITE_FIELD_PREFIX + callSiteCount++;
+      classNode.fields.add(new FieldNode(ACC_PRIVATE | ACC_STATIC | ACC_SYNTHETIC, fieldName,
+          METHOD_CALL_SITE_TYPE.getDescriptor(), null, null));
+      return fieldName;
+    }
+
+    private String interceptionSiteFieldFor(String signature) {
+      String fieldName = interceptionSiteFieldNames.get(signature);
+      if (fieldName == null) {
+        fieldName = INTERCEPTION_SITE_FIELD_PREFIX + interceptionSiteFieldNames.size();
+        classNode.fields.add(new FieldNode(ACC_PRIVATE | ACC_STATIC | ACC_SYNTHETIC, fieldName,
+            INTERCEPTION_SITE_TYPE.getDescriptor(), null, null));
+        interceptionSiteFieldNames.put(signature, fieldName);
+      }
+      return fieldName;
+    }
+
     private boolean isEnum() {
       return (classNode.access & ACC_ENUM) != 0;
     }
@@ -0,0 +1,117 @@
+package org.robolectric.bytecode;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads (and so instruments) a list of classes on background threads, ahead of the tests that need them.
+ * <p/>
+ * Enable by setting the {@code robolectric.preloadClasses} system property to a file listing class names, one per
+ * line; blank lines and lines starting with {@code #} are ignored.
+ */
+public class ClassPreloader {
+  public static final String PRELOAD_CLASSES_PROPERTY = "robolectric.preloadClasses";
+
+  private final ClassLoader classLoader;
+  private final ExecutorService executorService;
+  private final AtomicInteger loadedCount = new AtomicInteger();
+
+  public ClassPreloader(ClassLoader classLoader) {
+    this(classLoader, Runtime.getRuntime().availableProcessors());
+  }
+
+  public ClassPreloader(ClassLoader classLoader, int threadCount) {
+    this.classLoader = classLoader;
+    this.executorService = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+      private final AtomicInteger threadNumber = new AtomicInteger();
+
+      @Override public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "robolectric-preloader-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Starts preloading the classes listed in the file named by the {@code robolectric.preloadClasses} system
+   * property, if it's set.
+   */
+  public static ClassPreloader fromSystemProperties(ClassLoader classLoader) {
+    String classListFileName = System.getProperty(PRELOAD_CLASSES_PROPERTY);
+    if (classListFileName == null || classListFileName.isEmpty()) return null;
+
+    List<String> classNames;
+    try {
+      classNames = readClassList(new File(classListFileName));
+    } catch (IOException e) {
+      System.out.println("[WARN] couldn't read " + classListFileName + ": " + e);
+      return null;
+    }
+
+    ClassPreloader classPreloader = new ClassPreloader(classLoader);
+    classPreloader.preload(classNames);
+    return classPreloader;
+  }
+
+  static List<String> readClassList(File file) throws IOException {
+    List<String> classNames = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.length() > 0 && !line.startsWith("#")) {
+          classNames.add(line);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return classNames;
+  }
+
+  /**
+   * Queues up the classes for loading and returns immediately; may only be called once. Classes which can't be
+   * loaded are skipped, and will fail again when something actually needs them.
+   */
+  public void preload(Collection<String> classNames) {
+    for (final String className : classNames) {
+      executorService.execute(new Runnable() {
+        @Override public void run() {
+          try {
+            classLoader.loadClass(className);
+            loadedCount.incrementAndGet();
+          } catch (ClassNotFoundException e) {
+            // never mind
+          } catch (LinkageError e) {
+            // never mind
+          }
+        }
+      });
+    }
+    executorService.shutdown();
+  }
+
+  /**
+   * @return true if all the classes were loaded before the timeout
+   */
+  public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+    return executorService.awaitTermination(timeout, unit);
+  }
+
+  public int getLoadedCount() {
+    return loadedCount.get();
+  }
+}
@@ -0,0 +1,208 @@
+package org.robolectric.bytecode;
+
+import org.robolectric.util.AtomicFiles;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.robolectric.util.Util.readBytes;
+
+/**
+ * Keeps instrumented class bytes on disk so later JVMs can define classes without running ASM again.
+ * <p/>
+ * Entries live in a subdirectory named for a hash of the {@link Setup#getFingerprint() Setup fingerprint} and of
+ * the instrumenting code itself, and are named for a hash of the original class bytes, so a changed class is simply
+ * a different entry. Unreadable entries are treated as stale and replaced.
+ * <p/>
+ * Enable by setting the {@code robolectric.instrumentedClassCache} system property to a directory.
+ */
+public class InstrumentedClassCache {
+  public static final String CACHE_DIR_PROPERTY = "robolectric.instrumentedClassCache";
+
+  private static final int MAGIC = 0x524f424f;
+  private static final int FORMAT_VERSION = 2;
+  private static final int UNCHANGED = -1;
+  private static final String[] INSTRUMENTING_CLASS_FILES = {
+      "AsmInstrumentingClassLoader.class", "AsmInstrumentingClassLoader$ClassInstrumentor.class",
+      "InstrumentedClassCache.class", "Setup.class", "SpecializedPlans.class"
+  };
+
+  private final File cacheDir;
+  private final String setupHash;
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+  private final AtomicInteger stale = new AtomicInteger();
+
+  // shared by every class loader using the same directory and setup, so they're reported together, once
+  private static final Map<File, InstrumentedClassCache> sharedCaches = new HashMap<File, InstrumentedClassCache>();
+
+  public InstrumentedClassCache(File baseDir, Setup setup) {
+    this.setupHash = setupHash(setup);
+    this.cacheDir = new File(baseDir, setupHash);
+  }
+
+  /**
+   * @return a cache in the directory named by the {@code robolectric.instrumentedClassCache} system property, or
+   *     null if it isn't set
+   */
+  public static InstrumentedClassCache fromSystemProperties(Setup setup) {
+    String cacheDirName = System.getProperty(CACHE_DIR_PROPERTY);
+    if (cacheDirName == null || cacheDirName.isEmpty()) return null;
+
+    InstrumentedClassCache cache = new InstrumentedClassCache(new File(cacheDirName), setup);
+    synchronized (sharedCaches) {
+      InstrumentedClassCache sharedCache = sharedCaches.get(cache.cacheDir);
+      if (sharedCache != null) return sharedCache;
+
+      if (sharedCaches.isEmpty()) {
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+          @Override public void run() {
+            synchronized (sharedCaches) {
+              for (InstrumentedClassCache sharedCache : sharedCaches.values()) {
+                System.out.println("[INFO] " + sharedCache);
+              }
+            }
+          }
+        });
+      }
+      sharedCaches.put(cache.cacheDir, cache);
+      return cache;
+    }
+  }
+
+  /**
+   * @return the cached instrumented bytes for the class, or null if there's no usable entry
+   */
+  public byte[] get(byte[] origClassBytes) {
+    String origHash = hash(origClassBytes);
+    File file = fileFor(origHash);
+    if (!file.exists()) {
+      misses.incrementAndGet();
+      return null;
+    }
+
+    try {
+      DataInputStream in = new DataInputStream(new FileInputStream(file));
+      try {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+            || !in.readUTF().equals(setupHash) || !in.readUTF().equals(origHash)) {
+          return staleEntry(file);
+        }
+
+        int length = in.readInt();
+        byte[] bytes;
+        if (length == UNCHANGED) {
+          bytes = origClassBytes;
+        } else {
+          bytes = new byte[length];
+          in.readFully(bytes);
+        }
+        hits.incrementAndGet();
+        return bytes;
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      return staleEntry(file);
+    }
+  }
+
+  public void put(final byte[] origClassBytes, final byte[] classBytes) {
+    final String origHash = hash(origClassBytes);
+    File file = fileFor(origHash);
+    try {
+      AtomicFiles.write(file, new AtomicFiles.Writer() {
+        @Override public void writeTo(OutputStream stream) throws IOException {
+          DataOutputStream out = new DataOutputStream(stream);
+          out.writeInt(MAGIC);
+          out.writeInt(FORMAT_VERSION);
+          out.writeUTF(setupHash);
+          out.writeUTF(origHash);
+          if (classBytes == origClassBytes) {
+            out.writeInt(UNCHANGED);
+          } else {
+            out.writeInt(classBytes.length);
+            out.write(classBytes);
+          }
+          out.flush();
+        }
+      });
+    } catch (IOException e) {
+      System.out.println("[WARN] couldn't write " + file + ": " + e);
+    }
+  }
+
+  public int getHitCount() {
+    return hits.get();
+  }
+
+  public int getMissCount() {
+    return misses.get();
+  }
+
+  public int getStaleCount() {
+    return stale.get();
+  }
+
+  public File getCacheDir() {
+    return cacheDir;
+  }
+
+  private byte[] staleEntry(File file) {
+    stale.incrementAndGet();
+    misses.incrementAndGet();
+    file.delete();
+    return null;
+  }
+
+  private File fileFor(String origHash) {
+    return new File(cacheDir, origHash + ".class");
+  }
+
+  /**
+   * @return a hash of the setup's fingerprint and of the instrumenting code; classes instrumented under a different
+   *     hash may not match what this setup would produce
+   */
+  static String setupHash(Setup setup) {
+    return hash((setup.getFingerprint() + ";" + instrumentingCodeHash()).getBytes());
+  }
+
+  private static String instrumentingCodeHash() {
+    StringBuilder buf = new StringBuilder();
+    for (String classFile : INSTRUMENTING_CLASS_FILES) {
+      InputStream in = InstrumentedClassCache.class.getResourceAsStream(classFile);
+      if (in == null) {
+        buf.append(classFile);
+        continue;
+      }
+
+      try {
+        buf.append(hash(readBytes(in)));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return buf.toString();
+  }
+
+  static String hash(byte[] bytes) {
+    return AtomicFiles.sha1(bytes);
+  }
+
+  @Override public String toString() {
+    return "InstrumentedClassCache{" +
+        "cacheDir=" + cacheDir +
+        ", hits=" + hits +
+        ", misses=" + misses +
+        ", stale=" + stale +
+        '}';
+  }
+}
@@ -0,0 +1,15 @@
+package org.robolectric.bytecode;
+
+/**
+ * A {@link ClassHandler} which can decide once how to handle each intercepted call site, rather than on every call.
+ * <p/>
+ * Class handlers which don't implement this have {@link ClassHandler#intercept(String, Object, Object[], Class)}
+ * called for each intercepted call instead. See {@link InterceptionSite}.
+ */
+public interface InterceptingClassHandler extends ClassHandler {
+  /**
+   * @return the plan to run instead of the intercepted method named by {@code signature} when it's called from
+   *     {@code theClass}; its {@code roboData} is always null
+   */
+  Plan interceptionPlan(String signature, Class<?> theClass);
+}
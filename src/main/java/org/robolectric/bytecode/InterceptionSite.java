@@ -0,0 +1,74 @@
+package org.robolectric.bytecode;
+
+/**
+ * Remembers how to handle one intercepted call to a method in {@link Setup#methodsToIntercept()}.
+ * <p/>
+ * Instrumented classes keep an InterceptionSite in a static field for each method they call that's intercepted, so
+ * the class handler is asked how to handle it only on the first call, and again whenever a different class handler is
+ * installed. Class handlers which aren't {@link InterceptingClassHandler}s have
+ * {@link ClassHandler#intercept(String, Object, Object[], Class)} called for each call instead. See
+ * {@link MethodCallSite}.
+ */
+public class InterceptionSite {
+  private final String signature;
+  private final Class<?> theClass;
+
+  // not volatile: Binding's fields are final, so racing threads at worst both compute an equivalent plan
+  private Binding binding;
+
+  public InterceptionSite(String signature, Class<?> theClass) {
+    this.signature = signature;
+    this.theClass = theClass;
+  }
+
+  public ClassHandler.Plan getPlan() {
+    ClassHandler classHandler = RobolectricInternals.getClassHandler();
+    Binding binding = this.binding;
+    if (binding == null || binding.classHandler != classHandler) {
+      binding = new Binding(classHandler, planFor(classHandler));
+      this.binding = binding;
+    }
+    return binding.plan;
+  }
+
+  private ClassHandler.Plan planFor(ClassHandler classHandler) {
+    if (classHandler instanceof InterceptingClassHandler) {
+      return ((InterceptingClassHandler) classHandler).interceptionPlan(signature, theClass);
+    }
+    return new InterceptingPlan(classHandler, signature, theClass);
+  }
+
+  public Object intercept(Object instance, Object[] params) throws Throwable {
+    return getPlan().run(instance, null, params);
+  }
+
+  public String getSignature() {
+    return signature;
+  }
+
+  private static class Binding {
+    private final ClassHandler classHandler;
+    private final ClassHandler.Plan plan;
+
+    Binding(ClassHandler classHandler, ClassHandler.Plan plan) {
+      this.classHandler = classHandler;
+      this.plan = plan;
+    }
+  }
+
+  private static class InterceptingPlan implements ClassHandler.Plan {
+    private final ClassHandler classHandler;
+    private final String signature;
+    private final Class<?> theClass;
+
+    InterceptingPlan(ClassHandler classHandler, String signature, Class<?> theClass) {
+      this.classHandler = classHandler;
+      this.signature = signature;
+      this.theClass = theClass;
+    }
+
+    @Override public Object run(Object instance, Object roboData, Object[] params) throws Throwable {
+      return classHandler.intercept(signature, instance, params, theClass);
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package org.robolectric.bytecode;
+
+/**
+ * Remembers the {@link ClassHandler.Plan} chosen for one instrumented method.
+ * <p/>
+ * Instrumented methods keep their MethodCallSite in a static field, so the class handler is asked for a plan only on
+ * the first call, and again whenever a different class handler is installed; every other call is a field read and
+ * an identity check.
+ */
+public class MethodCallSite {
+  private final String signature;
+  private final boolean isStatic;
+  private final Class<?> theClass;
+
+  // not volatile: Binding's fields are final, so racing threads at worst both compute an equivalent plan
+  private Binding binding;
+
+  public MethodCallSite(String signature, boolean isStatic, Class<?> theClass) {
+    this.signature = signature;
+    this.isStatic = isStatic;
+    this.theClass = theClass;
+  }
+
+  public ClassHandler.Plan getPlan() {
+    ClassHandler classHandler = RobolectricInternals.getClassHandler();
+    Binding binding = this.binding;
+    if (binding == null || binding.classHandler != classHandler) {
+      binding = new Binding(classHandler, classHandler.methodInvoked(signature, isStatic, theClass));
+      this.binding = binding;
+    }
+    return binding.plan;
+  }
+
+  public String getSignature() {
+    return signature;
+  }
+
+  private static class Binding {
+    private final ClassHandler classHandler;
+    private final ClassHandler.Plan plan;
+
+    Binding(ClassHandler classHandler, ClassHandler.Plan plan) {
+      this.classHandler = classHandler;
+      this.plan = plan;
+    }
+  }
+}
@@ -0,0 +1,234 @@
+package org.robolectric.bytecode;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import static org.robolectric.util.Util.readBytes;
+
+/**
+ * A jar of SDK classes instrumented ahead of time, so {@link AsmInstrumentingClassLoader} can define them without
+ * running ASM.
+ * <p/>
+ * The manifest records the SDK version and a hash of the {@link Setup} the classes were instrumented under (see
+ * {@link InstrumentedClassCache}); a jar which doesn't match the current ones is ignored.
+ * <p/>
+ * Build one with {@link org.robolectric.SdkJarPreinstrumenter}, then enable it by setting the
+ * {@code robolectric.preinstrumentedJarDir} system property to the directory it was written to.
+ * <p/>
+ * A jar stays open until it's {@link #close() closed}; those from {@link #fromSystemProperties(Setup, String)} are
+ * shared by every class loader in the JVM, and closed when it exits.
+ */
+public class PreinstrumentedJar implements Closeable {
+  public static final String PREINSTRUMENTED_JAR_DIR_PROPERTY = "robolectric.preinstrumentedJarDir";
+
+  private static final Attributes.Name SETUP_HASH_ATTRIBUTE = new Attributes.Name("Robolectric-Setup-Hash");
+  private static final Attributes.Name SDK_VERSION_ATTRIBUTE = new Attributes.Name("Robolectric-Sdk-Version");
+
+  // by file; null where there's no usable jar, so it's only looked for once
+  private static final Map<File, PreinstrumentedJar> sharedJars = new HashMap<File, PreinstrumentedJar>();
+
+  private final JarFile jarFile;
+  private final String setupHash;
+  private final String sdkVersion;
+
+  private PreinstrumentedJar(JarFile jarFile, Attributes attributes) {
+    this.jarFile = jarFile;
+    this.setupHash = attributes.getValue(SETUP_HASH_ATTRIBUTE);
+    this.sdkVersion = attributes.getValue(SDK_VERSION_ATTRIBUTE);
+  }
+
+  public static String fileNameFor(String sdkVersion) {
+    return "android-" + sdkVersion + "-instrumented.jar";
+  }
+
+  /**
+   * @return the jar for the SDK version in the directory named by the {@code robolectric.preinstrumentedJarDir}
+   *     system property, or null if the property isn't set or there's no usable jar; don't close it, since it's
+   *     shared
+   */
+  public static PreinstrumentedJar fromSystemProperties(Setup setup, String sdkVersion) {
+    String jarDirName = System.getProperty(PREINSTRUMENTED_JAR_DIR_PROPERTY);
+    if (jarDirName == null || jarDirName.isEmpty()) return null;
+
+    File file = new File(jarDirName, fileNameFor(sdkVersion));
+    PreinstrumentedJar jar;
+    synchronized (sharedJars) {
+      if (sharedJars.containsKey(file)) {
+        jar = sharedJars.get(file);
+      } else {
+        if (sharedJars.isEmpty()) {
+          Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override public void run() {
+              synchronized (sharedJars) {
+                for (PreinstrumentedJar sharedJar : sharedJars.values()) {
+                  if (sharedJar != null) sharedJar.close();
+                }
+              }
+            }
+          });
+        }
+        jar = read(file);
+        sharedJars.put(file, jar);
+      }
+    }
+
+    if (jar == null || !jar.isFor(setup, sdkVersion, file)) return null;
+    return jar;
+  }
+
+  /**
+   * @return the jar, or null if it doesn't exist or was built for a different setup or SDK version; the caller must
+   *     {@link #close()} it
+   */
+  public static PreinstrumentedJar open(File file, Setup setup, String sdkVersion) {
+    PreinstrumentedJar jar = read(file);
+    if (jar == null) return null;
+
+    if (!jar.isFor(setup, sdkVersion, file)) {
+      jar.close();
+      return null;
+    }
+    return jar;
+  }
+
+  private static PreinstrumentedJar read(File file) {
+    if (!file.exists()) {
+      System.out.println("[WARN] no pre-instrumented jar at " + file);
+      return null;
+    }
+
+    try {
+      JarFile jarFile = new JarFile(file);
+      try {
+        Manifest manifest = jarFile.getManifest();
+        return new PreinstrumentedJar(jarFile, manifest == null ? new Attributes() : manifest.getMainAttributes());
+      } catch (IOException e) {
+        jarFile.close();
+        throw e;
+      }
+    } catch (IOException e) {
+      System.out.println("[WARN] couldn't read " + file + ": " + e);
+      return null;
+    }
+  }
+
+  private boolean isFor(Setup setup, String sdkVersion, File file) {
+    if (InstrumentedClassCache.setupHash(setup).equals(setupHash) && sdkVersion.equals(this.sdkVersion)) return true;
+
+    System.out.println("[WARN] ignoring " + file + ", which was built for a different setup or SDK version");
+    return false;
+  }
+
+  /**
+   * Instruments every class that {@code setup} would acquire from the given jars, and writes them to
+   * {@code outputFile}. Where more than one jar has the same class, the first one wins, as on a classpath.
+   *
+   * @return the number of classes written
+   */
+  public static int write(File outputFile, Setup setup, String sdkVersion, List<URL> inputJars) throws IOException {
+    AsmInstrumentingClassLoader classLoader = new AsmInstrumentingClassLoader(setup, (InstrumentedClassCache) null,
+        inputJars.toArray(new URL[inputJars.size()]));
+
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().put(SETUP_HASH_ATTRIBUTE, InstrumentedClassCache.setupHash(setup));
+    manifest.getMainAttributes().put(SDK_VERSION_ATTRIBUTE, sdkVersion);
+
+    Set<String> written = new HashSet<String>();
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(outputFile), manifest);
+    try {
+      for (URL inputJar : inputJars) {
+        JarFile jarFile = new JarFile(toFile(inputJar));
+        try {
+          Enumeration<JarEntry> entries = jarFile.entries();
+          while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            String entryName = entry.getName();
+            if (!entryName.endsWith(".class") || written.contains(entryName)) continue;
+
+            String className = entryName.substring(0, entryName.length() - ".class".length()).replace('/', '.');
+            if (!setup.shouldAcquire(className)) continue;
+
+            byte[] classBytes;
+            InputStream in = jarFile.getInputStream(entry);
+            try {
+              classBytes = classLoader.instrumentedBytesFor(className, readBytes(in));
+            } catch (Exception e) {
+              // leave it to be instrumented at runtime, where it'll fail again if it's really needed
+              System.out.println("[WARN] couldn't instrument " + className + ": " + e);
+              continue;
+            } finally {
+              in.close();
+            }
+
+            out.putNextEntry(new ZipEntry(entryName));
+            out.write(classBytes);
+            out.closeEntry();
+            written.add(entryName);
+          }
+        } finally {
+          jarFile.close();
+        }
+      }
+    } finally {
+      out.close();
+    }
+    return written.size();
+  }
+
+  private static File toFile(URL url) {
+    try {
+      return new File(url.toURI());
+    } catch (URISyntaxException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @return the instrumented bytes for the class, or null if the jar doesn't have it
+   */
+  public byte[] get(String className) {
+    ZipEntry entry = jarFile.getEntry(className.replace('.', '/') + ".class");
+    if (entry == null) return null;
+
+    try {
+      InputStream in = jarFile.getInputStream(entry);
+      try {
+        return readBytes(in);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  @Override public void close() {
+    try {
+      jarFile.close();
+    } catch (IOException e) {
+      System.out.println("[WARN] couldn't close " + jarFile.getName() + ": " + e);
+    }
+  }
+
+  @Override public String toString() {
+    return "PreinstrumentedJar{" + jarFile.getName() + "}";
+  }
+}
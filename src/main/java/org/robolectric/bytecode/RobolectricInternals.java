@@ -65,6 +65,12 @@ public class RobolectricInternals {
   @SuppressWarnings({"UnusedDeclaration"})
   public static void classInitializing(Class clazz) throws Exception {
     classHandler.classInitializing(clazz);
+    StaticStateSnapshot.record(clazz);
+  }
+
+  @SuppressWarnings({"UnusedDeclaration"})
+  public static void recordStaticState(Class clazz) {
+    StaticStateSnapshot.record(clazz);
   }
 
   @SuppressWarnings({"UnusedDeclaration"})
@@ -78,9 +84,19 @@ public class RobolectricInternals {
   }
 
   @SuppressWarnings({"UnusedDeclaration"})
-  public static Object intercept(String signature, Object instance, Object[] params, Class theClass) throws Throwable {
+  public static MethodCallSite methodCallSite(String signature, boolean isStatic, Class<?> theClass) {
+    return new MethodCallSite(signature, isStatic, theClass);
+  }
+
+  @SuppressWarnings({"UnusedDeclaration"})
+  public static InterceptionSite interceptionSite(String signature, Class<?> theClass) {
+    return new InterceptionSite(signature, theClass);
+  }
+
+  @SuppressWarnings({"UnusedDeclaration"})
+  public static Object intercept(Object instance, Object[] params, InterceptionSite interceptionSite) throws Throwable {
     try {
-      return classHandler.intercept(signature, instance, params, theClass);
+      return interceptionSite.intercept(instance, params);
     } catch(java.lang.LinkageError e) {
       throw new Exception(e);
     }
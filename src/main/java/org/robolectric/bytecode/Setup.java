@@ -37,11 +37,18 @@ import java.util.Set;
 import static java.util.Arrays.asList;
 
 public class Setup {
+  /**
+   * If set to {@code true}, each test's application isn't set up until something asks for it; see
+   * {@link org.robolectric.Robolectric#getApplication()}.
+   */
+  public static final String DEFER_APPLICATION_SET_UP_PROPERTY = "robolectric.lazyApplication";
+
   public static final List<String> CLASSES_TO_ALWAYS_DELEGATE = stringify(
       RobolectricBase.class,
       TestLifecycle.class,
       RealObject.class,
       ShadowWrangler.class,
+      ShadowInvokerGenerator.class,
       AndroidManifest.class,
       DatabaseConfig.DatabaseMap.class,
       R.class,
@@ -65,6 +72,7 @@ public class Setup {
       I18nException.class,
       Transcript.class,
       org.robolectric.bytecode.DirectObjectMarker.class,
+      ShadowedObject.class,
       ParallelUniverseInterface.class
   );
 
@@ -178,6 +186,35 @@ public class Setup {
     return classInfo.getName().startsWith("com.google.android.maps.");
   }
 
+  /**
+   * Describes everything about this Setup that affects instrumented bytecode; classes instrumented under one
+   * fingerprint are never reused under another.
+   * <p/>
+   * Subclasses whose {@link #shouldInstrument(ClassInfo)} or {@link #containsStubs(ClassInfo)} depend on their
+   * own state should add that state here.
+   */
+  public String getFingerprint() {
+    List<String> methodRefs = new ArrayList<String>();
+    for (MethodRef methodRef : methodsToIntercept()) {
+      methodRefs.add(methodRef.className + "." + methodRef.methodName);
+    }
+    Collections.sort(methodRefs);
+
+    List<String> translations = new ArrayList<String>();
+    for (Map.Entry<String, String> entry : classNameTranslations().entrySet()) {
+      translations.add(entry.getKey() + "=" + entry.getValue());
+    }
+    Collections.sort(translations);
+
+    return getClass().getName() + ";intercept=" + methodRefs + ";translate=" + translations
+        + ";deferApplicationSetUp=" + shouldDeferApplicationSetUp()
+        + ";snapshotStaticState=" + StaticStateSnapshot.isEnabled();
+  }
+
+  public static boolean shouldDeferApplicationSetUp() {
+    return Boolean.getBoolean(DEFER_APPLICATION_SET_UP_PROPERTY);
+  }
+
   public static class MethodRef {
     public final String className;
     public final String methodName;
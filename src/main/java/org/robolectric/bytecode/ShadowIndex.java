@@ -0,0 +1,79 @@
+package org.robolectric.bytecode;
+
+import org.robolectric.annotation.processing.ShadowIndexProcessor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The shadows listed in the indexes written by {@link ShadowIndexProcessor} at build time, keyed by the name of the
+ * class they shadow.
+ */
+public class ShadowIndex {
+  private static ShadowIndex defaultIndex;
+
+  private final Map<String, ShadowConfig> shadowConfigs;
+
+  ShadowIndex(Map<String, ShadowConfig> shadowConfigs) {
+    this.shadowConfigs = shadowConfigs;
+  }
+
+  /**
+   * @return the index of every shadow index resource visible to Robolectric's own class loader, read on first use
+   */
+  public static synchronized ShadowIndex getDefault() {
+    if (defaultIndex == null) {
+      defaultIndex = load(ShadowIndex.class.getClassLoader());
+    }
+    return defaultIndex;
+  }
+
+  public static ShadowIndex load(ClassLoader classLoader) {
+    Map<String, ShadowConfig> shadowConfigs = new HashMap<String, ShadowConfig>();
+    try {
+      Enumeration<URL> resources = classLoader.getResources(ShadowIndexProcessor.INDEX_RESOURCE_NAME);
+      while (resources.hasMoreElements()) {
+        read(resources.nextElement(), shadowConfigs);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return new ShadowIndex(Collections.unmodifiableMap(shadowConfigs));
+  }
+
+  private static void read(URL url, Map<String, ShadowConfig> shadowConfigs) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] parts = line.trim().split(" ");
+        if (parts.length != 5) continue;
+
+        String realClassName = parts[0];
+        if (!shadowConfigs.containsKey(realClassName)) { // first one on the classpath wins
+          shadowConfigs.put(realClassName, new ShadowConfig(parts[1],
+              Boolean.parseBoolean(parts[2]), Boolean.parseBoolean(parts[3]), Boolean.parseBoolean(parts[4])));
+        }
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * @return the config for the indexed shadow of the named class, or null if none is indexed
+   */
+  public ShadowConfig get(String realClassName) {
+    return shadowConfigs.get(realClassName);
+  }
+
+  public int size() {
+    return shadowConfigs.size();
+  }
+}
@@ -0,0 +1,235 @@
+package org.robolectric.bytecode;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates a {@link ClassHandler.Plan} for a shadow method which calls it directly, rather than through
+ * {@link Method#invoke(Object, Object...)}.
+ * <p/>
+ * The generated plan casts the shadow and unboxes the params itself, so a shadowed call costs about as much as
+ * a normal virtual call. Where the shadow method's params and return type match the shadowed method's, it also
+ * implements the {@link SpecializedPlans specialized plan} interface for them, so instrumented code can call it
+ * without boxing anything at all.
+ * <p/>
+ * Only public methods on public shadow classes with public parameter and return types can be called this way;
+ * {@link #canGenerateFor(Method)} says whether a method qualifies, and {@link ShadowWrangler} calls the rest through
+ * reflection.
+ */
+public class ShadowInvokerGenerator implements Opcodes {
+  public static final String INVOKER_CLASS_MARKER = RobolectricInternals.ROBO_PREFIX + "invoker$";
+
+  private static final Type OBJECT_TYPE = Type.getType(Object.class);
+  private static final Type PLAN_TYPE = Type.getType(ClassHandler.Plan.class);
+  private static final Type GENERATOR_TYPE = Type.getType(ShadowInvokerGenerator.class);
+  private static final org.objectweb.asm.commons.Method PLAN_RUN_METHOD = new org.objectweb.asm.commons.Method("run",
+      OBJECT_TYPE, new Type[]{OBJECT_TYPE, OBJECT_TYPE, Type.getType(Object[].class)});
+  private static final org.objectweb.asm.commons.Method WRONG_SHADOW_TYPE_METHOD =
+      org.objectweb.asm.commons.Method.getMethod(
+          "IllegalArgumentException wrongShadowType(String, String, Object)");
+  private static final Type[] THROWS = new Type[]{Type.getType(Throwable.class)};
+  private static final org.objectweb.asm.commons.Method CONSTRUCTOR =
+      org.objectweb.asm.commons.Method.getMethod("void <init>()");
+
+  private final Map<ClassLoader, InvokerClassLoader> invokerClassLoaders =
+      new HashMap<ClassLoader, InvokerClassLoader>();
+  private final AtomicInteger invokerCount = new AtomicInteger();
+
+  public static boolean canGenerateFor(Method shadowMethod) {
+    if (!Modifier.isPublic(shadowMethod.getModifiers()) || !isAccessible(shadowMethod.getDeclaringClass())) {
+      return false;
+    }
+    if (!isAccessible(shadowMethod.getReturnType())) return false;
+    for (Class<?> paramType : shadowMethod.getParameterTypes()) {
+      if (!isAccessible(paramType)) return false;
+    }
+    return true;
+  }
+
+  private static boolean isAccessible(Class<?> clazz) {
+    while (clazz.isArray()) clazz = clazz.getComponentType();
+    if (clazz.isPrimitive()) return true;
+    for (; clazz != null; clazz = clazz.getDeclaringClass()) {
+      if (!Modifier.isPublic(clazz.getModifiers())) return false;
+    }
+    return true;
+  }
+
+  public ClassHandler.Plan generate(Method shadowMethod) {
+    return generate(shadowMethod, null);
+  }
+
+  /**
+   * @param shadowedMethodDesc descriptor of the instrumented method being shadowed, or null if unknown
+   */
+  public ClassHandler.Plan generate(Method shadowMethod, String shadowedMethodDesc) {
+    Class<?> shadowClass = shadowMethod.getDeclaringClass();
+    String invokerClassName = shadowClass.getName() + INVOKER_CLASS_MARKER + shadowMethod.getName()
+        + "$" + invokerCount.incrementAndGet();
+    String specializedPlanName = shadowedMethodDesc == null ? null : specializedPlanNameFor(shadowMethod, shadowedMethodDesc);
+    byte[] bytes = generateBytes(invokerClassName, shadowMethod, specializedPlanName);
+
+    try {
+      Class<?> invokerClass = getInvokerClassLoader(shadowClass.getClassLoader()).define(invokerClassName, bytes);
+      return (ClassHandler.Plan) invokerClass.newInstance();
+    } catch (InstantiationException e) {
+      throw new RuntimeException(e);
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @return the name of the specialized plan interface the invoker can implement, or null if there isn't one
+   */
+  private String specializedPlanNameFor(Method shadowMethod, String shadowedMethodDesc) {
+    String specializedPlanName = SpecializedPlans.interfaceNameFor(shadowedMethodDesc);
+    if (!specializedPlanName.equals(SpecializedPlans.interfaceNameFor(Type.getMethodDescriptor(shadowMethod)))) {
+      return null;
+    }
+
+    // the interface only exists if the shadow was loaded under an instrumenting class loader
+    try {
+      ClassLoader shadowClassLoader = shadowMethod.getDeclaringClass().getClassLoader();
+      if (shadowClassLoader == null) return null;
+      shadowClassLoader.loadClass(specializedPlanName);
+      return specializedPlanName;
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+  }
+
+  private synchronized InvokerClassLoader getInvokerClassLoader(ClassLoader shadowClassLoader) {
+    InvokerClassLoader invokerClassLoader = invokerClassLoaders.get(shadowClassLoader);
+    if (invokerClassLoader == null) {
+      invokerClassLoader = new InvokerClassLoader(shadowClassLoader);
+      invokerClassLoaders.put(shadowClassLoader, invokerClassLoader);
+    }
+    return invokerClassLoader;
+  }
+
+  private byte[] generateBytes(String invokerClassName, Method shadowMethod, String specializedPlanName) {
+    String[] interfaces = specializedPlanName == null
+        ? new String[]{PLAN_TYPE.getInternalName()}
+        : new String[]{PLAN_TYPE.getInternalName(), specializedPlanName.replace('.', '/')};
+
+    // no stack map frames are needed for pre-1.6 class files
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    classWriter.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, invokerClassName.replace('.', '/'), null,
+        OBJECT_TYPE.getInternalName(), interfaces);
+
+    GeneratorAdapter constructor = new GeneratorAdapter(ACC_PUBLIC, CONSTRUCTOR, null, null, classWriter);
+    constructor.loadThis();
+    constructor.invokeConstructor(OBJECT_TYPE, CONSTRUCTOR);
+    constructor.returnValue();
+    constructor.endMethod();
+
+    generateRunMethod(classWriter, shadowMethod);
+    if (specializedPlanName != null) {
+      generateSpecializedRunMethod(classWriter, shadowMethod);
+    }
+
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  // Object run(Object instance, Object roboData, Object[] params)
+  private void generateRunMethod(ClassWriter classWriter, Method shadowMethod) {
+    GeneratorAdapter m = new GeneratorAdapter(ACC_PUBLIC, PLAN_RUN_METHOD, null, THROWS, classWriter);
+    loadShadowIfNeeded(m, shadowMethod);
+
+    Type[] paramTypes = Type.getArgumentTypes(shadowMethod);
+    for (int i = 0; i < paramTypes.length; i++) {
+      m.loadArg(2);
+      m.push(i);
+      m.arrayLoad(OBJECT_TYPE);
+      m.unbox(paramTypes[i]);
+    }
+
+    invokeShadowMethod(m, shadowMethod);
+
+    Type returnType = Type.getReturnType(shadowMethod);
+    if (returnType == Type.VOID_TYPE) {
+      m.visitInsn(ACONST_NULL);
+    } else {
+      m.valueOf(returnType);
+    }
+    m.returnValue();
+    m.endMethod();
+  }
+
+  // e.g. int run(Object instance, Object roboData, long param0, Object param1)
+  private void generateSpecializedRunMethod(ClassWriter classWriter, Method shadowMethod) {
+    org.objectweb.asm.commons.Method runMethod = SpecializedPlans.runMethodFor(Type.getMethodDescriptor(shadowMethod));
+    GeneratorAdapter m = new GeneratorAdapter(ACC_PUBLIC, runMethod, null, THROWS, classWriter);
+    loadShadowIfNeeded(m, shadowMethod);
+
+    Type[] paramTypes = Type.getArgumentTypes(shadowMethod);
+    for (int i = 0; i < paramTypes.length; i++) {
+      m.loadArg(i + 2);
+      if (!paramTypes[i].equals(OBJECT_TYPE) && SpecializedPlans.erase(paramTypes[i]).equals(OBJECT_TYPE)) {
+        m.checkCast(paramTypes[i]);
+      }
+    }
+
+    invokeShadowMethod(m, shadowMethod);
+    m.returnValue();
+    m.endMethod();
+  }
+
+  private void loadShadowIfNeeded(GeneratorAdapter m, Method shadowMethod) {
+    if (Modifier.isStatic(shadowMethod.getModifiers())) return;
+
+    Type shadowType = Type.getType(shadowMethod.getDeclaringClass());
+    Label isShadowType = new Label();
+    // a null shadow gets as far as the call and throws NullPointerException there, as Method.invoke() would
+    m.loadArg(1);
+    m.ifNull(isShadowType);
+    m.loadArg(1);
+    m.instanceOf(shadowType);
+    m.ifZCmp(GeneratorAdapter.NE, isShadowType);
+    m.push(shadowMethod.toString());
+    m.push(shadowMethod.getDeclaringClass().getSimpleName());
+    m.loadArg(1);
+    m.invokeStatic(GENERATOR_TYPE, WRONG_SHADOW_TYPE_METHOD);
+    m.throwException();
+    m.mark(isShadowType);
+
+    m.loadArg(1);
+    m.checkCast(shadowType);
+  }
+
+  private void invokeShadowMethod(GeneratorAdapter m, Method shadowMethod) {
+    Type shadowType = Type.getType(shadowMethod.getDeclaringClass());
+    if (Modifier.isStatic(shadowMethod.getModifiers())) {
+      m.invokeStatic(shadowType, org.objectweb.asm.commons.Method.getMethod(shadowMethod));
+    } else {
+      m.invokeVirtual(shadowType, org.objectweb.asm.commons.Method.getMethod(shadowMethod));
+    }
+  }
+
+  @SuppressWarnings({"UnusedDeclaration"})
+  public static IllegalArgumentException wrongShadowType(String shadowMethod, String shadowClassSimpleName, Object shadow) {
+    return new IllegalArgumentException("attempted to invoke " + shadowMethod
+        + (shadow == null ? "" : " on instance of " + shadow.getClass() + ", but " + shadow.getClass().getSimpleName() + " doesn't extend " + shadowClassSimpleName));
+  }
+
+  private static class InvokerClassLoader extends ClassLoader {
+    InvokerClassLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    Class<?> define(String className, byte[] bytes) {
+      return defineClass(className, bytes, 0, bytes.length);
+    }
+  }
+}
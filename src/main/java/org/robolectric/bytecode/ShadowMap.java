@@ -1,6 +1,7 @@
 package org.robolectric.bytecode;
 
 import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.processing.ShadowIndexProcessor;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -8,12 +9,16 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ShadowMap {
   public static final ShadowMap EMPTY = new ShadowMap(Collections.<String, ShadowConfig>emptyMap());
   private static final Set<String> unloadableClassNames = new HashSet<String>();
 
   private final Map<String, ShadowConfig> map;
+  // classes we've probed for shadows by naming convention and found none, per class loader (which doesn't change what it can load)
+  private final Map<ClassLoader, Set<String>> unshadowedClassNames = new WeakHashMap<ClassLoader, Set<String>>();
 
   ShadowMap(Map<String, ShadowConfig> map) {
     this.map = new HashMap<String, ShadowConfig>(map);
@@ -79,28 +84,43 @@ public class ShadowMap {
   public ShadowConfig get(Class<?> clazz) {
     String className = clazz.getName();
     ShadowConfig shadowConfig = map.get(className);
+    if (shadowConfig == null) {
+      shadowConfig = ShadowIndex.getDefault().get(className);
+    }
+
+    // shadows that weren't indexed at build time may still be found by naming convention
     ClassLoader classLoader = clazz.getClassLoader();
-    if (shadowConfig == null && classLoader != null) {
+    if (shadowConfig == null && classLoader != null && !unshadowedClassNamesFor(classLoader).contains(className)) {
       String shadowClassName = convertToShadowName(className);
       Class<?> shadowClass;
       try {
         shadowClass = classLoader.loadClass(shadowClassName);
       } catch (ClassNotFoundException e) {
+        unshadowedClassNamesFor(classLoader).add(className);
         return null;
       }
       ShadowInfo shadowInfo = getShadowInfo(shadowClass);
       if (shadowInfo != null && shadowInfo.shadowedClassName.equals(className)) {
         return shadowInfo.getShadowConfig();
       }
+      unshadowedClassNamesFor(classLoader).add(className);
     }
     return shadowConfig;
   }
 
+  private Set<String> unshadowedClassNamesFor(ClassLoader classLoader) {
+    synchronized (unshadowedClassNames) {
+      Set<String> classNames = unshadowedClassNames.get(classLoader);
+      if (classNames == null) {
+        classNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        unshadowedClassNames.put(classLoader, classNames);
+      }
+      return classNames;
+    }
+  }
+
   public static String convertToShadowName(String className) {
-    String shadowClassName =
-        "org.robolectric.shadows.Shadow" + className.substring(className.lastIndexOf(".") + 1);
-    shadowClassName = shadowClassName.replaceAll("\\$", "\\$Shadow");
-    return shadowClassName;
+    return ShadowIndexProcessor.conventionalShadowName(className);
   }
 
   public Builder newBuilder() {
@@ -17,11 +17,14 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.fest.reflect.core.Reflection.method;
 import static org.fest.reflect.core.Reflection.type;
 
-public class ShadowWrangler implements ClassHandler {
+public class ShadowWrangler implements InterceptingClassHandler {
   public static final Function<Object, Object> DO_NOTHING_HANDLER = new Function<Object, Object>() {
     @Override
     public Object call(Class<?> theClass, Object value, Object[] params) {
@@ -34,21 +37,45 @@ public class ShadowWrangler implements ClassHandler {
     }
   };
   public static final Plan CALL_REAL_CODE_PLAN = null;
+  public static final String GENERATE_SHADOW_INVOKERS_PROPERTY = "robolectric.generateShadowInvokers";
   private static final boolean STRIP_SHADOW_STACK_TRACES = true;
   private static final ShadowConfig NO_SHADOW_CONFIG = new ShadowConfig(Object.class.getName(), true, false, false);
+  private static final Plan CALL_REAL_CODE_PLAN_MARKER = new Plan() {
+    @Override public Object run(Object instance, Object roboData, Object[] params) throws Exception {
+      throw new IllegalStateException("shouldn't be run");
+    }
+  };
+  private static final ShadowFactory NO_SHADOW_FACTORY = new ShadowFactory(null, null, new Field[0]);
   public boolean debug = false;
 
   private final ShadowMap shadowMap;
+  private final ShadowInvokerGenerator shadowInvokerGenerator;
   private final Map<Class, MetaShadow> metaShadowMap = new HashMap<Class, MetaShadow>();
-  private final Map<String, Plan> planCache = new LinkedHashMap<String, Plan>() {
-    @Override protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
-      return size() > 500;
-    }
-  };
-  private final Map<Class, ShadowConfig> shadowConfigCache = new HashMap<Class, ShadowConfig>();
-
+  // keyed by signature: signatures come from interned constants in instrumented code and cache their hash codes
+  private final ConcurrentMap<String, Plan> planCache = new ConcurrentHashMap<String, Plan>();
+  private final ConcurrentMap<Class, ShadowConfig> shadowConfigCache = new ConcurrentHashMap<Class, ShadowConfig>();
+  private final ConcurrentMap<Class, ShadowFactory> shadowFactoryCache = new ConcurrentHashMap<Class, ShadowFactory>();
+  private final AtomicLong planCacheHits = new AtomicLong();
+  private final AtomicLong planCacheMisses = new AtomicLong();
+
+  /**
+   * Calls shadow methods through generated invokers only if the {@code robolectric.generateShadowInvokers} system
+   * property is {@code true}.
+   */
   public ShadowWrangler(ShadowMap shadowMap) {
+    this(shadowMap, Boolean.valueOf(System.getProperty(GENERATE_SHADOW_INVOKERS_PROPERTY)));
+  }
+
+  /**
+   * @param generateShadowInvokers if true, shadow methods are called through generated bytecode where possible,
+   *     instead of through reflection. Only generated invokers take a method's params unboxed (see
+   *     {@link SpecializedPlans}), so that path is opt-in too. They don't check params as
+   *     {@link Method#invoke(Object, Object...)} does: a null for a primitive param throws
+   *     {@link NullPointerException}, and a param of the wrong type {@link ClassCastException}
+   */
+  public ShadowWrangler(ShadowMap shadowMap, boolean generateShadowInvokers) {
     this.shadowMap = shadowMap;
+    this.shadowInvokerGenerator = generateShadowInvokers ? new ShadowInvokerGenerator() : null;
   }
 
   @Override
@@ -79,14 +106,33 @@ public class ShadowWrangler implements ClassHandler {
   }
 
   @Override
-  synchronized public Plan methodInvoked(String signature, boolean isStatic, Class<?> theClass) {
+  public Plan methodInvoked(String signature, boolean isStatic, Class<?> theClass) {
     if (debug) System.out.println("[DEBUG] " + signature);
-    if (planCache.containsKey(signature)) return planCache.get(signature);
-    Plan plan = calculatePlan(signature, isStatic, theClass);
-    planCache.put(signature, plan);
+    Plan plan = planCache.get(signature);
+    if (plan != null) {
+      planCacheHits.incrementAndGet();
+      return plan == CALL_REAL_CODE_PLAN_MARKER ? CALL_REAL_CODE_PLAN : plan;
+    }
+
+    // racing threads may both calculate a plan for the same signature; they're equivalent, so either may win
+    planCacheMisses.incrementAndGet();
+    plan = calculatePlan(signature, isStatic, theClass);
+    planCache.putIfAbsent(signature, plan == CALL_REAL_CODE_PLAN ? CALL_REAL_CODE_PLAN_MARKER : plan);
     return plan;
   }
 
+  public long getPlanCacheHitCount() {
+    return planCacheHits.get();
+  }
+
+  public long getPlanCacheMissCount() {
+    return planCacheMisses.get();
+  }
+
+  public int getPlanCacheSize() {
+    return planCache.size();
+  }
+
   private Plan calculatePlan(String signature, boolean isStatic, Class<?> theClass) {
     final InvocationProfile invocationProfile = new InvocationProfile(signature, isStatic, theClass.getClassLoader());
     ShadowConfig shadowConfig = getShadowConfig(invocationProfile.clazz);
@@ -139,7 +185,7 @@ public class ShadowWrangler implements ClassHandler {
           return CALL_REAL_CODE_PLAN;
         } else {
           if (debug) System.out.println("[DEBUG] found shadow for " + signature + "; will call " + shadowMethod);
-          return new ShadowMethodPlan(shadowMethod);
+          return createShadowMethodPlan(shadowMethod, signature.substring(signature.indexOf('(')));
         }
       } catch (ClassNotFoundException e) {
         throw new RuntimeException(e);
@@ -147,11 +193,18 @@ public class ShadowWrangler implements ClassHandler {
     }
   }
 
-  synchronized private ShadowConfig getShadowConfig(Class clazz) {
+  private Plan createShadowMethodPlan(Method shadowMethod, String shadowedMethodDesc) {
+    if (shadowInvokerGenerator != null && ShadowInvokerGenerator.canGenerateFor(shadowMethod)) {
+      return shadowInvokerGenerator.generate(shadowMethod, shadowedMethodDesc);
+    }
+    return new ShadowMethodPlan(shadowMethod);
+  }
+
+  private ShadowConfig getShadowConfig(Class clazz) {
     ShadowConfig shadowConfig = shadowConfigCache.get(clazz);
     if (shadowConfig == null) {
       shadowConfig = shadowMap.get(clazz);
-      shadowConfigCache.put(clazz, shadowConfig == null ? NO_SHADOW_CONFIG : shadowConfig);
+      shadowConfigCache.putIfAbsent(clazz, shadowConfig == null ? NO_SHADOW_CONFIG : shadowConfig);
       return shadowConfig;
     } else {
       return (shadowConfig == NO_SHADOW_CONFIG) ? null : shadowConfig;
@@ -207,13 +260,22 @@ public class ShadowWrangler implements ClassHandler {
 
   @Override
   public Object intercept(String signature, Object instance, Object[] params, Class theClass) throws Throwable {
-    MethodSignature methodSignature = MethodSignature.parse(signature);
+    return interceptionPlan(signature, theClass).run(instance, null, params);
+  }
 
-    if (debug) {
-      System.out.println("DEBUG: intercepted call to " + methodSignature);
-    }
+  @Override
+  public Plan interceptionPlan(String signature, final Class<?> theClass) {
+    final MethodSignature methodSignature = MethodSignature.parse(signature);
+    final Function<Object, Object> interceptionHandler = getInterceptionHandler(methodSignature);
+    return new Plan() {
+      @Override public Object run(Object instance, Object roboData, Object[] params) throws Throwable {
+        if (debug) {
+          System.out.println("DEBUG: intercepted call to " + methodSignature);
+        }
 
-    return getInterceptionHandler(methodSignature).call(theClass, instance, params);
+        return interceptionHandler.call(theClass, instance, params);
+      }
+    };
   }
 
   public Function<Object, Object> getInterceptionHandler(MethodSignature methodSignature) {
@@ -276,7 +338,8 @@ public class ShadowWrangler implements ClassHandler {
           continue;
         }
 
-        if (className.equals(ShadowMethodPlan.class.getName())) {
+        if (className.equals(ShadowMethodPlan.class.getName())
+            || className.contains(ShadowInvokerGenerator.INVOKER_CLASS_MARKER)) {
           continue;
         }
 
@@ -331,37 +394,41 @@ public class ShadowWrangler implements ClassHandler {
   }
 
   public Object createShadowFor(Object instance) {
-    Object shadow;
+    ShadowFactory shadowFactory = getShadowFactory(instance.getClass());
+    if (debug && shadowFactory.shadowClass != null)
+      System.out.println("creating new " + shadowFactory.shadowClass.getName() + " as shadow for " + instance.getClass().getName());
+    return shadowFactory.createShadowFor(instance);
+  }
 
-    String shadowClassName = getShadowClassName(instance);
+  private ShadowFactory getShadowFactory(Class<?> clazz) {
+    ShadowFactory shadowFactory = shadowFactoryCache.get(clazz);
+    if (shadowFactory == null) {
+      shadowFactory = createShadowFactory(clazz);
+      ShadowFactory existing = shadowFactoryCache.putIfAbsent(clazz, shadowFactory);
+      if (existing != null) shadowFactory = existing;
+    }
+    return shadowFactory;
+  }
 
-    if (shadowClassName == null) return new Object();
+  private ShadowFactory createShadowFactory(Class<?> clazz) {
+    String shadowClassName = getShadowClassName(clazz);
+    if (shadowClassName == null) return NO_SHADOW_FACTORY;
 
-    if (debug)
-      System.out.println("creating new " + shadowClassName + " as shadow for " + instance.getClass().getName());
-    try {
-      Class<?> shadowClass = loadClass(shadowClassName, instance.getClass().getClassLoader());
-      Constructor<?> constructor = findConstructor(instance, shadowClass);
-      if (constructor != null) {
-        shadow = constructor.newInstance(instance);
-      } else {
-        shadow = shadowClass.newInstance();
+    Class<?> shadowClass = loadClass(shadowClassName, clazz.getClassLoader());
+    Constructor<?> constructor = findConstructor(clazz, shadowClass);
+    if (constructor == null) {
+      try {
+        constructor = shadowClass.getConstructor();
+      } catch (NoSuchMethodException e) {
+        // leave it to Class.newInstance() to complain
       }
-
-      injectRealObjectOn(shadow, shadowClass, instance);
-
-      return shadow;
-    } catch (InstantiationException e) {
-      throw new RuntimeException(e);
-    } catch (IllegalAccessException e) {
-      throw new RuntimeException(e);
-    } catch (InvocationTargetException e) {
-      throw new RuntimeException(e);
     }
+    if (constructor != null) constructor.setAccessible(true);
+    List<Field> realObjectFields = getMetaShadow(shadowClass).realObjectFields;
+    return new ShadowFactory(shadowClass, constructor, realObjectFields.toArray(new Field[realObjectFields.size()]));
   }
 
-  private String getShadowClassName(Object instance) {
-    Class clazz = instance.getClass();
+  private String getShadowClassName(Class clazz) {
     ShadowConfig shadowConfig = null;
     while (shadowConfig == null && clazz != null) {
       shadowConfig = getShadowConfig(clazz);
@@ -370,13 +437,6 @@ public class ShadowWrangler implements ClassHandler {
     return shadowConfig == null ? null : shadowConfig.shadowClassName;
   }
 
-  private void injectRealObjectOn(Object shadow, Class<?> shadowClass, Object instance) {
-    MetaShadow metaShadow = getMetaShadow(shadowClass);
-    for (Field realObjectField : metaShadow.realObjectFields) {
-      writeField(shadow, instance, realObjectField);
-    }
-  }
-
   private MetaShadow getMetaShadow(Class<?> shadowClass) {
     synchronized (metaShadowMap) {
       MetaShadow metaShadow = metaShadowMap.get(shadowClass);
@@ -396,8 +456,8 @@ public class ShadowWrangler implements ClassHandler {
     return loadClass(shadowConfig.shadowClassName, originalClass.getClassLoader());
   }
 
-  private Constructor<?> findConstructor(Object instance, Class<?> shadowClass) {
-    Class clazz = instance.getClass();
+  private Constructor<?> findConstructor(Class<?> instanceClass, Class<?> shadowClass) {
+    Class clazz = instanceClass;
 
     Constructor constructor;
     for (constructor = null; constructor == null && clazz != null; clazz = clazz.getSuperclass()) {
@@ -414,15 +474,10 @@ public class ShadowWrangler implements ClassHandler {
     if (instance == null) {
       throw new NullPointerException("can't get a shadow for null");
     }
-    return method(AsmInstrumentingClassLoader.GET_ROBO_DATA_METHOD_NAME).withReturnType(Object.class).in(instance).invoke();
-  }
-
-  private void writeField(Object target, Object value, Field realObjectField) {
-    try {
-      realObjectField.set(target, value);
-    } catch (IllegalAccessException e) {
-      throw new RuntimeException(e);
+    if (instance instanceof ShadowedObject) {
+      return ((ShadowedObject) instance).$$robo$getData();
     }
+    return method(AsmInstrumentingClassLoader.GET_ROBO_DATA_METHOD_NAME).withReturnType(Object.class).in(instance).invoke();
   }
 
   private class MetaShadow {
@@ -442,6 +497,46 @@ public class ShadowWrangler implements ClassHandler {
     }
   }
 
+  /**
+   * Creates shadows for instances of one class, with everything that needs looking up already looked up.
+   */
+  private static class ShadowFactory {
+    private final Class<?> shadowClass;
+    private final Constructor<?> constructor;
+    private final boolean constructorTakesRealObject;
+    private final Field[] realObjectFields;
+
+    ShadowFactory(Class<?> shadowClass, Constructor<?> constructor, Field[] realObjectFields) {
+      this.shadowClass = shadowClass;
+      this.constructor = constructor;
+      this.constructorTakesRealObject = constructor != null && constructor.getParameterTypes().length == 1;
+      this.realObjectFields = realObjectFields;
+    }
+
+    Object createShadowFor(Object instance) {
+      if (shadowClass == null) return new Object();
+
+      try {
+        Object shadow;
+        if (constructor == null) {
+          shadow = shadowClass.newInstance();
+        } else {
+          shadow = constructorTakesRealObject ? constructor.newInstance(instance) : constructor.newInstance();
+        }
+        for (Field realObjectField : realObjectFields) {
+          realObjectField.set(shadow, instance);
+        }
+        return shadow;
+      } catch (InstantiationException e) {
+        throw new RuntimeException(e);
+      } catch (IllegalAccessException e) {
+        throw new RuntimeException(e);
+      } catch (InvocationTargetException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
   private static class ShadowMethodPlan implements Plan {
     private final Method shadowMethod;
 
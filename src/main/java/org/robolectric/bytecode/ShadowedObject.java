@@ -0,0 +1,8 @@
+package org.robolectric.bytecode;
+
+/**
+ * Implemented by every instrumented class, so its shadow can be fetched without reflection.
+ */
+public interface ShadowedObject {
+  Object $$robo$getData();
+}
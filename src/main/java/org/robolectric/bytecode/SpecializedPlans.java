@@ -0,0 +1,99 @@
+package org.robolectric.bytecode;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.Method;
+
+/**
+ * Describes {@link ClassHandler.Plan} variants whose {@code run} method takes a method's params and returns its
+ * result unboxed, so calls through them allocate nothing.
+ * <p/>
+ * There's one interface per erased method descriptor: primitives stay as they are and all reference types become
+ * {@code Object}. Each takes the instance and roboData, then the params, e.g. for {@code int foo(long, String)}:
+ * <pre>
+ *   int run(Object instance, Object roboData, long param0, Object param1)
+ * </pre>
+ * The interfaces don't exist until an {@link AsmInstrumentingClassLoader} is asked for them by name, so plans can
+ * only implement them if they're loaded under one.
+ */
+public class SpecializedPlans implements Opcodes {
+  public static final String INTERFACE_NAME_PREFIX = "org.robolectric.bytecode." + RobolectricInternals.ROBO_PREFIX + "plan$";
+  public static final String RUN_METHOD_NAME = "run";
+
+  private static final Type OBJECT_TYPE = Type.getType(Object.class);
+
+  public static boolean isSpecializedPlanInterface(String className) {
+    return className.startsWith(INTERFACE_NAME_PREFIX);
+  }
+
+  public static String interfaceNameFor(String methodDesc) {
+    StringBuilder buf = new StringBuilder(INTERFACE_NAME_PREFIX);
+    for (Type argumentType : Type.getArgumentTypes(methodDesc)) {
+      buf.append(erase(argumentType).getDescriptor().charAt(0));
+    }
+    buf.append('$');
+    buf.append(erase(Type.getReturnType(methodDesc)).getDescriptor().charAt(0));
+    return buf.toString();
+  }
+
+  public static Type interfaceTypeFor(String methodDesc) {
+    return Type.getObjectType(interfaceNameFor(methodDesc).replace('.', '/'));
+  }
+
+  public static Method runMethodFor(String methodDesc) {
+    Type[] argumentTypes = Type.getArgumentTypes(methodDesc);
+    Type[] runArgumentTypes = new Type[argumentTypes.length + 2];
+    runArgumentTypes[0] = OBJECT_TYPE; // instance
+    runArgumentTypes[1] = OBJECT_TYPE; // roboData
+    for (int i = 0; i < argumentTypes.length; i++) {
+      runArgumentTypes[i + 2] = erase(argumentTypes[i]);
+    }
+    return new Method(RUN_METHOD_NAME, erase(Type.getReturnType(methodDesc)), runArgumentTypes);
+  }
+
+  public static Type erase(Type type) {
+    int sort = type.getSort();
+    return sort == Type.OBJECT || sort == Type.ARRAY ? OBJECT_TYPE : type;
+  }
+
+  public static byte[] generateInterface(String className) {
+    String runMethodDesc = runMethodForInterfaceName(className).getDescriptor();
+
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(V1_5, ACC_PUBLIC | ACC_ABSTRACT | ACC_INTERFACE, className.replace('.', '/'), null,
+        OBJECT_TYPE.getInternalName(), null);
+    classWriter.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, RUN_METHOD_NAME, runMethodDesc, null,
+        new String[]{Type.getInternalName(Throwable.class)}).visitEnd();
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private static Method runMethodForInterfaceName(String className) {
+    String key = className.substring(INTERFACE_NAME_PREFIX.length());
+    int returnTypeStart = key.indexOf('$');
+    if (returnTypeStart == -1 || returnTypeStart != key.length() - 2) {
+      throw new IllegalArgumentException("not a specialized plan interface: " + className);
+    }
+
+    StringBuilder methodDesc = new StringBuilder("(");
+    for (int i = 0; i < returnTypeStart; i++) {
+      if (key.charAt(i) == 'V') throw new IllegalArgumentException("not a specialized plan interface: " + className);
+      methodDesc.append(descriptorFor(key.charAt(i), className));
+    }
+    methodDesc.append(")");
+    methodDesc.append(descriptorFor(key.charAt(returnTypeStart + 1), className));
+    return runMethodFor(methodDesc.toString());
+  }
+
+  private static String descriptorFor(char c, String className) {
+    switch (c) {
+      case 'Z': case 'B': case 'C': case 'S': case 'I': case 'J': case 'F': case 'D': case 'V':
+        return String.valueOf(c);
+      case 'L':
+        return OBJECT_TYPE.getDescriptor();
+      default:
+        throw new IllegalArgumentException("not a specialized plan interface: " + className);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package org.robolectric.bytecode;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the static fields of instrumented classes as they stand right after static initialization, and puts back
+ * any that have since been changed, so state doesn't leak between tests sharing a class loader.
+ * <p/>
+ * Enable by setting the {@code robolectric.snapshotStaticState} system property to {@code true}.
+ * <p/>
+ * Only the fields themselves are restored: a test that mutates the contents of a static collection, say, still needs
+ * cleaning up after by hand. Final fields are never restored.
+ */
+public class StaticStateSnapshot {
+  public static final String SNAPSHOT_STATIC_STATE_PROPERTY = "robolectric.snapshotStaticState";
+
+  private static final List<ClassSnapshot> classSnapshots = new ArrayList<ClassSnapshot>();
+
+  public static boolean isEnabled() {
+    return Boolean.getBoolean(SNAPSHOT_STATIC_STATE_PROPERTY);
+  }
+
+  /**
+   * Records the current values of the class's non-final static fields, if snapshotting is enabled.
+   */
+  public static void record(Class<?> clazz) {
+    if (!isEnabled()) return;
+
+    ClassSnapshot classSnapshot = new ClassSnapshot(clazz);
+    if (classSnapshot.fields.length == 0) return;
+
+    synchronized (classSnapshots) {
+      classSnapshots.add(classSnapshot);
+    }
+  }
+
+  /**
+   * Puts back the recorded value of every static field whose value has changed since it was recorded.
+   *
+   * @return the number of fields restored
+   */
+  public static int restoreAll() {
+    List<ClassSnapshot> toRestore;
+    synchronized (classSnapshots) {
+      toRestore = new ArrayList<ClassSnapshot>(classSnapshots);
+    }
+
+    int restoredCount = 0;
+    for (ClassSnapshot classSnapshot : toRestore) {
+      restoredCount += classSnapshot.restore();
+    }
+    return restoredCount;
+  }
+
+  private static class ClassSnapshot {
+    private final Field[] fields;
+    private final Object[] values;
+
+    ClassSnapshot(Class<?> clazz) {
+      List<Field> fieldList = new ArrayList<Field>();
+      for (Field field : clazz.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+        if (!Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)) continue;
+        if (field.getName().startsWith(RobolectricInternals.ROBO_PREFIX)) continue; // call sites and such
+
+        field.setAccessible(true);
+        fieldList.add(field);
+      }
+
+      fields = fieldList.toArray(new Field[fieldList.size()]);
+      values = new Object[fields.length];
+      for (int i = 0; i < fields.length; i++) {
+        values[i] = get(fields[i]);
+      }
+    }
+
+    int restore() {
+      int restoredCount = 0;
+      for (int i = 0; i < fields.length; i++) {
+        Field field = fields[i];
+        Object currentValue = get(field);
+        boolean changed = field.getType().isPrimitive()
+            ? !values[i].equals(currentValue)
+            : values[i] != currentValue;
+        if (changed) {
+          try {
+            field.set(null, values[i]);
+          } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+          }
+          restoredCount++;
+        }
+      }
+      return restoredCount;
+    }
+
+    private static Object get(Field field) {
+      try {
+        return field.get(null);
+      } catch (IllegalAccessException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+}
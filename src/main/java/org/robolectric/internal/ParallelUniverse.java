@@ -13,7 +13,10 @@ import org.robolectric.RoboInstrumentation;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.TestLifecycle;
+import org.robolectric.TestLifecycleApplication;
 import org.robolectric.annotation.Config;
+import org.robolectric.bytecode.Setup;
+import org.robolectric.bytecode.StaticStateSnapshot;
 import org.robolectric.res.ResourceLoader;
 import org.robolectric.res.builder.RobolectricPackageManager;
 import org.robolectric.shadows.ShadowActivityThread;
@@ -34,6 +37,7 @@ public class ParallelUniverse implements ParallelUniverseInterface {
   private boolean loggingInitialized = false;
 
   public void resetStaticState() {
+    StaticStateSnapshot.restoreAll();
     Robolectric.reset();
 
     if (!loggingInitialized) {
@@ -46,7 +50,7 @@ public class ParallelUniverse implements ParallelUniverseInterface {
     DatabaseConfig.setDatabaseMap(databaseMap);
   }
 
-  @Override public void setUpApplicationState(Method method, TestLifecycle testLifecycle, boolean strictI18n, ResourceLoader systemResourceLoader, AndroidManifest appManifest, Config config) {
+  @Override public void setUpApplicationState(Method method, TestLifecycle testLifecycle, final boolean strictI18n, final ResourceLoader systemResourceLoader, final AndroidManifest appManifest, Config config) {
     Robolectric.application = null;
     Robolectric.packageManager = new RobolectricPackageManager();
     Robolectric.packageManager.addPackage(DEFAULT_PACKAGE_NAME);
@@ -57,10 +61,25 @@ public class ParallelUniverse implements ParallelUniverseInterface {
     ShadowResources.setSystemResources(systemResourceLoader);
     String qualifiers = config.qualifiers();
     Resources systemResources = Resources.getSystem();
-    Configuration configuration = systemResources.getConfiguration();
+    final Configuration configuration = systemResources.getConfiguration();
     shadowOf(configuration).overrideQualifiers(qualifiers);
     systemResources.updateConfiguration(configuration, systemResources.getDisplayMetrics());
 
+    final Application application = (Application) testLifecycle.createApplication(method, appManifest);
+
+    // TestLifecycleApplications expect to be set up by the time their beforeTest() is called
+    if (Setup.shouldDeferApplicationSetUp() && !(application instanceof TestLifecycleApplication)) {
+      Robolectric.deferApplicationSetUp(new Runnable() {
+        @Override public void run() {
+          setUpApplication(application, strictI18n, systemResourceLoader, appManifest, configuration);
+        }
+      });
+    } else {
+      setUpApplication(application, strictI18n, systemResourceLoader, appManifest, configuration);
+    }
+  }
+
+  private void setUpApplication(Application application, boolean strictI18n, ResourceLoader systemResourceLoader, AndroidManifest appManifest, Configuration configuration) {
     contextImplClass = type(ShadowContextImpl.CLASS_NAME)
         .withClassLoader(getClass().getClassLoader())
         .load();
@@ -97,7 +116,6 @@ public class ParallelUniverse implements ParallelUniverseInterface {
         .in(contextImplClass)
         .invoke(activityThread);
 
-    final Application application = (Application) testLifecycle.createApplication(method, appManifest);
     if (application != null) {
       String packageName = appManifest != null ? appManifest.getPackageName() : null;
       if (packageName == null) packageName = DEFAULT_PACKAGE_NAME;
@@ -148,12 +166,17 @@ public class ParallelUniverse implements ParallelUniverseInterface {
   }
 
   @Override public void tearDownApplication() {
-    if (Robolectric.application != null) {
-      Robolectric.application.onTerminate();
+    Application application = Robolectric.getApplicationIfSetUp();
+    if (application != null) {
+      application.onTerminate();
     }
   }
 
   @Override public Object getCurrentApplication() {
-    return Robolectric.application;
+    return Robolectric.getApplicationIfSetUp();
+  }
+
+  @Override public boolean isApplicationSetUpPending() {
+    return Robolectric.isApplicationSetUpDeferred();
   }
 }
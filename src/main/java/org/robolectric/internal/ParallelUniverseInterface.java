@@ -17,4 +17,9 @@ public interface ParallelUniverseInterface {
   void tearDownApplication();
 
   Object getCurrentApplication();
+
+  /**
+   * @return true if the current test's application was never set up, because nothing needed it
+   */
+  boolean isApplicationSetUpPending();
 }
@@ -0,0 +1,44 @@
+package org.robolectric.res;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds back what loaders put into {@link ResBunch}es and {@link ResBundle}s on a thread, so files can be loaded
+ * concurrently and their results applied afterwards, one file at a time, in the same order as a sequential load.
+ */
+class DeferredPuts {
+  private static final ThreadLocal<DeferredPuts> CURRENT = new ThreadLocal<DeferredPuts>();
+
+  private final List<Runnable> puts = new ArrayList<Runnable>();
+
+  /**
+   * @return the puts being deferred on this thread, or null if they should happen right away
+   */
+  static DeferredPuts current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Defers puts made on this thread until {@link #end()}.
+   */
+  static DeferredPuts begin() {
+    DeferredPuts deferredPuts = new DeferredPuts();
+    CURRENT.set(deferredPuts);
+    return deferredPuts;
+  }
+
+  static void end() {
+    CURRENT.remove();
+  }
+
+  void add(Runnable put) {
+    puts.add(put);
+  }
+
+  void apply() {
+    for (Runnable put : puts) {
+      put.run();
+    }
+  }
+}
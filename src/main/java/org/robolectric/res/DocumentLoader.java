@@ -9,9 +9,32 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads a package's resource XML files, handing each to a set of {@link XmlLoader}s.
+ * <p/>
+ * If the {@code robolectric.resourceLoadingThreads} system property is more than one, files are parsed and processed
+ * on that many threads at once. What the loaders put into their bundles is held back and applied file by file in
+ * directory order, so the bundles end up just as they would from a sequential load.
+ */
 public class DocumentLoader {
+  public static final String THREAD_COUNT_PROPERTY = "robolectric.resourceLoadingThreads";
+
   public static boolean DEBUG_PERF = false;
+  // one daemon pool per size, shared by every loader asking for that many threads
+  private static final Map<Integer, ExecutorService> executorServices = new HashMap<Integer, ExecutorService>();
+  private static final ThreadLocal<VTDGen> vtdGens = new ThreadLocal<VTDGen>() {
+    @Override protected VTDGen initialValue() {
+      return new VTDGen();
+    }
+  };
   private Map<String, Long> perfResponsibleParties = new HashMap<String, Long>();
 
   private static final FsFile.Filter ENDS_WITH_XML = new FsFile.Filter() {
@@ -23,10 +46,16 @@ public class DocumentLoader {
   private final FsFile resourceBase;
   private final String packageName;
   private final VTDGen vtdGen;
+  private final int threadCount;
 
   public DocumentLoader(ResourcePath resourcePath) {
+    this(resourcePath, Integer.getInteger(THREAD_COUNT_PROPERTY, 1));
+  }
+
+  public DocumentLoader(ResourcePath resourcePath, int threadCount) {
     this.resourceBase = resourcePath.resourceBase;
     this.packageName = resourcePath.getPackageName();
+    this.threadCount = threadCount;
     vtdGen = new VTDGen();
   }
 
@@ -38,8 +67,12 @@ public class DocumentLoader {
     if (files == null) {
       throw new RuntimeException(resourceBase.join(folderBaseName) + " is not a directory");
     }
-    for (FsFile dir : files) {
-      loadFile(dir, xmlLoaders);
+    if (threadCount > 1) {
+      loadConcurrently(files, xmlLoaders);
+    } else {
+      for (FsFile dir : files) {
+        loadFile(dir, xmlLoaders);
+      }
     }
 
     if (DEBUG_PERF) {
@@ -62,9 +95,64 @@ public class DocumentLoader {
     }
   }
 
+  private void loadConcurrently(FsFile[] dirs, final XmlLoader[] xmlLoaders) throws Exception {
+    List<Future<DeferredPuts>> results = new ArrayList<Future<DeferredPuts>>();
+    for (FsFile dir : dirs) {
+      if (!dir.exists()) {
+        throw new RuntimeException("no such directory " + dir);
+      }
+
+      for (final FsFile file : dir.listFiles(ENDS_WITH_XML)) {
+        results.add(getExecutorService(threadCount).submit(new Callable<DeferredPuts>() {
+          @Override public DeferredPuts call() throws Exception {
+            DeferredPuts deferredPuts = DeferredPuts.begin();
+            try {
+              VTDNav vtdNav = parse(vtdGens.get(), file);
+              for (XmlLoader xmlLoader : xmlLoaders) {
+                xmlLoader.processResourceXml(file, vtdNav, packageName);
+              }
+            } finally {
+              DeferredPuts.end();
+            }
+            return deferredPuts;
+          }
+        }));
+      }
+    }
+
+    for (Future<DeferredPuts> result : results) {
+      try {
+        result.get().apply();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception) throw (Exception) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        throw e;
+      }
+    }
+  }
+
+  static synchronized ExecutorService getExecutorService(final int threadCount) {
+    ExecutorService executorService = executorServices.get(threadCount);
+    if (executorService == null) {
+      executorService = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable,
+              "robolectric-resource-loader-" + threadCount + "-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      executorServices.put(threadCount, executorService);
+    }
+    return executorService;
+  }
+
   private void loadResourceXmlFile(FsFile fsFile, XmlLoader... xmlLoaders) throws Exception {
     long startTime = DEBUG_PERF ? System.currentTimeMillis() : 0;
-    VTDNav vtdNav = parse(fsFile);
+    VTDNav vtdNav = parse(vtdGen, fsFile);
     if (DEBUG_PERF) perfBlame("DocumentLoader.parse", startTime);
 
     for (XmlLoader xmlLoader : xmlLoaders) {
@@ -80,7 +168,7 @@ public class DocumentLoader {
     perfResponsibleParties.put(responsibleParty, totalElapsedMs == null ? myElapsedMs : totalElapsedMs + myElapsedMs);
   }
 
-  private VTDNav parse(FsFile xmlFile) throws Exception {
+  private static VTDNav parse(VTDGen vtdGen, FsFile xmlFile) throws Exception {
     byte[] bytes = xmlFile.getBytes();
     vtdGen.setDoc(bytes);
     vtdGen.parse(true);
@@ -1,20 +1,23 @@
 package org.robolectric.res;
 
 import org.jetbrains.annotations.NotNull;
-import org.w3c.dom.Document;
 
 public abstract class DrawableNode {
   abstract public FsFile getFsFile();
 
   public static class Xml extends DrawableNode {
-    public final @NotNull Document document;
+    private final @NotNull LazyXmlBlock xmlBlock;
     public final @NotNull XmlLoader.XmlContext xmlContext;
 
-    Xml(@NotNull Document document, @NotNull XmlLoader.XmlContext xmlContext) {
-      this.document = document;
+    Xml(@NotNull LazyXmlBlock xmlBlock, @NotNull XmlLoader.XmlContext xmlContext) {
+      this.xmlBlock = xmlBlock;
       this.xmlContext = xmlContext;
     }
 
+    public @NotNull XmlBlock getXmlBlock() {
+      return xmlBlock.get();
+    }
+
     @Override public FsFile getFsFile() {
       return xmlContext.getXmlFile();
     }
@@ -19,7 +19,7 @@ public class DrawableResourceLoader extends XmlLoader {
   @Override
   protected void processResourceXml(FsFile xmlFile, XpathResourceXmlLoader.XmlNode xmlNode, XmlContext xmlContext) throws Exception {
     String name = toResourceName(xmlFile);
-    drawableNodes.put(xmlContext.getDirPrefix(), name, new DrawableNode.Xml(parse(xmlFile), xmlContext), xmlContext);
+    drawableNodes.put(xmlContext.getDirPrefix(), name, new DrawableNode.Xml(new LazyXmlBlock(xmlFile), xmlContext), xmlContext);
   }
 
   /**
@@ -0,0 +1,27 @@
+package org.robolectric.res;
+
+/**
+ * An XML resource file, read into an {@link XmlBlock} the first time it's needed.
+ */
+class LazyXmlBlock {
+  private final FsFile xmlFile;
+  private volatile XmlBlock xmlBlock;
+
+  LazyXmlBlock(FsFile xmlFile) {
+    this.xmlFile = xmlFile;
+  }
+
+  XmlBlock get() {
+    XmlBlock xmlBlock = this.xmlBlock;
+    if (xmlBlock == null) {
+      // racing threads may each read the file, but they'll all get equivalent blocks
+      xmlBlock = XmlBlock.parse(xmlFile);
+      this.xmlBlock = xmlBlock;
+    }
+    return xmlBlock;
+  }
+
+  @Override public String toString() {
+    return "LazyXmlBlock{" + xmlFile + "}";
+  }
+}
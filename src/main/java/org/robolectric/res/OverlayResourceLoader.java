@@ -1,7 +1,6 @@
 package org.robolectric.res;
 
 import org.jetbrains.annotations.NotNull;
-import org.w3c.dom.Document;
 
 import java.io.InputStream;
 import java.util.List;
@@ -17,19 +16,24 @@ public class OverlayResourceLoader extends XResourceLoader {
   }
 
   @Override
-  void doInitialize() {
+  void doInitialize(Category category) {
     for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
-      subResourceLoader.initialize();
+      subResourceLoader.initialize(category);
+      tables(category).mergeLibraryStyle(subResourceLoader.tables(category), packageName);
+    }
+  }
 
-      pluralsData.mergeLibraryStyle(subResourceLoader.pluralsData, packageName);
-      stringData.mergeLibraryStyle(subResourceLoader.stringData, packageName);
-      menuData.mergeLibraryStyle(subResourceLoader.menuData, packageName);
-      drawableData.mergeLibraryStyle(subResourceLoader.drawableData, packageName);
-      preferenceData.mergeLibraryStyle(subResourceLoader.preferenceData, packageName);
-      xmlDocuments.mergeLibraryStyle(subResourceLoader.xmlDocuments, packageName);
-      rawResources.mergeLibraryStyle(subResourceLoader.rawResources, packageName);
-      data.mergeLibraryStyle(subResourceLoader.data, packageName);
+  /**
+   * Each library's values are appended in turn without sorting, as {@link #doInitialize(Category)} merges them, so
+   * where qualifiers tie, an earlier library's value still overrides a later one's.
+   */
+  @Override ResBunch.Values getValues(ResName resName, Category[] categories) {
+    ResBunch.Values values = new ResBunch.Values();
+    for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
+      ResName subResName = resName.withPackageName(subResourceLoader.resourcePath.getPackageName());
+      values.addAll(subResourceLoader.getCombinedValues(subResName, categories));
     }
+    return values;
   }
 
   @Override public DrawableNode getDrawableNode(ResName resName, String qualifiers) {
@@ -56,7 +60,7 @@ public class OverlayResourceLoader extends XResourceLoader {
     return super.getValue(resName.withPackageName(packageName), qualifiers);
   }
 
-  @Override public Document getXml(ResName resName, String qualifiers) {
+  @Override public XmlBlock getXml(ResName resName, String qualifiers) {
     return super.getXml(resName.withPackageName(packageName), qualifiers);
   }
 
@@ -14,9 +14,9 @@ public class PackageResourceLoader extends XResourceLoader {
     this.resourcePath = resourcePath;
   }
 
-  void doInitialize() {
+  void doInitialize(Category category) {
     try {
-      loadEverything();
+      load(category, tables(category));
     } catch (I18nException e) {
       throw e;
     } catch (Exception e) {
@@ -24,10 +24,49 @@ public class PackageResourceLoader extends XResourceLoader {
     }
   }
 
-  private void loadEverything() throws Exception {
-    System.out.println("DEBUG: Loading resources for " + resourcePath.getPackageName() + " from " + resourcePath.resourceBase + "...");
+  private void load(Category category, Tables tables) throws Exception {
+    if (getLoadedCategories().isEmpty()) {
+      System.out.println("DEBUG: Loading resources for " + resourcePath.getPackageName() + " from " + resourcePath.resourceBase + "...");
+    }
 
     DocumentLoader documentLoader = new DocumentLoader(resourcePath);
+    switch (category) {
+      case VALUES:
+        loadValues(documentLoader, tables.data, tables.pluralsData);
+        loadOtherResources(resourcePath);
+        break;
+      case LAYOUT:
+        documentLoader.load("res/layout", new OpaqueFileLoader(tables.data, "layout"), new XmlFileLoader(tables.xmlBlocks, "layout"));
+        break;
+      case MENU:
+        documentLoader.load("res/menu", new MenuLoader(tables.menuData), new XmlFileLoader(tables.xmlBlocks, "menu"));
+        break;
+      case DRAWABLE:
+        documentLoader.load("res/drawable", new OpaqueFileLoader(tables.data, "drawable"), new XmlFileLoader(tables.xmlBlocks, "drawable"));
+        new DrawableResourceLoader(tables.drawableData).findDrawableResources(resourcePath);
+        break;
+      case ANIM:
+        documentLoader.load("res/anim", new OpaqueFileLoader(tables.data, "anim"), new XmlFileLoader(tables.xmlBlocks, "anim"));
+        break;
+      case COLOR:
+        documentLoader.load("res/color", new ColorResourceLoader(tables.data), new XmlFileLoader(tables.xmlBlocks, "color"));
+        break;
+      case XML:
+        documentLoader.load("res/xml", new PreferenceLoader(tables.preferenceData), new XmlFileLoader(tables.xmlBlocks, "xml"));
+        break;
+      case RAW:
+        new RawResourceLoader(resourcePath).loadTo(tables.rawResources);
+        break;
+      default:
+        throw new IllegalArgumentException("unknown resource category " + category);
+    }
+  }
+
+  private void loadValues(DocumentLoader documentLoader, ResBunch data, ResBundle<PluralResourceLoader.PluralRules> pluralsData) throws Exception {
+    ResourceTableCache resourceTableCache = ResourceTableCache.fromSystemProperties();
+    String cacheKey = resourceTableCache == null ? null : resourceTableCache.keyFor(resourcePath);
+    if (cacheKey != null && resourceTableCache.load(cacheKey, resourcePath, data, pluralsData)) return;
+
     documentLoader.load("values",
         new ValueResourceLoader(data, "/resources/bool", "bool", ResType.BOOLEAN),
         new ValueResourceLoader(data, "/resources/color", "color", ResType.COLOR),
@@ -40,17 +79,9 @@ public class PackageResourceLoader extends XResourceLoader {
         new AttrResourceLoader(data),
         new StyleResourceLoader(data)
     );
-
-    documentLoader.load("res/layout", new OpaqueFileLoader(data, "layout"), new XmlFileLoader(xmlDocuments, "layout"));
-    documentLoader.load("res/menu", new MenuLoader(menuData), new XmlFileLoader(xmlDocuments, "menu"));
-    documentLoader.load("res/drawable", new OpaqueFileLoader(data, "drawable"), new XmlFileLoader(xmlDocuments, "drawable"));
-    documentLoader.load("res/anim", new OpaqueFileLoader(data, "anim"), new XmlFileLoader(xmlDocuments, "anim"));
-    documentLoader.load("res/color", new ColorResourceLoader(data), new XmlFileLoader(xmlDocuments, "color"));
-    documentLoader.load("res/xml", new PreferenceLoader(preferenceData), new XmlFileLoader(xmlDocuments, "xml"));
-    new DrawableResourceLoader(drawableData).findDrawableResources(resourcePath);
-    new RawResourceLoader(resourcePath).loadTo(rawResources);
-
-    loadOtherResources(resourcePath);
+    if (cacheKey != null) {
+      resourceTableCache.save(cacheKey, data, pluralsData);
+    }
   }
 
   protected void loadOtherResources(ResourcePath resourcePath) {
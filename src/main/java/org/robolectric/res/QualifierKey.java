@@ -0,0 +1,100 @@
+package org.robolectric.res;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resource qualifiers like {@code fr-land}, compiled once into numbers so picking a value for a configuration
+ * doesn't need to take strings apart.
+ */
+class QualifierKey {
+  private static final ConcurrentMap<String, Integer> qualifierIds = new ConcurrentHashMap<String, Integer>();
+  private static final ConcurrentMap<String, QualifierKey> keys = new ConcurrentHashMap<String, QualifierKey>();
+
+  private final int[] ids;
+  private final int[] sortedIds;
+
+  private QualifierKey(int[] ids) {
+    this.ids = ids;
+    this.sortedIds = ids.clone();
+    Arrays.sort(sortedIds);
+  }
+
+  /**
+   * @param qualifiers qualifiers separated by dashes, or null for none
+   */
+  static QualifierKey of(String qualifiers) {
+    if (qualifiers == null) qualifiers = "";
+
+    QualifierKey key = keys.get(qualifiers);
+    if (key == null) {
+      StringTokenizer st = new StringTokenizer(qualifiers, "-");
+      int[] ids = new int[st.countTokens()];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = idFor(st.nextToken());
+      }
+      key = new QualifierKey(ids);
+      keys.put(qualifiers, key);
+    }
+    return key;
+  }
+
+  private static int idFor(String qualifier) {
+    Integer id = qualifierIds.get(qualifier);
+    if (id == null) {
+      synchronized (qualifierIds) {
+        id = qualifierIds.get(qualifier);
+        if (id == null) {
+          id = qualifierIds.size();
+          qualifierIds.put(qualifier, id);
+        }
+      }
+    }
+    return id;
+  }
+
+  boolean contains(int id) {
+    return Arrays.binarySearch(sortedIds, id) >= 0;
+  }
+
+  interface Qualified {
+    QualifierKey getQualifierKey();
+  }
+
+  /**
+   * Picks the candidate best matching a configuration. Each of the configuration's qualifiers, in the order they're
+   * written (which for Android's own configuration strings is the order of precedence), narrows the candidates down
+   * to those having it, unless none do; picking stops as soon as a qualifier singles out one candidate.
+   *
+   * @param candidates the candidates, most general first
+   * @return the index of the chosen candidate, or -1 if there are none
+   */
+  static int pick(List<? extends Qualified> candidates, QualifierKey configuration) {
+    int count = candidates.size();
+    if (count == 0) return -1;
+
+    BitSet possibles = new BitSet(count);
+    possibles.set(0, count);
+    BitSet matches = new BitSet(count);
+    for (int id : configuration.ids) {
+      matches.clear();
+      for (int i = possibles.nextSetBit(0); i >= 0; i = possibles.nextSetBit(i + 1)) {
+        if (candidates.get(i).getQualifierKey().contains(id)) {
+          matches.set(i);
+        }
+      }
+
+      int matchCount = matches.cardinality();
+      if (matchCount > 0) {
+        possibles.and(matches); // eliminate any that didn't match this qualifier
+      }
+
+      if (matchCount == 1) break;
+    }
+    return possibles.nextSetBit(0);
+  }
+}
@@ -1,6 +1,5 @@
 package org.robolectric.res;
 
-import java.math.BigInteger;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
@@ -8,12 +7,23 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ResBunch {
   private final Map<String, ResMap<TypedResource>> types = new LinkedHashMap<String, ResMap<TypedResource>>();
 
-  public void put(String attrType, String name, TypedResource value, XmlLoader.XmlContext xmlContext) {
+  public void put(final String attrType, final String name, final TypedResource value, final XmlLoader.XmlContext xmlContext) {
+    DeferredPuts deferredPuts = DeferredPuts.current();
+    if (deferredPuts != null) {
+      deferredPuts.add(new Runnable() {
+        @Override public void run() {
+          put(attrType, name, value, xmlContext);
+        }
+      });
+      return;
+    }
+
     ResName resName = new ResName(xmlContext.packageName, attrType, name);
     ResMap<TypedResource> valuesMap = getValuesMap(attrType);
     Values values = valuesMap.find(resName);
@@ -36,43 +46,23 @@ public class ResBunch {
   }
 
   public Value getValue(@NotNull ResName resName, String qualifiers) {
-    ResMap<TypedResource> valuesMap = getValuesMap(resName.type);
-    Values values = valuesMap.find(resName);
-    return (values != null) ? pick(values, qualifiers) : null;
+    ResMap<TypedResource> valuesMap = types.get(resName.type);
+    Values values = valuesMap == null ? null : valuesMap.map.get(resName);
+    if (values == null) return null;
+    return valuesMap.immutable ? values.pick(qualifiers) : pick(values, qualifiers);
   }
 
-  public static <T> Value pick(Values values, String qualifiers) {
-    final int count = values.size();
-    if (count == 0) return null;
-
-    BigInteger possibles = BigInteger.ZERO;
-    for (int i = 0; i < count; i++) possibles = possibles.setBit(i);
-
-    StringTokenizer st = new StringTokenizer(qualifiers, "-");
-    while (st.hasMoreTokens()) {
-      String qualifier = st.nextToken();
-      String paddedQualifier = "-" + qualifier + "-";
-      BigInteger matches = BigInteger.ZERO;
-
-      for (int i = 0; i < count; i++) {
-        if (!possibles.testBit(i)) continue;
-
-        if (values.get(i).qualifiers.contains(paddedQualifier)) {
-          matches = matches.setBit(i);
-        }
-      }
-
-      if (!matches.equals(BigInteger.ZERO)) {
-        possibles = possibles.and(matches); // eliminate any that didn't match this qualifier
-      }
-
-      if (matches.bitCount() == 1) break;
-    }
+  /**
+   * @return the resource's values, or null if it has none
+   */
+  Values getValues(@NotNull ResName resName) {
+    ResMap<TypedResource> valuesMap = types.get(resName.type);
+    return valuesMap == null ? null : valuesMap.map.get(resName);
+  }
 
-    for (int i = 0; i < count; i++) {
-      if (possibles.testBit(i)) return values.get(i);
-    }
-    throw new IllegalStateException("couldn't handle qualifiers \"" + qualifiers + "\"");
+  public static <T> Value pick(Values values, String qualifiers) {
+    int index = QualifierKey.pick(values, QualifierKey.of(qualifiers));
+    return index == -1 ? null : values.get(index);
   }
 
   public int size() {
@@ -89,14 +79,26 @@ public class ResBunch {
     }
   }
 
+  /**
+   * @return every resource's values, most general first
+   */
+  Map<ResName, Values> getAllValues() {
+    Map<ResName, Values> allValues = new LinkedHashMap<ResName, Values>();
+    for (ResMap<TypedResource> map : types.values()) {
+      allValues.putAll(map.map);
+    }
+    return allValues;
+  }
+
   public void mergeLibraryStyle(ResBunch fromResBundle, String packageName) {
     for (Map.Entry<String, ResMap<TypedResource>> entry : fromResBundle.types.entrySet()) {
       getValuesMap(entry.getKey()).merge(packageName, entry.getValue());
     }
   }
 
-  public static class Value implements Comparable<Value> {
+  public static class Value implements Comparable<Value>, QualifierKey.Qualified {
     final String qualifiers;
+    final QualifierKey qualifierKey;
     final TypedResource value;
     final XmlLoader.XmlContext xmlContext;
 
@@ -107,6 +109,7 @@ public class ResBunch {
 
       this.xmlContext = xmlContext;
       this.qualifiers = qualifiers == null ? "--" : "-" + qualifiers + "-";
+      this.qualifierKey = QualifierKey.of(qualifiers);
       this.value = value;
     }
 
@@ -115,6 +118,10 @@ public class ResBunch {
       return qualifiers.compareTo(o.qualifiers);
     }
 
+    @Override public QualifierKey getQualifierKey() {
+      return qualifierKey;
+    }
+
     public TypedResource getTypedResource() {
       return value;
     }
@@ -125,6 +132,25 @@ public class ResBunch {
   }
 
   static class Values extends ArrayList<Value> {
+    // only used once the values can no longer change
+    private volatile ConcurrentMap<String, Value> picks;
+
+    /**
+     * Like {@link ResBunch#pick(Values, String)}, but remembers what it picked for each set of qualifiers.
+     */
+    Value pick(String qualifiers) {
+      ConcurrentMap<String, Value> picks = this.picks;
+      if (picks == null) {
+        this.picks = picks = new ConcurrentHashMap<String, Value>();
+      }
+
+      Value value = picks.get(qualifiers);
+      if (value == null) {
+        value = ResBunch.pick(this, qualifiers);
+        if (value != null) picks.put(qualifiers, value);
+      }
+      return value;
+    }
   }
 
   private static class ResMap<T> {
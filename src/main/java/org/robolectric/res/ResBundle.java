@@ -1,19 +1,29 @@
 package org.robolectric.res;
 
-import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ResBundle<T> {
   private final ResMap<T> valuesMap = new ResMap<T>();
   private final ResMap<List<T>> valuesArrayMap = new ResMap<List<T>>();
   private String overrideNamespace;
 
-  public void put(String attrType, String name, T value, XmlLoader.XmlContext xmlContext) {
+  public void put(final String attrType, final String name, final T value, final XmlLoader.XmlContext xmlContext) {
+    DeferredPuts deferredPuts = DeferredPuts.current();
+    if (deferredPuts != null) {
+      deferredPuts.add(new Runnable() {
+        @Override public void run() {
+          put(attrType, name, value, xmlContext);
+        }
+      });
+      return;
+    }
+
     ResName resName = new ResName(maybeOverride(xmlContext.packageName), attrType, name);
     Values<T> values = valuesMap.find(resName);
     values.add(new Value<T>(xmlContext.getQualifiers(), value, xmlContext));
@@ -26,42 +36,14 @@ public class ResBundle<T> {
   }
 
   public Value<T> getValue(ResName resName, String qualifiers) {
-    Values<T> values = valuesMap.find(maybeOverride(resName));
-    return (values != null) ? pick(values, qualifiers) : null;
+    Values<T> values = valuesMap.map.get(maybeOverride(resName));
+    if (values == null) return null;
+    return valuesMap.immutable ? values.pick(qualifiers) : pick(values, qualifiers);
   }
 
   public static <T> Value<T> pick(Values<T> values, String qualifiers) {
-    final int count = values.size();
-    if (count == 0) return null;
-
-    BigInteger possibles = BigInteger.ZERO;
-    for (int i = 0; i < count; i++) possibles = possibles.setBit(i);
-
-    StringTokenizer st = new StringTokenizer(qualifiers, "-");
-    while (st.hasMoreTokens()) {
-      String qualifier = st.nextToken();
-      String paddedQualifier = "-" + qualifier + "-";
-      BigInteger matches = BigInteger.ZERO;
-
-      for (int i = 0; i < count; i++) {
-        if (!possibles.testBit(i)) continue;
-
-        if (values.get(i).qualifiers.contains(paddedQualifier)) {
-          matches = matches.setBit(i);
-        }
-      }
-
-      if (!matches.equals(BigInteger.ZERO)) {
-        possibles = possibles.and(matches); // eliminate any that didn't match this qualifier
-      }
-
-      if (matches.bitCount() == 1) break;
-    }
-
-    for (int i = 0; i < count; i++) {
-      if (possibles.testBit(i)) return values.get(i);
-    }
-    throw new IllegalStateException("couldn't handle qualifiers \"" + qualifiers + "\"");
+    int index = QualifierKey.pick(values, QualifierKey.of(qualifiers));
+    return index == -1 ? null : values.get(index);
   }
 
   public int size() {
@@ -86,13 +68,21 @@ public class ResBundle<T> {
     return overrideNamespace == null ? resName : new ResName(overrideNamespace, resName.type, resName.name);
   }
 
+  /**
+   * @return every resource's values, most general first
+   */
+  Map<ResName, Values<T>> getAllValues() {
+    return new HashMap<ResName, Values<T>>(valuesMap.map);
+  }
+
   public void mergeLibraryStyle(ResBundle<T> fromResBundle, String packageName) {
     valuesMap.merge(packageName, fromResBundle.valuesMap);
     valuesArrayMap.merge(packageName, fromResBundle.valuesArrayMap);
   }
 
-  static class Value<T> implements Comparable<Value<T>> {
+  static class Value<T> implements Comparable<Value<T>>, QualifierKey.Qualified {
     final String qualifiers;
+    final QualifierKey qualifierKey;
     final T value;
     final XmlLoader.XmlContext xmlContext;
 
@@ -103,6 +93,7 @@ public class ResBundle<T> {
 
       this.xmlContext = xmlContext;
       this.qualifiers = qualifiers == null ? "--" : "-" + qualifiers + "-";
+      this.qualifierKey = QualifierKey.of(qualifiers);
       this.value = value;
     }
 
@@ -110,9 +101,32 @@ public class ResBundle<T> {
     public int compareTo(Value<T> o) {
       return qualifiers.compareTo(o.qualifiers);
     }
+
+    @Override public QualifierKey getQualifierKey() {
+      return qualifierKey;
+    }
   }
 
   static class Values<T> extends ArrayList<Value<T>> {
+    // only used once the values can no longer change
+    private volatile ConcurrentMap<String, Value<T>> picks;
+
+    /**
+     * Like {@link ResBundle#pick(Values, String)}, but remembers what it picked for each set of qualifiers.
+     */
+    Value<T> pick(String qualifiers) {
+      ConcurrentMap<String, Value<T>> picks = this.picks;
+      if (picks == null) {
+        this.picks = picks = new ConcurrentHashMap<String, Value<T>>();
+      }
+
+      Value<T> value = picks.get(qualifiers);
+      if (value == null) {
+        value = ResBundle.pick(this, qualifiers);
+        if (value != null) picks.put(qualifiers, value);
+      }
+      return value;
+    }
   }
 
   private static class ResMap<T> {
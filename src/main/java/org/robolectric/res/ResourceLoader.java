@@ -1,7 +1,6 @@
 package org.robolectric.res;
 
 import org.jetbrains.annotations.NotNull;
-import org.w3c.dom.Document;
 
 import java.io.InputStream;
 
@@ -14,7 +13,7 @@ public interface ResourceLoader {
 
   Plural getPlural(ResName resName, int quantity, String qualifiers);
 
-  Document getXml(ResName resName, String qualifiers);
+  XmlBlock getXml(ResName resName, String qualifiers);
 
   DrawableNode getDrawableNode(ResName resName, String qualifiers);
 
@@ -0,0 +1,463 @@
+package org.robolectric.res;
+
+import org.jetbrains.annotations.NotNull;
+import org.robolectric.util.AtomicFiles;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.robolectric.util.Util.readBytes;
+
+/**
+ * Keeps what {@link PackageResourceLoader} loads from a package's {@code values*} directories in a compact binary
+ * file, so later JVMs needn't parse the same XML again.
+ * <p/>
+ * Entries are named by a SHA-1 hash of the package name, of the names and contents of the {@code values*} XML
+ * files, and of the loading code itself, so any change to them is noticed; unreadable or stale entries are ignored
+ * and the XML is parsed as usual.
+ * Layouts, menus, drawables and other XML files are still parsed, since they're kept as DOM documents.
+ * <p/>
+ * Enable by setting the {@code robolectric.resourceCache} system property to a directory.
+ */
+public class ResourceTableCache {
+  public static final String CACHE_DIR_PROPERTY = "robolectric.resourceCache";
+
+  private static final int MAGIC = 0x52544331; // "RTC1"
+  private static final int FORMAT_VERSION = 1;
+
+  private static final int STRING_VALUE = 0;
+  private static final int ARRAY_VALUE = 1;
+  private static final int ATTR_VALUE = 2;
+  private static final int STYLE_VALUE = 3;
+
+  private static final Class<?>[] LOADING_CLASSES = {
+      PackageResourceLoader.class, ValueResourceLoader.class, PluralResourceLoader.class, AttrResourceLoader.class,
+      StyleResourceLoader.class, XpathResourceXmlLoader.class, XmlLoader.class, ResourceTableCache.class
+  };
+  private static final String LOADING_CODE_HASH = loadingCodeHash();
+
+  private static final FsFile.Filter ENDS_WITH_XML = new FsFile.Filter() {
+    @Override public boolean accept(@NotNull FsFile fsFile) {
+      return fsFile.getName().endsWith(".xml");
+    }
+  };
+
+  private static final Comparator<FsFile> BY_NAME = new Comparator<FsFile>() {
+    @Override public int compare(FsFile a, FsFile b) {
+      return a.getName().compareTo(b.getName());
+    }
+  };
+
+  private final File cacheDir;
+
+  public ResourceTableCache(File cacheDir) {
+    this.cacheDir = cacheDir;
+  }
+
+  /**
+   * @return a cache in the directory named by the {@code robolectric.resourceCache} system property, or null if it
+   *     isn't set
+   */
+  public static ResourceTableCache fromSystemProperties() {
+    String cacheDirName = System.getProperty(CACHE_DIR_PROPERTY);
+    if (cacheDirName == null || cacheDirName.isEmpty()) return null;
+
+    return new ResourceTableCache(new File(cacheDirName));
+  }
+
+  /**
+   * @return a hash of the package's values, naming its entry
+   */
+  public String keyFor(ResourcePath resourcePath) throws IOException {
+    MessageDigest digest = AtomicFiles.sha1Digest();
+    digest.update(LOADING_CODE_HASH.getBytes("UTF-8"));
+    digest.update(resourcePath.getPackageName().getBytes("UTF-8"));
+    FsFile[] dirs = resourcePath.resourceBase.listFiles(new DirectoryMatchingFilter("values"));
+    if (dirs == null) return null;
+
+    Arrays.sort(dirs, BY_NAME);
+    for (FsFile dir : dirs) {
+      FsFile[] files = dir.listFiles(ENDS_WITH_XML);
+      Arrays.sort(files, BY_NAME);
+      for (FsFile file : files) {
+        digest.update((dir.getName() + "/" + file.getName()).getBytes("UTF-8"));
+        byte[] bytes = file.getBytes();
+        digest.update(toBytes(bytes.length));
+        digest.update(bytes);
+      }
+    }
+    return AtomicFiles.hex(digest.digest());
+  }
+
+  /**
+   * Loads the entry for {@code key} into the given bundles, which should be empty.
+   *
+   * @return false if there's no usable entry, in which case the bundles are untouched
+   */
+  public boolean load(String key, ResourcePath resourcePath, ResBunch data, ResBundle<PluralResourceLoader.PluralRules> pluralsData) {
+    File file = fileFor(key);
+    if (!file.exists()) return false;
+
+    List<Entry<TypedResource>> dataEntries;
+    List<Entry<PluralResourceLoader.PluralRules>> pluralsEntries;
+    try {
+      Reader reader = new Reader(new DataInputStream(new BufferedInputStream(new FileInputStream(file))));
+      try {
+        if (reader.in.readInt() != MAGIC || reader.in.readInt() != FORMAT_VERSION
+            || !key.equals(reader.readString())) {
+          return false;
+        }
+
+        dataEntries = new ArrayList<Entry<TypedResource>>();
+        for (int i = reader.in.readInt(); i > 0; i--) {
+          dataEntries.add(new Entry<TypedResource>(reader.readString(), reader.readString(), reader.readString(),
+              reader.readString(), reader.readTypedResource()));
+        }
+
+        pluralsEntries = new ArrayList<Entry<PluralResourceLoader.PluralRules>>();
+        for (int i = reader.in.readInt(); i > 0; i--) {
+          pluralsEntries.add(new Entry<PluralResourceLoader.PluralRules>(reader.readString(), reader.readString(),
+              reader.readString(), reader.readString(), reader.readPluralRules()));
+        }
+      } finally {
+        reader.in.close();
+      }
+    } catch (IOException e) {
+      System.out.println("[WARN] couldn't read " + file + ": " + e);
+      return false;
+    }
+
+    String packageName = resourcePath.getPackageName();
+    for (Entry<TypedResource> entry : dataEntries) {
+      data.put(entry.type, entry.name, entry.value, entry.xmlContext(resourcePath.resourceBase, packageName));
+    }
+    for (Entry<PluralResourceLoader.PluralRules> entry : pluralsEntries) {
+      pluralsData.put(entry.type, entry.name, entry.value, entry.xmlContext(resourcePath.resourceBase, packageName));
+    }
+    return true;
+  }
+
+  /**
+   * Writes the given bundles, which should hold only what was loaded from the {@code values*} directories, as the
+   * entry for {@code key}.
+   */
+  public void save(final String key, final ResBunch data, final ResBundle<PluralResourceLoader.PluralRules> pluralsData) {
+    File file = fileFor(key);
+    try {
+      AtomicFiles.write(file, new AtomicFiles.Writer() {
+        @Override public void writeTo(OutputStream out) throws IOException {
+          Writer writer = new Writer(new DataOutputStream(out));
+          writer.out.writeInt(MAGIC);
+          writer.out.writeInt(FORMAT_VERSION);
+          writer.writeString(key);
+
+          List<Entry<TypedResource>> dataEntries = entries(data.getAllValues());
+          writer.out.writeInt(dataEntries.size());
+          for (Entry<TypedResource> entry : dataEntries) {
+            writer.writeEntry(entry);
+            writer.writeTypedResource(entry.value);
+          }
+
+          List<Entry<PluralResourceLoader.PluralRules>> pluralsEntries = bundleEntries(pluralsData.getAllValues());
+          writer.out.writeInt(pluralsEntries.size());
+          for (Entry<PluralResourceLoader.PluralRules> entry : pluralsEntries) {
+            writer.writeEntry(entry);
+            writer.writePluralRules(entry.value);
+          }
+          writer.out.flush();
+        }
+      });
+    } catch (UnsupportedValueException e) {
+      System.out.println("[INFO] not caching resources for " + key + ": " + e.getMessage());
+    } catch (IOException e) {
+      System.out.println("[WARN] couldn't write " + file + ": " + e);
+    }
+  }
+
+  private static List<Entry<TypedResource>> entries(Map<ResName, ResBunch.Values> allValues) {
+    List<Entry<TypedResource>> entries = new ArrayList<Entry<TypedResource>>();
+    for (Map.Entry<ResName, ResBunch.Values> mapEntry : allValues.entrySet()) {
+      for (ResBunch.Value value : mapEntry.getValue()) {
+        entries.add(new Entry<TypedResource>(mapEntry.getKey(), value.xmlContext, value.value));
+      }
+    }
+    return entries;
+  }
+
+  private static <T> List<Entry<T>> bundleEntries(Map<ResName, ResBundle.Values<T>> allValues) {
+    List<Entry<T>> entries = new ArrayList<Entry<T>>();
+    for (Map.Entry<ResName, ResBundle.Values<T>> mapEntry : allValues.entrySet()) {
+      for (ResBundle.Value<T> value : mapEntry.getValue()) {
+        entries.add(new Entry<T>(mapEntry.getKey(), value.xmlContext, value.value));
+      }
+    }
+    return entries;
+  }
+
+  static String loadingCodeHash() {
+    StringBuilder buf = new StringBuilder();
+    for (Class<?> loadingClass : LOADING_CLASSES) {
+      String classFile = loadingClass.getSimpleName() + ".class";
+      InputStream in = loadingClass.getResourceAsStream(classFile);
+      if (in == null) {
+        buf.append(classFile);
+        continue;
+      }
+
+      try {
+        buf.append(AtomicFiles.sha1(readBytes(in)));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return buf.toString();
+  }
+
+  private File fileFor(String key) {
+    return new File(cacheDir, key + ".res");
+  }
+
+  private static byte[] toBytes(int i) {
+    return new byte[] {(byte) (i >>> 24), (byte) (i >>> 16), (byte) (i >>> 8), (byte) i};
+  }
+
+  private static class Entry<T> {
+    private final String type;
+    private final String name;
+    private final String dirName;
+    private final String fileName;
+    private final T value;
+
+    Entry(String type, String name, String dirName, String fileName, T value) {
+      this.type = type;
+      this.name = name;
+      this.dirName = dirName;
+      this.fileName = fileName;
+      this.value = value;
+    }
+
+    Entry(ResName resName, XmlLoader.XmlContext xmlContext, T value) {
+      this(resName.type, resName.name, xmlContext.getXmlFile().getParent().getName(),
+          xmlContext.getXmlFile().getName(), value);
+    }
+
+    XmlLoader.XmlContext xmlContext(FsFile resourceBase, String packageName) {
+      return new XmlLoader.XmlContext(packageName, resourceBase.join(dirName, fileName));
+    }
+  }
+
+  private static class UnsupportedValueException extends IOException {
+    UnsupportedValueException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Writes each distinct string only once; later occurrences refer back to it.
+   */
+  private static class Writer {
+    private final DataOutputStream out;
+    private final Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+
+    Writer(DataOutputStream out) {
+      this.out = out;
+    }
+
+    void writeString(String string) throws IOException {
+      if (string == null) {
+        out.writeInt(-1);
+        return;
+      }
+
+      Integer index = stringIndexes.get(string);
+      if (index != null) {
+        out.writeInt(index);
+      } else {
+        stringIndexes.put(string, stringIndexes.size());
+        byte[] bytes = string.getBytes("UTF-8");
+        out.writeInt(-2 - bytes.length);
+        out.write(bytes);
+      }
+    }
+
+    void writeEntry(Entry<?> entry) throws IOException {
+      writeString(entry.type);
+      writeString(entry.name);
+      writeString(entry.dirName);
+      writeString(entry.fileName);
+    }
+
+    void writeTypedResource(TypedResource typedResource) throws IOException {
+      if (typedResource.getClass() != TypedResource.class) {
+        throw new UnsupportedValueException("can't write " + typedResource);
+      }
+
+      Object data = typedResource.getData();
+      if (data instanceof String) {
+        out.writeByte(STRING_VALUE);
+        writeString((String) data);
+      } else if (data instanceof TypedResource[]) {
+        out.writeByte(ARRAY_VALUE);
+        TypedResource[] items = (TypedResource[]) data;
+        out.writeInt(items.length);
+        for (TypedResource item : items) {
+          writeTypedResource(item);
+        }
+      } else if (data instanceof AttrData) {
+        out.writeByte(ATTR_VALUE);
+        writeAttrData((AttrData) data);
+      } else if (data instanceof StyleData) {
+        out.writeByte(STYLE_VALUE);
+        writeStyleData((StyleData) data);
+      } else {
+        throw new UnsupportedValueException("can't write " + typedResource);
+      }
+      writeString(typedResource.getResType().name());
+    }
+
+    private void writeAttrData(AttrData attrData) throws IOException {
+      writeString(attrData.getName());
+      writeString(attrData.getFormat());
+      List<AttrData.Pair> pairs = attrData.getPairs();
+      out.writeInt(pairs == null ? -1 : pairs.size());
+      if (pairs != null) {
+        for (AttrData.Pair pair : pairs) {
+          writeString(pair.getName());
+          writeString(pair.getValue());
+        }
+      }
+    }
+
+    private void writeStyleData(StyleData styleData) throws IOException {
+      writeString(styleData.getPackageName());
+      writeString(styleData.getName());
+      writeString(styleData.getParent());
+      Map<ResName, Attribute> items = styleData.getItems();
+      out.writeInt(items.size());
+      for (Map.Entry<ResName, Attribute> item : items.entrySet()) {
+        writeResName(item.getKey());
+        Attribute attribute = item.getValue();
+        writeResName(attribute.resName);
+        writeString(attribute.value);
+        writeString(attribute.contextPackageName);
+      }
+    }
+
+    private void writeResName(ResName resName) throws IOException {
+      writeString(resName.packageName);
+      writeString(resName.type);
+      writeString(resName.name);
+    }
+
+    void writePluralRules(PluralResourceLoader.PluralRules pluralRules) throws IOException {
+      out.writeInt(pluralRules.plurals.size());
+      for (Plural plural : pluralRules.plurals) {
+        writeString(plural.quantity);
+        writeString(plural.string);
+      }
+    }
+  }
+
+  private static class Reader {
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<String>();
+
+    Reader(DataInputStream in) {
+      this.in = in;
+    }
+
+    String readString() throws IOException {
+      int index = in.readInt();
+      if (index == -1) return null;
+      if (index >= 0) {
+        if (index >= strings.size()) throw new IOException("bad string reference " + index);
+        return strings.get(index);
+      }
+
+      byte[] bytes = new byte[-2 - index];
+      in.readFully(bytes);
+      String string = new String(bytes, "UTF-8");
+      strings.add(string);
+      return string;
+    }
+
+    TypedResource readTypedResource() throws IOException {
+      int kind = in.readByte();
+      Object data;
+      switch (kind) {
+        case STRING_VALUE:
+          data = readString();
+          break;
+        case ARRAY_VALUE:
+          TypedResource[] items = new TypedResource[in.readInt()];
+          for (int i = 0; i < items.length; i++) {
+            items[i] = readTypedResource();
+          }
+          data = items;
+          break;
+        case ATTR_VALUE:
+          data = readAttrData();
+          break;
+        case STYLE_VALUE:
+          data = readStyleData();
+          break;
+        default:
+          throw new IOException("bad value kind " + kind);
+      }
+
+      try {
+        return new TypedResource<Object>(data, ResType.valueOf(readString()));
+      } catch (IllegalArgumentException e) {
+        throw new IOException(e.getMessage());
+      }
+    }
+
+    private AttrData readAttrData() throws IOException {
+      String name = readString();
+      String format = readString();
+      int pairCount = in.readInt();
+      List<AttrData.Pair> pairs = null;
+      if (pairCount >= 0) {
+        pairs = new ArrayList<AttrData.Pair>();
+        for (int i = 0; i < pairCount; i++) {
+          pairs.add(new AttrData.Pair(readString(), readString()));
+        }
+      }
+      return new AttrData(name, format, pairs);
+    }
+
+    private StyleData readStyleData() throws IOException {
+      StyleData styleData = new StyleData(readString(), readString(), readString());
+      for (int i = in.readInt(); i > 0; i--) {
+        ResName attrName = readResName();
+        styleData.add(attrName, new Attribute(readResName(), readString(), readString()));
+      }
+      return styleData;
+    }
+
+    private ResName readResName() throws IOException {
+      return new ResName(readString(), readString(), readString());
+    }
+
+    PluralResourceLoader.PluralRules readPluralRules() throws IOException {
+      PluralResourceLoader.PluralRules pluralRules = new PluralResourceLoader.PluralRules();
+      for (int i = in.readInt(); i > 0; i--) {
+        pluralRules.add(new Plural(readString(), readString()));
+      }
+      return pluralRules;
+    }
+  }
+}
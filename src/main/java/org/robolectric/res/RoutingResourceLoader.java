@@ -1,7 +1,6 @@
 package org.robolectric.res;
 
 import org.jetbrains.annotations.NotNull;
-import org.w3c.dom.Document;
 
 import java.io.InputStream;
 import java.util.HashSet;
@@ -37,7 +36,7 @@ public class RoutingResourceLoader implements ResourceLoader {
   }
 
   @Override
-  public Document getXml(ResName resName, String qualifiers) {
+  public XmlBlock getXml(ResName resName, String qualifiers) {
     return pickFor(resName).getXml(resName, "");
   }
 
@@ -107,7 +106,7 @@ public class RoutingResourceLoader implements ResourceLoader {
       super(null);
     }
 
-    @Override void doInitialize() {
+    @Override void doInitialize(Category category) {
     }
 
     @Override
@@ -52,4 +52,8 @@ public class StyleData implements Style {
   public String getPackageName() {
     return packageName;
   }
+
+  Map<ResName, Attribute> getItems() {
+    return items;
+  }
 }
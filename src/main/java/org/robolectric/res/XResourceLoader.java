@@ -1,47 +1,105 @@
 package org.robolectric.res;
 
 import org.jetbrains.annotations.NotNull;
-import org.w3c.dom.Document;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 abstract class XResourceLoader implements ResourceLoader {
-  final ResBunch data = new ResBunch();
-  final ResBundle<PluralResourceLoader.PluralRules> pluralsData = new ResBundle<PluralResourceLoader.PluralRules>();
-  final ResBundle<String> stringData = new ResBundle<String>();
-  final ResBundle<MenuNode> menuData = new ResBundle<MenuNode>();
-  final ResBundle<DrawableNode> drawableData = new ResBundle<DrawableNode>();
-  final ResBundle<PreferenceNode> preferenceData = new ResBundle<PreferenceNode>();
-  final ResBundle<Document> xmlDocuments = new ResBundle<Document>();
-  final ResBundle<FsFile> rawResources = new ResBundle<FsFile>();
+  private static final Set<Category> categoriesLoadedThisRun = EnumSet.noneOf(Category.class);
+  private static boolean reportRegistered;
+
+  private final Map<Category, Tables> tablesByCategory = new EnumMap<Category, Tables>(Category.class);
   private final ResourceIndex resourceIndex;
-  boolean isInitialized = false;
+  private volatile int loadedCategoryBits;
+  // values of types loaded from more than one category, combined once all of those are loaded; never changed after
+  private final ConcurrentMap<ResName, ResBunch.Values> combinedValues = new ConcurrentHashMap<ResName, ResBunch.Values>();
 
   protected XResourceLoader(ResourceIndex resourceIndex) {
     this.resourceIndex = resourceIndex;
+    for (Category category : Category.values()) {
+      tablesByCategory.put(category, new Tables());
+    }
   }
 
-  abstract void doInitialize();
+  /**
+   * Loads one category of resources into {@link #tables(Category)}.
+   */
+  abstract void doInitialize(Category category);
 
+  /**
+   * Loads every category of resources.
+   */
   void initialize() {
-    if (isInitialized) return;
-    doInitialize();
-    isInitialized = true;
+    for (Category category : Category.values()) {
+      initialize(category);
+    }
+  }
+
+  void initialize(Category category) {
+    if (isInitialized(category)) return;
+
+    // tests on other threads may be sharing this resource loader
+    synchronized (this) {
+      if (isInitialized(category)) return;
+      doInitialize(category);
+      tables(category).makeImmutable();
+      loadedCategoryBits |= 1 << category.ordinal();
+    }
+    recordLoaded(category);
+  }
+
+  boolean isInitialized(Category category) {
+    return (loadedCategoryBits & (1 << category.ordinal())) != 0;
+  }
+
+  /**
+   * @return the categories of resources this loader has loaded so far
+   */
+  Set<Category> getLoadedCategories() {
+    Set<Category> loadedCategories = EnumSet.noneOf(Category.class);
+    for (Category category : Category.values()) {
+      if (isInitialized(category)) loadedCategories.add(category);
+    }
+    return loadedCategories;
+  }
 
-    makeImmutable();
+  /**
+   * @return the categories of resources any loader has loaded since the JVM started
+   */
+  static Set<Category> getCategoriesLoadedThisRun() {
+    synchronized (categoriesLoadedThisRun) {
+      return EnumSet.copyOf(categoriesLoadedThisRun);
+    }
   }
 
-  protected void makeImmutable() {
-    data.makeImmutable();
+  private static void recordLoaded(Category category) {
+    synchronized (categoriesLoadedThisRun) {
+      categoriesLoadedThisRun.add(category);
+      if (!reportRegistered) {
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+          @Override public void run() {
+            Set<Category> unused = EnumSet.complementOf(EnumSet.copyOf(getCategoriesLoadedThisRun()));
+            if (!unused.isEmpty()) {
+              System.out.println("[INFO] resource categories never loaded: " + unused);
+            }
+          }
+        });
+        reportRegistered = true;
+      }
+    }
+  }
 
-    pluralsData.makeImmutable();
-    stringData.makeImmutable();
-    menuData.makeImmutable();
-    drawableData.makeImmutable();
-    preferenceData.makeImmutable();
-    xmlDocuments.makeImmutable();
-    rawResources.makeImmutable();
+  Tables tables(Category category) {
+    return tablesByCategory.get(category);
   }
 
   @Override
@@ -50,36 +108,79 @@ abstract class XResourceLoader implements ResourceLoader {
   }
 
   public TypedResource getValue(@NotNull ResName resName, String qualifiers) {
-    initialize();
-    ResBunch.Value value = data.getValue(resName, qualifiers);
+    Category[] categories = Category.forValueType(resName.type);
+    ResBunch.Value value;
+    if (categories.length == 0) {
+      return null;
+    } else if (categories.length == 1) {
+      initialize(categories[0]);
+      value = tables(categories[0]).data.getValue(resName, qualifiers);
+    } else {
+      value = getCombinedValues(resName, categories).pick(qualifiers);
+    }
     return value == null ? null : value.getTypedResource();
   }
 
+  /**
+   * @return {@link #getValues(ResName, Category[])}, combined only the first time they're asked for, so picks from
+   *     them are remembered too
+   */
+  ResBunch.Values getCombinedValues(ResName resName, Category[] categories) {
+    ResBunch.Values values = combinedValues.get(resName);
+    if (values == null) {
+      values = getValues(resName, categories);
+      ResBunch.Values existingValues = combinedValues.putIfAbsent(resName, values);
+      if (existingValues != null) values = existingValues;
+    }
+    return values;
+  }
+
+  /**
+   * @return the resource's values from all the given categories, in the order they'd have been in had they all been
+   *     loaded into one bunch
+   */
+  ResBunch.Values getValues(ResName resName, Category[] categories) {
+    ResBunch.Values values = new ResBunch.Values();
+    for (Category category : categories) {
+      initialize(category);
+      ResBunch.Values categoryValues = tables(category).data.getValues(resName);
+      if (categoryValues != null) values.addAll(categoryValues);
+    }
+    Collections.sort(values); // as ResBunch.put keeps them
+    return values;
+  }
+
   @Override
   public Plural getPlural(ResName resName, int quantity, String qualifiers) {
-    initialize();
-    PluralResourceLoader.PluralRules pluralRules = pluralsData.get(resName, qualifiers);
+    initialize(Category.VALUES);
+    PluralResourceLoader.PluralRules pluralRules = tables(Category.VALUES).pluralsData.get(resName, qualifiers);
     if (pluralRules == null) return null;
 
     return pluralRules.find(quantity);
   }
 
   @Override
-  public Document getXml(ResName resName, String qualifiers) {
-    initialize();
-    return xmlDocuments.get(resName, qualifiers);
+  public XmlBlock getXml(ResName resName, String qualifiers) {
+    // each category's XML files have types of their own, so at most one category has any for this name
+    for (Category category : Category.forXmlType(resName.type)) {
+      initialize(category);
+      LazyXmlBlock xmlBlock = tables(category).xmlBlocks.get(resName, qualifiers);
+      if (xmlBlock != null) return xmlBlock.get();
+    }
+    return null;
   }
 
   @Override
   public DrawableNode getDrawableNode(ResName resName, String qualifiers) {
-    return drawableData.get(resName, qualifiers);
+    initialize(Category.DRAWABLE);
+    return tables(Category.DRAWABLE).drawableData.get(resName, qualifiers);
   }
 
   @Override
   public InputStream getRawValue(ResName resName) {
-    initialize();
+    initialize(Category.RAW);
 
-    FsFile file = rawResources.get(resName, "");
+    FsFile file = tables(Category.RAW).rawResources.get(resName, "");
     try {
       return file == null ? null : file.getInputStream();
     } catch (IOException e) {
@@ -89,16 +190,16 @@ abstract class XResourceLoader implements ResourceLoader {
 
   @Override
   public PreferenceNode getPreferenceNode(ResName resName, String qualifiers) {
-    initialize();
+    initialize(Category.XML);
 
-    return preferenceData.get(resName, qualifiers);
+    return tables(Category.XML).preferenceData.get(resName, qualifiers);
   }
 
   @Override
   public MenuNode getMenuNode(ResName resName, String qualifiers) {
-    initialize();
     if (resName == null) return null;
-    return menuData.get(resName, qualifiers);
+    initialize(Category.MENU);
+    return tables(Category.MENU).menuData.get(resName, qualifiers);
   }
 
   @Override
@@ -106,6 +207,89 @@ abstract class XResourceLoader implements ResourceLoader {
     return resourceIndex;
   }
 
+  /**
+   * The kinds of resources a loader loads separately, each when it's first needed.
+   */
+  enum Category {
+    VALUES, LAYOUT, MENU, DRAWABLE, ANIM, COLOR, XML, RAW;
+
+    private static final Category[] NONE = new Category[0];
+    private static final Map<String, Category[]> VALUE_CATEGORIES = new HashMap<String, Category[]>();
+    private static final Map<String, Category[]> XML_CATEGORIES = new HashMap<String, Category[]>();
+
+    static {
+      for (String type : new String[] {"attr", "array", "bool", "dimen", "integer", "plurals", "string", "style"}) {
+        VALUE_CATEGORIES.put(type, new Category[] {VALUES});
+      }
+      VALUE_CATEGORIES.put("layout", new Category[] {LAYOUT});
+      VALUE_CATEGORIES.put("drawable", new Category[] {DRAWABLE});
+      VALUE_CATEGORIES.put("anim", new Category[] {ANIM});
+      // colors are loaded from values files, and color state lists from res/color
+      VALUE_CATEGORIES.put("color", new Category[] {VALUES, COLOR});
+
+      XML_CATEGORIES.put("layout", new Category[] {LAYOUT});
+      XML_CATEGORIES.put("menu", new Category[] {MENU});
+      XML_CATEGORIES.put("drawable", new Category[] {DRAWABLE});
+      XML_CATEGORIES.put("anim", new Category[] {ANIM});
+      XML_CATEGORIES.put("color", new Category[] {COLOR});
+      XML_CATEGORIES.put("xml", new Category[] {XML});
+    }
+
+    /**
+     * @return the categories whose loaders put values of the given type into {@link Tables#data}; none for types
+     *     (like menu, xml and raw) which are only loaded into other tables, or not loaded at all
+     */
+    static Category[] forValueType(String type) {
+      Category[] categories = VALUE_CATEGORIES.get(type);
+      return categories == null ? NONE : categories;
+    }
+
+    /**
+     * @return the categories whose loaders keep XML files of the given type
+     */
+    static Category[] forXmlType(String type) {
+      Category[] categories = XML_CATEGORIES.get(type);
+      return categories == null ? NONE : categories;
+    }
+  }
+
+  /**
+   * The resources of one {@link Category}.
+   */
+  static class Tables {
+    final ResBunch data = new ResBunch();
+    final ResBundle<PluralResourceLoader.PluralRules> pluralsData = new ResBundle<PluralResourceLoader.PluralRules>();
+    final ResBundle<String> stringData = new ResBundle<String>();
+    final ResBundle<MenuNode> menuData = new ResBundle<MenuNode>();
+    final ResBundle<DrawableNode> drawableData = new ResBundle<DrawableNode>();
+    final ResBundle<PreferenceNode> preferenceData = new ResBundle<PreferenceNode>();
+    final ResBundle<LazyXmlBlock> xmlBlocks = new ResBundle<LazyXmlBlock>();
+    final ResBundle<FsFile> rawResources = new ResBundle<FsFile>();
+
+    void makeImmutable() {
+      data.makeImmutable();
+
+      pluralsData.makeImmutable();
+      stringData.makeImmutable();
+      menuData.makeImmutable();
+      drawableData.makeImmutable();
+      preferenceData.makeImmutable();
+      xmlBlocks.makeImmutable();
+      rawResources.makeImmutable();
+    }
+
+    void mergeLibraryStyle(Tables fromTables, String packageName) {
+      pluralsData.mergeLibraryStyle(fromTables.pluralsData, packageName);
+      stringData.mergeLibraryStyle(fromTables.stringData, packageName);
+      menuData.mergeLibraryStyle(fromTables.menuData, packageName);
+      drawableData.mergeLibraryStyle(fromTables.drawableData, packageName);
+      preferenceData.mergeLibraryStyle(fromTables.preferenceData, packageName);
+      xmlBlocks.mergeLibraryStyle(fromTables.xmlBlocks, packageName);
+      rawResources.mergeLibraryStyle(fromTables.rawResources, packageName);
+      data.mergeLibraryStyle(fromTables.data, packageName);
+    }
+  }
+
   abstract static class Resolver<T> {
     private final ResBundle<String> resBundle;
 
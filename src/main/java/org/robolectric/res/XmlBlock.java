@@ -0,0 +1,338 @@
+package org.robolectric.res;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable XML document, held in a handful of arrays rather than a DOM tree.
+ * <p/>
+ * <p>Nodes are numbered in document order, starting with the root element at 0; element, attribute and namespace
+ * names are interned, and text and attribute values are shared within the block. Only what a resource parser
+ * needs is kept: elements, their attributes, and text.
+ *
+ * @see <a href="https://github.com/android/platform_frameworks_base/blob/master/core/java/android/content/res/XmlBlock.java">XmlBlock.java</a>
+ */
+public final class XmlBlock {
+  public static final int NO_NODE = -1;
+
+  private static final byte ELEMENT = 0;
+  private static final byte TEXT = 1;
+  private static final byte IGNORABLE_TEXT = 2;
+  private static final int NO_STRING = -1;
+
+  private final String filename;
+  private final String[] strings;
+
+  private final byte[] nodeKinds;
+  private final int[] nodeNames;
+  private final int[] nodeNamespaces;
+  private final int[] parents;
+  private final int[] firstChildren;
+  private final int[] nextSiblings;
+  private final int[] attributeStarts;
+
+  private final int[] attributeNames;
+  private final int[] attributeLocalNames;
+  private final int[] attributeNamespaces;
+  private final int[] attributeValues;
+
+  private XmlBlock(String filename, Builder builder) {
+    this.filename = filename;
+    this.strings = builder.strings.toArray(new String[builder.strings.size()]);
+
+    int nodeCount = builder.nodeCount;
+    this.nodeKinds = Arrays.copyOf(builder.nodeKinds, nodeCount);
+    this.nodeNames = Arrays.copyOf(builder.nodeNames, nodeCount);
+    this.nodeNamespaces = Arrays.copyOf(builder.nodeNamespaces, nodeCount);
+    this.parents = Arrays.copyOf(builder.parents, nodeCount);
+    this.firstChildren = Arrays.copyOf(builder.firstChildren, nodeCount);
+    this.nextSiblings = Arrays.copyOf(builder.nextSiblings, nodeCount);
+    this.attributeStarts = Arrays.copyOf(builder.attributeStarts, nodeCount + 1);
+    this.attributeStarts[nodeCount] = builder.attributeCount;
+
+    int attributeCount = builder.attributeCount;
+    this.attributeNames = Arrays.copyOf(builder.attributeNames, attributeCount);
+    this.attributeLocalNames = Arrays.copyOf(builder.attributeLocalNames, attributeCount);
+    this.attributeNamespaces = Arrays.copyOf(builder.attributeNamespaces, attributeCount);
+    this.attributeValues = Arrays.copyOf(builder.attributeValues, attributeCount);
+  }
+
+  public static XmlBlock parse(FsFile xmlFile) {
+    return create(XmlLoader.parseDocument(xmlFile), xmlFile.getPath());
+  }
+
+  /**
+   * @param filename the path of the file the document was read from, or null
+   */
+  public static XmlBlock create(Document document, String filename) {
+    Builder builder = new Builder();
+    builder.add(document.getDocumentElement(), NO_NODE);
+    return new XmlBlock(filename, builder);
+  }
+
+  /**
+   * Android strips whitespace-only text from compiled XML, so such text is {@link #isIgnorable(int) ignorable}.
+   */
+  public static boolean isWhitespace(String text) {
+    return text != null && text.split("\\s").length == 0;
+  }
+
+  /**
+   * @return the path of the file this block was read from, or null
+   */
+  public String getFilename() {
+    return filename;
+  }
+
+  public int getRoot() {
+    return 0;
+  }
+
+  public boolean isElement(int node) {
+    return nodeKinds[node] == ELEMENT;
+  }
+
+  /**
+   * @return true for whitespace-only text and CDATA sections, which resource parsers skip
+   */
+  public boolean isIgnorable(int node) {
+    return nodeKinds[node] == IGNORABLE_TEXT;
+  }
+
+  /**
+   * @return the element's qualified name, or "#text" for text
+   */
+  public String getName(int node) {
+    return isElement(node) ? strings[nodeNames[node]] : "#text";
+  }
+
+  /**
+   * @return the element's namespace URI, or null if it has none
+   */
+  public String getNamespace(int node) {
+    return string(nodeNamespaces[node]);
+  }
+
+  /**
+   * @return the node's text, including that of all its descendants, as {@link Node#getTextContent()} would
+   */
+  public String getTextContent(int node) {
+    if (!isElement(node)) return strings[nodeNames[node]];
+
+    StringBuilder buf = new StringBuilder();
+    appendTextContent(node, buf);
+    return buf.toString();
+  }
+
+  private void appendTextContent(int node, StringBuilder buf) {
+    for (int child = firstChildren[node]; child != NO_NODE; child = nextSiblings[child]) {
+      if (isElement(child)) {
+        appendTextContent(child, buf);
+      } else {
+        buf.append(strings[nodeNames[child]]);
+      }
+    }
+  }
+
+  public int getParent(int node) {
+    return parents[node];
+  }
+
+  public int getFirstChild(int node) {
+    return firstChildren[node];
+  }
+
+  public int getNextSibling(int node) {
+    return nextSiblings[node];
+  }
+
+  public int getAttributeCount(int node) {
+    return attributeStarts[node + 1] - attributeStarts[node];
+  }
+
+  public String getAttributeName(int node, int index) {
+    return strings[attributeNames[attributeIndex(node, index)]];
+  }
+
+  public String getAttributeNamespace(int node, int index) {
+    return string(attributeNamespaces[attributeIndex(node, index)]);
+  }
+
+  public String getAttributeValue(int node, int index) {
+    return strings[attributeValues[attributeIndex(node, index)]];
+  }
+
+  /**
+   * @return the value of the node's attribute with the given namespace and local name, or null if it has none
+   */
+  public String getAttributeValue(int node, String namespace, String localName) {
+    for (int i = attributeStarts[node]; i < attributeStarts[node + 1]; i++) {
+      if (localName.equals(strings[attributeLocalNames[i]]) && equal(namespace, string(attributeNamespaces[i]))) {
+        return strings[attributeValues[i]];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the value of the node's attribute with the given qualified name, or null if it has none
+   */
+  public String getAttributeValue(int node, String qualifiedName) {
+    for (int i = attributeStarts[node]; i < attributeStarts[node + 1]; i++) {
+      if (qualifiedName.equals(strings[attributeNames[i]])) {
+        return strings[attributeValues[i]];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the elements with the given qualified name, in document order
+   */
+  public int[] getElementsByName(String name) {
+    int[] elements = new int[nodeKinds.length];
+    int count = 0;
+    for (int node = 0; node < nodeKinds.length; node++) {
+      if (isElement(node) && name.equals(strings[nodeNames[node]])) {
+        elements[count++] = node;
+      }
+    }
+    return Arrays.copyOf(elements, count);
+  }
+
+  private int attributeIndex(int node, int index) {
+    if (index < 0 || index >= getAttributeCount(node)) {
+      throw new IndexOutOfBoundsException(String.valueOf(index));
+    }
+    return attributeStarts[node] + index;
+  }
+
+  private String string(int index) {
+    return index == NO_STRING ? null : strings[index];
+  }
+
+  private static boolean equal(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  private static class Builder {
+    private final Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+    private final List<String> strings = new ArrayList<String>();
+
+    private int nodeCount;
+    private byte[] nodeKinds = new byte[16];
+    private int[] nodeNames = new int[16];
+    private int[] nodeNamespaces = new int[16];
+    private int[] parents = new int[16];
+    private int[] firstChildren = new int[16];
+    private int[] nextSiblings = new int[16];
+    private int[] attributeStarts = new int[17];
+
+    private int attributeCount;
+    private int[] attributeNames = new int[16];
+    private int[] attributeLocalNames = new int[16];
+    private int[] attributeNamespaces = new int[16];
+    private int[] attributeValues = new int[16];
+
+    /**
+     * @return the new node, or {@link #NO_NODE} if the node isn't kept
+     */
+    int add(Node domNode, int parent) {
+      switch (domNode.getNodeType()) {
+        case Node.ELEMENT_NODE: {
+          int node = newNode(ELEMENT, name(domNode.getNodeName()), name(domNode.getNamespaceURI()), parent);
+          addAttributes(domNode.getAttributes());
+
+          int previousChild = NO_NODE;
+          for (Node domChild = domNode.getFirstChild(); domChild != null; domChild = domChild.getNextSibling()) {
+            int child = add(domChild, node);
+            if (child == NO_NODE) continue;
+            if (previousChild == NO_NODE) {
+              firstChildren[node] = child;
+            } else {
+              nextSiblings[previousChild] = child;
+            }
+            previousChild = child;
+          }
+          return node;
+        }
+        case Node.TEXT_NODE: {
+          String text = domNode.getNodeValue();
+          return newNode(isWhitespace(text) ? IGNORABLE_TEXT : TEXT, value(text), NO_STRING, parent);
+        }
+        case Node.CDATA_SECTION_NODE:
+          return newNode(IGNORABLE_TEXT, value(domNode.getNodeValue()), NO_STRING, parent);
+        case Node.COMMENT_NODE:
+          return NO_NODE;
+        default:
+          throw new IllegalArgumentException("Robolectric -> Unsupported node type: " + domNode.getNodeType() + ".");
+      }
+    }
+
+    private int newNode(byte kind, int name, int namespace, int parent) {
+      if (nodeCount == nodeKinds.length) {
+        int capacity = nodeCount * 2;
+        nodeKinds = Arrays.copyOf(nodeKinds, capacity);
+        nodeNames = Arrays.copyOf(nodeNames, capacity);
+        nodeNamespaces = Arrays.copyOf(nodeNamespaces, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        attributeStarts = Arrays.copyOf(attributeStarts, capacity + 1);
+      }
+      int node = nodeCount++;
+      nodeKinds[node] = kind;
+      nodeNames[node] = name;
+      nodeNamespaces[node] = namespace;
+      parents[node] = parent;
+      firstChildren[node] = NO_NODE;
+      nextSiblings[node] = NO_NODE;
+      attributeStarts[node] = attributeCount;
+      return node;
+    }
+
+    private void addAttributes(NamedNodeMap domAttributes) {
+      int length = domAttributes.getLength();
+      if (attributeCount + length > attributeNames.length) {
+        int capacity = Math.max(attributeNames.length * 2, attributeCount + length);
+        attributeNames = Arrays.copyOf(attributeNames, capacity);
+        attributeLocalNames = Arrays.copyOf(attributeLocalNames, capacity);
+        attributeNamespaces = Arrays.copyOf(attributeNamespaces, capacity);
+        attributeValues = Arrays.copyOf(attributeValues, capacity);
+      }
+      for (int i = 0; i < length; i++) {
+        Node domAttribute = domAttributes.item(i);
+        String localName = domAttribute.getLocalName();
+        attributeNames[attributeCount] = name(domAttribute.getNodeName());
+        attributeLocalNames[attributeCount] = name(localName == null ? domAttribute.getNodeName() : localName);
+        attributeNamespaces[attributeCount] = name(domAttribute.getNamespaceURI());
+        attributeValues[attributeCount] = value(domAttribute.getNodeValue());
+        attributeCount++;
+      }
+    }
+
+    private int name(String name) {
+      if (name == null) return NO_STRING;
+      int index = value(name);
+      strings.set(index, name.intern()); // in case it was first seen as a value
+      return index;
+    }
+
+    private int value(String value) {
+      Integer index = stringIndexes.get(value);
+      if (index == null) {
+        index = strings.size();
+        strings.add(value);
+        stringIndexes.put(value, index);
+      }
+      return index;
+    }
+  }
+}
@@ -2,7 +2,6 @@ package org.robolectric.res;
 
 import android.content.res.Resources;
 import android.content.res.XmlResourceParser;
-import org.w3c.dom.Document;
 
 /**
  * Loader for xml property files.
@@ -17,15 +16,15 @@ import org.w3c.dom.Document;
  */
 public class XmlFileLoader extends XmlLoader {
   private final String attrType;
-  private final ResBundle<Document> resBundle;
+  private final ResBundle<LazyXmlBlock> resBundle;
 
-  public XmlFileLoader(ResBundle<Document> resBundle, String attrType) {
+  public XmlFileLoader(ResBundle<LazyXmlBlock> resBundle, String attrType) {
     this.attrType = attrType;
     this.resBundle = resBundle;
   }
 
   @Override
   protected void processResourceXml(FsFile xmlFile, XpathResourceXmlLoader.XmlNode xmlNode, XmlContext xmlContext) throws Exception {
-    resBundle.put(attrType, xmlFile.getName().replace(".xml", ""), parse(xmlFile), xmlContext);
+    resBundle.put(attrType, xmlFile.getName().replace(".xml", ""), new LazyXmlBlock(xmlFile), xmlContext);
   }
 }
@@ -21,13 +21,22 @@ public abstract class XmlLoader {
     documentBuilderFactory.setIgnoringElementContentWhitespace(true);
   }
 
-  private DocumentBuilder documentBuilder;
+  // DocumentBuilders aren't thread-safe, and DocumentLoader may load files on several threads
+  private static final ThreadLocal<DocumentBuilder> documentBuilders = new ThreadLocal<DocumentBuilder>();
 
-  synchronized public Document parse(FsFile xmlFile) {
+  public Document parse(FsFile xmlFile) {
+    return parseDocument(xmlFile);
+  }
+
+  static Document parseDocument(FsFile xmlFile) {
     InputStream inputStream = null;
     try {
+      DocumentBuilder documentBuilder = documentBuilders.get();
       if (documentBuilder == null) {
-        documentBuilder = documentBuilderFactory.newDocumentBuilder();
+        synchronized (documentBuilderFactory) {
+          documentBuilder = documentBuilderFactory.newDocumentBuilder();
+        }
+        documentBuilders.set(documentBuilder);
       }
       inputStream = xmlFile.getInputStream();
       return documentBuilder.parse(inputStream);
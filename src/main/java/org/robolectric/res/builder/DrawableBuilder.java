@@ -11,16 +11,12 @@ import org.robolectric.res.DrawableNode;
 import org.robolectric.res.ResName;
 import org.robolectric.res.ResourceIndex;
 import org.robolectric.res.ResourceLoader;
+import org.robolectric.res.XmlBlock;
 import org.robolectric.shadows.ShadowStateListDrawable;
-import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.robolectric.Robolectric.shadowOf;
@@ -47,34 +43,28 @@ public class DrawableBuilder {
   }
 
   public Drawable getXmlDrawable(Resources resources, DrawableNode.Xml drawableNode, ResName resName) {
-    Document xmlDoc = drawableNode.document;
-    NodeList nodes = xmlDoc.getElementsByTagName("selector");
-    if (nodes != null && nodes.getLength() > 0) {
+    XmlBlock xmlBlock = drawableNode.getXmlBlock();
+    if (xmlBlock.getElementsByName("selector").length > 0) {
       return buildStateListDrawable(drawableNode);
     }
 
-    nodes = xmlDoc.getElementsByTagName("layer-list");
-    if (nodes != null && nodes.getLength() > 0) {
-      NodeList itemNodes = findNodes("/layer-list/item", xmlDoc);
-      Drawable[] layers = new Drawable[itemNodes.getLength()];
-      for (int i = 0; i < itemNodes.getLength(); i++) {
-        Node node = itemNodes.item(i);
-        layers[i] = getDrawableForNode(node, resName, resources);
+    if (xmlBlock.getElementsByName("layer-list").length > 0) {
+      int[] itemNodes = findRootItems("layer-list", xmlBlock);
+      Drawable[] layers = new Drawable[itemNodes.length];
+      for (int i = 0; i < itemNodes.length; i++) {
+        layers[i] = getDrawableForNode(xmlBlock, itemNodes[i], resName, resources);
       }
       LayerDrawable layerDrawable = new LayerDrawable(layers);
       shadowOf(layerDrawable).setCreatedFromResId(resourceIndex.getResourceId(resName));
       return layerDrawable;
     }
 
-    nodes = xmlDoc.getElementsByTagName("animation-list");
-    if (nodes != null && nodes.getLength() > 0) {
+    if (xmlBlock.getElementsByName("animation-list").length > 0) {
       AnimationDrawable animationDrawable = new AnimationDrawable();
 
-      NodeList itemNodes = findNodes("/animation-list/item", xmlDoc);
-      for (int i = 0; i < itemNodes.getLength(); i++) {
-        Node node = itemNodes.item(i);
-        Drawable frameDrawable = getDrawableForNode(node, resName, resources);
-        String duration = node.getAttributes().getNamedItemNS(ResourceLoader.ANDROID_NS, "duration").getNodeValue();
+      for (int node : findRootItems("animation-list", xmlBlock)) {
+        Drawable frameDrawable = getDrawableForNode(xmlBlock, node, resName, resources);
+        String duration = xmlBlock.getAttributeValue(node, ResourceLoader.ANDROID_NS, "duration");
         animationDrawable.addFrame(frameDrawable, Integer.parseInt(duration));
       }
       return animationDrawable;
@@ -83,41 +73,50 @@ public class DrawableBuilder {
     return null;
   }
 
-  private Drawable getDrawableForNode(Node node, ResName resName, Resources resources) {
-    String drawableName = node.getAttributes().getNamedItemNS(ResourceLoader.ANDROID_NS, "drawable").getNodeValue();
+  private Drawable getDrawableForNode(XmlBlock xmlBlock, int node, ResName resName, Resources resources) {
+    String drawableName = xmlBlock.getAttributeValue(node, ResourceLoader.ANDROID_NS, "drawable");
     ResName otherDrawableResName = resName.qualify(drawableName);
     return resources.getDrawable(resourceIndex.getResourceId(otherDrawableResName));
   }
 
-  private NodeList findNodes(String xpathExpression, Document xmlDoc) {
-    try {
-      return (NodeList) XPathFactory.newInstance().newXPath().compile(xpathExpression).evaluate(xmlDoc, XPathConstants.NODESET);
-    } catch (XPathExpressionException e) {
-      throw new RuntimeException(e);
+  /**
+   * @return the {@code item} children of the root element, if it has the given name
+   */
+  private int[] findRootItems(String rootName, XmlBlock xmlBlock) {
+    int root = xmlBlock.getRoot();
+    if (!rootName.equals(xmlBlock.getName(root))) return new int[0];
+
+    List<Integer> items = new ArrayList<Integer>();
+    for (int node = xmlBlock.getFirstChild(root); node != XmlBlock.NO_NODE; node = xmlBlock.getNextSibling(node)) {
+      if (xmlBlock.isElement(node) && "item".equals(xmlBlock.getName(node))) {
+        items.add(node);
+      }
+    }
+    int[] itemNodes = new int[items.size()];
+    for (int i = 0; i < itemNodes.length; i++) {
+      itemNodes[i] = items.get(i);
     }
+    return itemNodes;
   }
 
   private StateListDrawable buildStateListDrawable(DrawableNode.Xml drawableNode) {
     StateListDrawable drawable = new StateListDrawable();
     ShadowStateListDrawable shDrawable = Robolectric.shadowOf(drawable);
-    NodeList items = drawableNode.document.getElementsByTagName("item");
-    for (int i = 0; i < items.getLength(); i++) {
-      Node node = items.item(i);
-      Node drawableName = node.getAttributes().getNamedItemNS(ResourceLoader.ANDROID_NS, "drawable");
+    XmlBlock xmlBlock = drawableNode.getXmlBlock();
+    for (int node : xmlBlock.getElementsByName("item")) {
+      String drawableName = xmlBlock.getAttributeValue(node, ResourceLoader.ANDROID_NS, "drawable");
       if (drawableName != null) {
-        int resId = ResName.getResourceId(resourceIndex, drawableName.getNodeValue(), drawableNode.xmlContext.packageName);
-        int stateId = getStateId(node);
+        int resId = ResName.getResourceId(resourceIndex, drawableName, drawableNode.xmlContext.packageName);
+        int stateId = getStateId(xmlBlock, node);
         shDrawable.addState(stateId, resId);
       }
     }
     return drawable;
   }
 
-  private int getStateId(Node node) {
-    NamedNodeMap attrs = node.getAttributes();
+  private int getStateId(XmlBlock xmlBlock, int node) {
     for (String state : STATE_MAP.keySet()) {
-      Node attr = attrs.getNamedItem(state);
-      if (attr != null) {
+      if (xmlBlock.getAttributeValue(node, state) != null) {
         return STATE_MAP.get(state);
       }
     }
@@ -1,6 +1,5 @@
 package org.robolectric.res.builder;
 
-import android.content.res.Resources;
 import android.content.res.XmlResourceParser;
 import java.io.IOException;
 import java.io.InputStream;
@@ -12,11 +11,8 @@ import org.robolectric.res.Fs;
 import org.robolectric.res.FsFile;
 import org.robolectric.res.ResName;
 import org.robolectric.res.ResourceIndex;
-import org.robolectric.res.XmlFileLoader;
+import org.robolectric.res.XmlBlock;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
 import org.xmlpull.v1.XmlPullParserException;
 
 public class XmlFileBuilder {
@@ -53,23 +49,23 @@ public class XmlFileBuilder {
 
   public static XmlResourceParser getXmlResourceParser(String file, String packageName, ResourceIndex resourceIndex) {
    FsFile fsFile = Fs.fileFromPath(file);
-   Document document = new XmlFileLoader(null, "xml").parse(fsFile);
-   if (document == null) {
-     throw new Resources.NotFoundException("couldn't find resource " + fsFile.getPath());
-   }
-   return new XmlFileBuilder().getXml(document, fsFile.getPath(), packageName, resourceIndex);
+   return new XmlFileBuilder().getXml(XmlBlock.parse(fsFile), fsFile.getPath(), packageName, resourceIndex);
  }
 
+  public XmlResourceParser getXml(XmlBlock xmlBlock, String fileName, String packageName, ResourceIndex resourceIndex) {
+    return new XmlResourceParserImpl(xmlBlock, fileName, packageName, resourceIndex);
+  }
+
   public XmlResourceParser getXml(Document document, String fileName, String packageName, ResourceIndex resourceIndex) {
-    return new XmlResourceParserImpl(document, fileName, packageName, resourceIndex);
+    return getXml(XmlBlock.create(document, null), fileName, packageName, resourceIndex);
   }
 
   /**
    * Concrete implementation of the {@link XmlResourceParser}.
    * <p/>
    * <p>Clients expects a pull parser while the resource loader
-   * initialise this object with a {@link Document}.
-   * This implementation navigates the dom and emulates a pull
+   * initialise this object with an {@link XmlBlock}.
+   * This implementation navigates the block and emulates a pull
    * parser by raising all the opportune events.
    * <p/>
    * <p>Note that the original android implementation is based on
@@ -83,12 +79,12 @@ public class XmlFileBuilder {
 
     private static final ResName FAKE_RES_NAME = new ResName("_robolectric_", "attr", "_fake_");
 
-    private final Document document;
+    private final XmlBlock xmlBlock;
     private final String fileName;
     private final String packageName;
     private final ResourceIndex resourceIndex;
 
-    private Node currentNode;
+    private int currentNode = XmlBlock.NO_NODE;
 
     private boolean mStarted = false;
     private boolean mDecNextDepth = false;
@@ -96,7 +92,11 @@ public class XmlFileBuilder {
     private int mEventType = START_DOCUMENT;
 
     public XmlResourceParserImpl(Document document, String fileName, String packageName, ResourceIndex resourceIndex) {
-      this.document = document;
+      this(XmlBlock.create(document, null), fileName, packageName, resourceIndex);
+    }
+
+    public XmlResourceParserImpl(XmlBlock xmlBlock, String fileName, String packageName, ResourceIndex resourceIndex) {
+      this.xmlBlock = xmlBlock;
       this.fileName = fileName;
       this.packageName = packageName;
       this.resourceIndex = resourceIndex;
@@ -182,10 +182,10 @@ public class XmlFileBuilder {
     }
 
     public String getText() {
-      if (currentNode == null) {
+      if (currentNode == XmlBlock.NO_NODE) {
         return "";
       }
-      return currentNode.getTextContent();
+      return xmlBlock.getTextContent(currentNode);
     }
 
     public int getLineNumber() {
@@ -202,10 +202,7 @@ public class XmlFileBuilder {
     /*package*/
     public boolean isWhitespace(String text)
         throws XmlPullParserException {
-      if (text == null) {
-        return false;
-      }
-      return text.split("\\s").length == 0;
+      return XmlBlock.isWhitespace(text);
     }
 
     public boolean isWhitespace()
@@ -232,10 +229,10 @@ public class XmlFileBuilder {
     }
 
     public String getNamespace() {
-      if (currentNode == null) {
+      if (currentNode == XmlBlock.NO_NODE) {
         return "";
       }
-      String namespace = currentNode.getNamespaceURI();
+      String namespace = xmlBlock.getNamespace(currentNode);
       if (namespace == null) {
         return "";
       }
@@ -243,47 +240,33 @@ public class XmlFileBuilder {
     }
 
     public String getName() {
-      if (currentNode == null) {
+      if (currentNode == XmlBlock.NO_NODE) {
         return "";
       }
-      return currentNode.getNodeName();
+      return xmlBlock.getName(currentNode);
     }
 
-    Node getAttributeAt(int index) {
-      if (currentNode == null) {
-        throw new IndexOutOfBoundsException(String.valueOf(index));
-      }
-      NamedNodeMap map = currentNode.getAttributes();
-      if (index >= map.getLength()) {
+    int getAttributeOwner(int index) {
+      if (currentNode == XmlBlock.NO_NODE) {
         throw new IndexOutOfBoundsException(String.valueOf(index));
       }
-      return map.item(index);
+      return currentNode;
     }
 
     public String getAttribute(String namespace, String name) {
-      if (currentNode == null) {
+      if (currentNode == XmlBlock.NO_NODE) {
         return null;
       }
-
-      Element element = (Element) currentNode;
-      if (element.hasAttributeNS(namespace, name)) {
-        return element.getAttributeNS(namespace, name);
-      }
-      return null;
+      return xmlBlock.getAttributeValue(currentNode, namespace, name);
     }
 
     public String getAttributeNamespace(int index) {
-      Node attr = getAttributeAt(index);
-      if (attr == null) {
-        return null;
-      }
-      return attr.getNamespaceURI();
+      return xmlBlock.getAttributeNamespace(getAttributeOwner(index), index);
     }
 
     public String getAttributeName(int index) {
       try {
-        Node attr = getAttributeAt(index);
-        return attr.getNodeName();
+        return xmlBlock.getAttributeName(getAttributeOwner(index), index);
       } catch (IndexOutOfBoundsException ex) {
         return null;
       }
@@ -300,14 +283,14 @@ public class XmlFileBuilder {
     }
 
     public int getAttributeCount() {
-      if (currentNode == null) {
+      if (currentNode == XmlBlock.NO_NODE) {
         return -1;
       }
-      return currentNode.getAttributes().getLength();
+      return xmlBlock.getAttributeCount(currentNode);
     }
 
     public String getAttributeValue(int index) {
-      return qualify(getAttributeAt(index).getNodeValue());
+      return qualify(xmlBlock.getAttributeValue(getAttributeOwner(index), index));
     }
 
     private String qualify(String value) {
@@ -413,14 +396,14 @@ public class XmlFileBuilder {
               "PROCESSING_INSTRUCTION");
         }
         case (START_DOCUMENT): {
-          currentNode = document.getDocumentElement();
+          currentNode = xmlBlock.getRoot();
           return START_TAG;
         }
         case (START_TAG): {
-          if (currentNode.hasChildNodes()) {
+          int firstChild = xmlBlock.getFirstChild(currentNode);
+          if (firstChild != XmlBlock.NO_NODE) {
             // The node has children, navigate down
-            return processNextNodeType(
-                currentNode.getFirstChild());
+            return processNextNodeType(firstChild);
           } else {
             // The node has no children
             return END_TAG;
@@ -439,58 +422,14 @@ public class XmlFileBuilder {
 
     }
 
-    /*protected*/ int processNextNodeType(Node node)
+    /*protected*/ int processNextNodeType(int node)
         throws XmlPullParserException {
-      switch (node.getNodeType()) {
-        case (Node.ATTRIBUTE_NODE): {
-          throw new IllegalArgumentException("ATTRIBUTE_NODE");
-        }
-        case (Node.CDATA_SECTION_NODE): {
-          return navigateToNextNode(node);
-        }
-        case (Node.COMMENT_NODE): {
-          return navigateToNextNode(node);
-        }
-        case (Node.DOCUMENT_FRAGMENT_NODE): {
-          throw new IllegalArgumentException("DOCUMENT_FRAGMENT_NODE");
-        }
-        case (Node.DOCUMENT_NODE): {
-          throw new IllegalArgumentException("DOCUMENT_NODE");
-        }
-        case (Node.DOCUMENT_TYPE_NODE): {
-          throw new IllegalArgumentException("DOCUMENT_TYPE_NODE");
-        }
-        case (Node.ELEMENT_NODE): {
-          currentNode = node;
-          return START_TAG;
-        }
-        case (Node.ENTITY_NODE): {
-          throw new IllegalArgumentException("ENTITY_NODE");
-        }
-        case (Node.ENTITY_REFERENCE_NODE): {
-          throw new IllegalArgumentException("ENTITY_REFERENCE_NODE");
-        }
-        case (Node.NOTATION_NODE): {
-          throw new IllegalArgumentException("DOCUMENT_TYPE_NODE");
-        }
-        case (Node.PROCESSING_INSTRUCTION_NODE): {
-          throw new IllegalArgumentException("DOCUMENT_TYPE_NODE");
-        }
-        case (Node.TEXT_NODE): {
-          if (isWhitespace(node.getNodeValue())) {
-            // Skip whitespaces
-            return navigateToNextNode(node);
-          } else {
-            currentNode = node;
-            return TEXT;
-          }
-        }
-        default: {
-          throw new RuntimeException(
-              "Robolectric -> Unknown node type: " +
-                  node.getNodeType() + ".");
-        }
+      if (xmlBlock.isIgnorable(node)) {
+        // Skip whitespaces
+        return navigateToNextNode(node);
       }
+      currentNode = node;
+      return xmlBlock.isElement(node) ? START_TAG : TEXT;
     }
 
     /**
@@ -509,19 +448,19 @@ public class XmlFileBuilder {
      * @throws XmlPullParserException if the parser fails to
      *                                parse the next node.
      */
-    int navigateToNextNode(Node node)
+    int navigateToNextNode(int node)
         throws XmlPullParserException {
-      Node nextNode = node.getNextSibling();
-      if (nextNode != null) {
+      int nextNode = xmlBlock.getNextSibling(node);
+      if (nextNode != XmlBlock.NO_NODE) {
         // Move to the next siblings
         return processNextNodeType(nextNode);
       } else {
         // Goes back to the parent
-        if (document.getDocumentElement().equals(node)) {
-          currentNode = null;
+        if (node == xmlBlock.getRoot()) {
+          currentNode = XmlBlock.NO_NODE;
           return END_DOCUMENT;
         }
-        currentNode = node.getParentNode();
+        currentNode = xmlBlock.getParent(node);
         return END_TAG;
       }
     }
@@ -35,6 +35,7 @@ public class ShadowActivityThread {
 
   @Implementation
   public static Object currentActivityThread() {
+    Robolectric.getApplication(); // sets up the activity thread too, if that was deferred
     return Robolectric.activityThread;
   }
 }
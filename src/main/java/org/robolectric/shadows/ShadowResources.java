@@ -27,9 +27,9 @@ import org.robolectric.res.ResourceIndex;
 import org.robolectric.res.ResourceLoader;
 import org.robolectric.res.Style;
 import org.robolectric.res.TypedResource;
+import org.robolectric.res.XmlBlock;
 import org.robolectric.res.builder.XmlFileBuilder;
 import org.robolectric.util.Util;
-import org.w3c.dom.Document;
 
 import java.io.InputStream;
 import java.lang.reflect.Field;
@@ -413,17 +413,22 @@ public class ShadowResources {
   @Implementation
   public XmlResourceParser getXml(int id) throws Resources.NotFoundException {
     ResName resName = getResName(id);
-    Document document = resourceLoader.getXml(resName, getQualifiers());
-    if (document == null) {
+    XmlBlock xmlBlock = resourceLoader.getXml(resName, getQualifiers());
+    if (xmlBlock == null) {
       throw new Resources.NotFoundException();
     }
-    return new XmlFileBuilder().getXml(document, resName.getFullyQualifiedName(), resName.packageName, resourceLoader.getResourceIndex());
+    return new XmlFileBuilder().getXml(xmlBlock, resName.getFullyQualifiedName(), resName.packageName, resourceLoader.getResourceIndex());
   }
 
   @HiddenApi @Implementation
   public XmlResourceParser loadXmlResourceParser(String file, int id, int assetCookie, String type) throws Resources.NotFoundException {
-    String packageName = getResName(id).packageName;
-    return XmlFileBuilder.getXmlResourceParser(file, packageName, resourceLoader.getResourceIndex());
+    ResName resName = getResName(id);
+    // layouts and the like are inflated from the resource loader's block when it was read from the same file
+    XmlBlock xmlBlock = resourceLoader.getXml(resName, getQualifiers());
+    if (xmlBlock != null && file.equals(xmlBlock.getFilename())) {
+      return new XmlFileBuilder().getXml(xmlBlock, file, resName.packageName, resourceLoader.getResourceIndex());
+    }
+    return XmlFileBuilder.getXmlResourceParser(file, resName.packageName, resourceLoader.getResourceIndex());
   }
 
   public ResourceLoader getResourceLoader() {
@@ -0,0 +1,123 @@
+package org.robolectric.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Callable;
+
+/**
+ * Helpers for files which several JVMs may read and write at once, like Robolectric's on-disk caches.
+ */
+public class AtomicFiles {
+  public interface Writer {
+    void writeTo(OutputStream out) throws IOException;
+  }
+
+  /**
+   * Writes to a temp file beside {@code file} and renames it into place, so other JVMs never see a partially-written
+   * file. If the writer throws, {@code file} is left as it was.
+   */
+  public static void write(File file, Writer writer) throws IOException {
+    File dir = createParentDir(file);
+    File tmpFile = File.createTempFile("robolectric", ".tmp", dir);
+    boolean renamed = false;
+    try {
+      OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile));
+      try {
+        writer.writeTo(out);
+      } finally {
+        out.close();
+      }
+
+      renamed = tmpFile.renameTo(file);
+      if (!renamed) {
+        file.delete();
+        renamed = tmpFile.renameTo(file);
+        if (!renamed) throw new IOException("couldn't rename " + tmpFile + " to " + file);
+      }
+    } finally {
+      if (!renamed) tmpFile.delete();
+    }
+  }
+
+  /**
+   * Calls {@code callable} while holding an exclusive lock on {@code lockFile}, so no other thread or JVM calling this
+   * with the same file runs at the same time.
+   */
+  public static <T> T withLock(File lockFile, Callable<T> callable) throws IOException {
+    createParentDir(lockFile);
+    // a JVM may hold only one lock on a file, so threads in this one take turns first
+    synchronized (AtomicFiles.class) {
+      RandomAccessFile randomAccessFile = new RandomAccessFile(lockFile, "rw");
+      try {
+        FileChannel channel = randomAccessFile.getChannel();
+        FileLock lock = channel.lock();
+        try {
+          return callable.call();
+        } finally {
+          lock.release();
+        }
+      } catch (IOException e) {
+        throw e;
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      } finally {
+        randomAccessFile.close();
+      }
+    }
+  }
+
+  public static String sha1(byte[] bytes) {
+    return hex(sha1Digest().digest(bytes));
+  }
+
+  public static String sha1(File file) throws IOException {
+    MessageDigest digest = sha1Digest();
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] buf = new byte[65536];
+      int count;
+      while ((count = in.read(buf)) != -1) {
+        digest.update(buf, 0, count);
+      }
+    } finally {
+      in.close();
+    }
+    return hex(digest.digest());
+  }
+
+  public static MessageDigest sha1Digest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public static String hex(byte[] bytes) {
+    StringBuilder buf = new StringBuilder();
+    for (byte b : bytes) {
+      buf.append(String.format("%02x", b & 0xff));
+    }
+    return buf.toString();
+  }
+
+  private static File createParentDir(File file) throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+      throw new IOException("couldn't create " + dir);
+    }
+    return dir;
+  }
+}
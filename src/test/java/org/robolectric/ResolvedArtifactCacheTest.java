@@ -0,0 +1,145 @@
+package org.robolectric;
+
+import org.apache.maven.artifact.ant.DependenciesTask;
+import org.apache.maven.model.Dependency;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.model.InitializationError;
+import org.robolectric.test.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ResolvedArtifactCacheTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ResolvedArtifactCache cache;
+  private File jarFile;
+  private Map<String, String> paths;
+
+  @Before public void setUp() throws Exception {
+    cache = new ResolvedArtifactCache(temporaryFolder.newFolder("cache"));
+    jarFile = temporaryFolder.newFile("android-all.jar", "jar contents");
+    paths = new HashMap<String, String>();
+    paths.put("org.robolectric:android-all:jar:null", jarFile.getPath());
+  }
+
+  @After public void tearDown() throws Exception {
+    System.clearProperty(MavenCentral.OFFLINE_PROPERTY);
+  }
+
+  @Test
+  public void shouldReturnPathsPutForSameRequest() throws Exception {
+    cache.put("request", paths);
+
+    assertThat(cache.get("request")).isEqualTo(paths);
+    assertThat(cache.get("other request")).isNull();
+  }
+
+  @Test
+  public void shouldIgnoreEntryWhenArtifactContentsChange() throws Exception {
+    cache.put("request", paths);
+    write(jarFile, "other jar contents");
+
+    assertThat(cache.get("request")).isNull();
+  }
+
+  @Test
+  public void shouldKeepEntryWhenArtifactIsTouchedButUnchanged() throws Exception {
+    cache.put("request", paths);
+    jarFile.setLastModified(jarFile.lastModified() - 60000);
+
+    assertThat(cache.get("request")).isEqualTo(paths);
+  }
+
+  @Test
+  public void shouldIgnoreEntryWhenArtifactIsMissing() throws Exception {
+    cache.put("request", paths);
+    jarFile.delete();
+
+    assertThat(cache.get("request")).isNull();
+  }
+
+  @Test
+  public void mavenCentral_shouldUseCachedArtifactsWithoutResolving() throws Exception {
+    Dependency dependency = androidAllDependency();
+    cache.put(MavenCentral.describeRequest(null, dependency), paths);
+    System.setProperty(MavenCentral.OFFLINE_PROPERTY, "true");
+
+    URL url = new MavenCentral(cache).getLocalArtifactUrl(null, dependency);
+
+    assertThat(new File(url.toURI()).getPath()).isEqualTo(jarFile.getPath());
+  }
+
+  @Test
+  public void mavenCentral_whenOffline_shouldFailFastForUncachedArtifacts() throws Exception {
+    System.setProperty(MavenCentral.OFFLINE_PROPERTY, "true");
+
+    try {
+      new MavenCentral(cache).getLocalArtifactUrl(null, androidAllDependency());
+      fail("should have thrown");
+    } catch (RuntimeException e) {
+      assertThat(e.getMessage()).contains("no resolved artifacts cached");
+    }
+  }
+
+  @Test
+  public void describeRequest_shouldOnlyDependOnWhichClassConfiguresMaven() throws Exception {
+    Dependency dependency = androidAllDependency();
+    String request = MavenCentral.describeRequest(null, dependency);
+
+    assertThat(MavenCentral.describeRequest(new RobolectricTestRunner(SomeTest.class), dependency)).isEqualTo(request);
+    assertThat(MavenCentral.describeRequest(new LifecycleRunner(SomeTest.class), dependency)).isEqualTo(request);
+    assertThat(MavenCentral.describeRequest(new MavenConfiguringRunner(SomeTest.class), dependency)).isNotEqualTo(request);
+  }
+
+  public static class SomeTest {
+    @Test public void test() throws Exception {
+    }
+  }
+
+  public static class LifecycleRunner extends RobolectricTestRunner {
+    public LifecycleRunner(Class<?> testClass) throws InitializationError {
+      super(testClass);
+    }
+
+    @Override protected Class<? extends TestLifecycle> getTestLifecycleClass() {
+      return DefaultTestLifecycle.class;
+    }
+  }
+
+  public static class MavenConfiguringRunner extends RobolectricTestRunner {
+    public MavenConfiguringRunner(Class<?> testClass) throws InitializationError {
+      super(testClass);
+    }
+
+    @Override protected void configureMaven(DependenciesTask dependenciesTask) {
+    }
+  }
+
+  private Dependency androidAllDependency() {
+    Dependency dependency = new Dependency();
+    dependency.setGroupId("org.robolectric");
+    dependency.setArtifactId("android-all");
+    dependency.setVersion("4.1.2_r1_rc");
+    dependency.setType("jar");
+    return dependency;
+  }
+
+  private void write(File file, String contents) throws Exception {
+    FileWriter writer = new FileWriter(file);
+    try {
+      writer.write(contents);
+    } finally {
+      writer.close();
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package org.robolectric;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+import org.robolectric.test.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class RobolectricDaemonTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  private RobolectricDaemon daemon;
+  private Thread daemonThread;
+  private String oldPort;
+  private File tokenFile;
+
+  @Before public void setUp() throws Exception {
+    tokenFile = new File(temporaryFolder.getRoot(), "daemon.token");
+    System.setProperty(RobolectricDaemon.TOKEN_FILE_PROPERTY, tokenFile.getPath());
+    daemon = new RobolectricDaemon(0);
+    daemonThread = new Thread(new Runnable() {
+      @Override public void run() {
+        try {
+          daemon.serve();
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }, "robolectric-daemon");
+    daemonThread.start();
+
+    oldPort = System.getProperty(RobolectricDaemon.PORT_PROPERTY);
+    System.setProperty(RobolectricDaemon.PORT_PROPERTY, String.valueOf(daemon.getPort()));
+  }
+
+  @After public void tearDown() throws Exception {
+    System.clearProperty(RobolectricDaemon.TOKEN_FILE_PROPERTY);
+    if (oldPort == null) {
+      System.clearProperty(RobolectricDaemon.PORT_PROPERTY);
+    } else {
+      System.setProperty(RobolectricDaemon.PORT_PROPERTY, oldPort);
+    }
+    daemon.close();
+    daemonThread.join();
+  }
+
+  @Test
+  public void shouldRunTestsInDaemonAndReportTheirResults() throws Exception {
+    Result result = JUnitCore.runClasses(DaemonTests.class);
+
+    assertThat(daemon.getRequestCount()).isEqualTo(1);
+    assertThat(result.getRunCount()).isEqualTo(2);
+    assertThat(result.getIgnoreCount()).isEqualTo(1);
+    assertThat(result.getFailureCount()).isEqualTo(1);
+    assertThat(result.getFailures().get(0).getDescription().getMethodName()).isEqualTo("fails");
+    assertThat(result.getFailures().get(0).getMessage()).isEqualTo("expected failure");
+  }
+
+  @Test
+  public void shouldOnlyRunRequestedTests() throws Exception {
+    Result result = new JUnitCore().run(Request.method(DaemonTests.class, "passes"));
+
+    assertThat(daemon.getRequestCount()).isEqualTo(1);
+    assertThat(result.getRunCount()).isEqualTo(1);
+    assertThat(result.getFailureCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldRunTestsLocallyWhenNoDaemonIsListening() throws Exception {
+    daemon.close();
+
+    Result result = JUnitCore.runClasses(DaemonTests.class);
+
+    assertThat(result.getRunCount()).isEqualTo(2);
+    assertThat(daemon.getRequestCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldWriteTokenOnlyItsOwnerCanUse() throws Exception {
+    assertThat(RobolectricDaemon.readToken(daemon.getPort())).hasSize(32);
+    assertThat(tokenFile.canRead()).isTrue();
+
+    daemon.close();
+    assertThat(tokenFile.exists()).isFalse();
+  }
+
+  @Test
+  public void shouldRejectRequestsWithoutTheToken() throws Exception {
+    assertThat(sendRequest("not the token", DaemonTests.class.getName())).isEqualTo(RobolectricDaemon.REJECTED);
+    assertThat(daemon.getRequestCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldRejectClassesOutsideTestClassDirectories() throws Exception {
+    String token = RobolectricDaemon.readToken(daemon.getPort());
+    assertThat(sendRequest(token, Runtime.class.getName())).isEqualTo(RobolectricDaemon.REJECTED);
+    assertThat(sendRequest(token, "../" + DaemonTests.class.getName())).isEqualTo(RobolectricDaemon.REJECTED);
+    assertThat(daemon.getRequestCount()).isEqualTo(0);
+
+    assertThat(sendRequest(token, DaemonTests.class.getName())).isEqualTo(RobolectricDaemon.DONE);
+    assertThat(daemon.getRequestCount()).isEqualTo(1);
+  }
+
+  /**
+   * @return the daemon's last event: {@link RobolectricDaemon#DONE} or {@link RobolectricDaemon#REJECTED}
+   */
+  private String sendRequest(String token, String testClassName) throws Exception {
+    Socket socket = new Socket(InetAddress.getByName(null), daemon.getPort());
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      out.writeUTF(token);
+      out.writeUTF(testClassName);
+      out.writeInt(0);
+      out.flush();
+
+      ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+      while (true) {
+        String event = (String) in.readObject();
+        if (event.equals(RobolectricDaemon.DONE) || event.equals(RobolectricDaemon.REJECTED)) return event;
+
+        in.readObject(); // the test's display name
+        if (event.equals(RobolectricDaemon.FAILED) || event.equals(RobolectricDaemon.ASSUMPTION_FAILED)) {
+          in.readObject(); // the exception
+        }
+      }
+    } finally {
+      socket.close();
+    }
+  }
+
+  @RunWith(RobolectricDaemonRunner.class) @Config(manifest = Config.NONE)
+  public static class DaemonTests {
+    @Test public void passes() throws Exception {
+    }
+
+    @Test public void fails() throws Exception {
+      throw new AssertionError("expected failure");
+    }
+
+    @Ignore @Test public void ignored() throws Exception {
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package org.robolectric;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.robolectric.test.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class RobolectricShardFilterTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File timingsFile;
+
+  @Before public void setUp() throws Exception {
+    timingsFile = new File(temporaryFolder.newFolder("timings"), "timings.properties");
+  }
+
+  @Test
+  public void testTimings_shouldMergeRecordedTimingsIntoFile() throws Exception {
+    TestTimings first = new TestTimings(timingsFile);
+    TestTimings second = new TestTimings(timingsFile);
+    first.record("com.example.ATest", "18 res", 100);
+    first.save();
+    second.record("com.example.BTest", "16 -", 200);
+    second.save();
+
+    TestTimings timings = new TestTimings(timingsFile);
+    assertThat(timings.getClassNames()).containsOnly("com.example.ATest", "com.example.BTest");
+    assertThat(timings.getMillis("com.example.ATest")).isEqualTo(100);
+    assertThat(timings.getEnvironment("com.example.BTest")).isEqualTo("16 -");
+    assertThat(timings.getMillis("com.example.CTest")).isEqualTo(-1);
+  }
+
+  @Test
+  public void testTimings_shardsOfOneRunShouldReadTheSameSnapshot() throws Exception {
+    TestTimings previousRun = new TestTimings(timingsFile);
+    previousRun.record("com.example.ATest", "18 res", 100);
+    previousRun.save();
+
+    assertThat(TestTimings.forShard(timingsFile, 0, 2).getClassNames()).containsOnly("com.example.ATest");
+    TestTimings firstShard = new TestTimings(timingsFile);
+    firstShard.record("com.example.BTest", "18 res", 200);
+    firstShard.save();
+    assertThat(TestTimings.forShard(timingsFile, 1, 2).getClassNames()).containsOnly("com.example.ATest");
+
+    TestTimings nextRun = TestTimings.forShard(timingsFile, 1, 2);
+    assertThat(nextRun.getClassNames()).containsOnly("com.example.ATest", "com.example.BTest");
+    assertThat(nextRun.getMillis("com.example.BTest")).isEqualTo(200);
+  }
+
+  @Test
+  public void shouldBalanceShardsByTime() throws Exception {
+    TestTimings timings = timings(
+        "A", "env1", 400,
+        "B", "env2", 200,
+        "C", "env3", 100,
+        "D", "env4", 100);
+
+    Map<String, Integer> shards = RobolectricShardFilter.assignShards(timings, 2);
+
+    assertThat(shards.get("A")).isNotEqualTo(shards.get("B"));
+    assertThat(shards.get("B")).isEqualTo(shards.get("C")).isEqualTo(shards.get("D"));
+  }
+
+  @Test
+  public void shouldKeepClassesSharingAnEnvironmentTogether() throws Exception {
+    TestTimings timings = timings(
+        "A", "env1", 100,
+        "B", "env2", 100,
+        "C", "env1", 100,
+        "D", "env2", 100);
+
+    Map<String, Integer> shards = RobolectricShardFilter.assignShards(timings, 2);
+
+    assertThat(shards.get("A")).isEqualTo(shards.get("C"));
+    assertThat(shards.get("B")).isEqualTo(shards.get("D"));
+    assertThat(shards.get("A")).isNotEqualTo(shards.get("B"));
+  }
+
+  @Test
+  public void shouldSplitAnEnvironmentTooBigForOneShard() throws Exception {
+    TestTimings timings = timings(
+        "A", "env1", 100,
+        "B", "env1", 100,
+        "C", "env1", 100,
+        "D", "env1", 100);
+
+    Map<String, Integer> shards = RobolectricShardFilter.assignShards(timings, 2);
+
+    assertThat(shards.values()).containsOnly(0, 1);
+    assertThat(shards.get("A")).isEqualTo(shards.get("B"));
+    assertThat(shards.get("C")).isEqualTo(shards.get("D"));
+  }
+
+  @Test
+  public void shouldRunEachClassInExactlyOneShard() throws Exception {
+    TestTimings timings = timings(
+        "A", "env1", 500,
+        "B", "env2", 20,
+        "C", "env1", 70);
+    RobolectricShardFilter[] filters = new RobolectricShardFilter[3];
+    for (int i = 0; i < filters.length; i++) {
+      filters[i] = new RobolectricShardFilter(i, filters.length, timings);
+    }
+
+    for (String className : new String[] {"A", "B", "C", "Untimed", "AlsoUntimed"}) {
+      int shardsRunningIt = 0;
+      for (RobolectricShardFilter filter : filters) {
+        if (filter.shouldRun(testDescription(className))) shardsRunningIt++;
+      }
+      assertThat(shardsRunningIt).as(className).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void shouldRunClassIfAnyOfItsTestsShouldRun() throws Exception {
+    RobolectricShardFilter filter = new RobolectricShardFilter(0, 2, timings("A", "env1", 100, "B", "env2", 100));
+    String className = filter.shouldRunClass("A") ? "A" : "B";
+    Description classDescription = Description.createSuiteDescription(className);
+    classDescription.addChild(testDescription(className));
+    Description suiteDescription = Description.createSuiteDescription("suite");
+    suiteDescription.addChild(classDescription);
+
+    assertThat(filter.shouldRun(suiteDescription)).isTrue();
+  }
+
+  @Test
+  public void runner_shouldReportClassesOutsideTheShardAsIgnored() throws Exception {
+    String className = ShardedTests.class.getName();
+    RobolectricShardFilter filter = new RobolectricShardFilter(0, 2, timings(className, "env1", 100, "Other", "env2", 100));
+    RobolectricShardFilter otherFilter = new RobolectricShardFilter(1, 2, timings(className, "env1", 100, "Other", "env2", 100));
+    RobolectricTestRunner runner = new RobolectricTestRunner(ShardedTests.class);
+    runner.applyShardFilter(filter.shouldRunClass(className) ? otherFilter : filter);
+
+    final List<Description> ignored = new ArrayList<Description>();
+    final List<Description> started = new ArrayList<Description>();
+    RunNotifier notifier = new RunNotifier();
+    notifier.addListener(new RunListener() {
+      @Override public void testIgnored(Description description) {
+        ignored.add(description);
+      }
+
+      @Override public void testStarted(Description description) {
+        started.add(description);
+      }
+    });
+    runner.run(notifier);
+
+    assertThat(started).isEmpty();
+    assertThat(ignored).hasSize(1);
+    assertThat(ignored.get(0).getClassName()).isEqualTo(className);
+  }
+
+  public static class ShardedTests {
+    @Test public void test() throws Exception {
+    }
+  }
+
+  private Description testDescription(String className) {
+    return Description.createSuiteDescription("test(" + className + ")");
+  }
+
+  private TestTimings timings(Object... classNamesEnvironmentsAndMillis) {
+    TestTimings timings = new TestTimings(timingsFile);
+    for (int i = 0; i < classNamesEnvironmentsAndMillis.length; i += 3) {
+      timings.record((String) classNamesEnvironmentsAndMillis[i], (String) classNamesEnvironmentsAndMillis[i + 1],
+          (Integer) classNamesEnvironmentsAndMillis[i + 2]);
+    }
+    timings.save();
+    return new TestTimings(timingsFile);
+  }
+}
@@ -4,6 +4,8 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runners.model.InitializationError;
 import org.robolectric.annotation.Config;
+import org.robolectric.bytecode.ClassHandler;
+import org.robolectric.bytecode.ShadowMap;
 import org.robolectric.shadows.ShadowView;
 import org.robolectric.shadows.ShadowViewGroup;
 
@@ -55,6 +57,16 @@ public class RobolectricTestRunnerTest {
         -1, "--default", "", -1, new Class[] {});
   }
 
+  @Test public void runnersOverridingOnlyTestBehavior_shouldShareEnvironments() throws Exception {
+    assertThat(new RunnerWithCustomShadows(Test1.class).getEnvironmentFingerprint())
+        .isEqualTo(new RobolectricTestRunner(Test1.class).getEnvironmentFingerprint());
+  }
+
+  @Test public void runnersOverridingEnvironmentCreation_shouldNotShareEnvironments() throws Exception {
+    assertThat(new RunnerWithCustomClassHandler(Test1.class).getEnvironmentFingerprint())
+        .isNotEqualTo(new RobolectricTestRunner(Test1.class).getEnvironmentFingerprint());
+  }
+
   private Config configFor(Class<?> testClass, String methodName, final Properties configProperties) throws InitializationError {
     return new RobolectricTestRunner(testClass) {
       @Override protected Properties getConfigProperties() {
@@ -72,6 +84,26 @@ public class RobolectricTestRunnerTest {
     assertThat(stringify(config)).isEqualTo(stringify(emulateSdk, manifest, qualifiers, reportSdk, shadows));
   }
 
+  public static class RunnerWithCustomShadows extends RobolectricTestRunner {
+    public RunnerWithCustomShadows(Class<?> testClass) throws InitializationError {
+      super(testClass);
+    }
+
+    @Override protected void configureShadows(SdkEnvironment sdkEnvironment, Config config) {
+      super.configureShadows(sdkEnvironment, config);
+    }
+  }
+
+  public static class RunnerWithCustomClassHandler extends RobolectricTestRunner {
+    public RunnerWithCustomClassHandler(Class<?> testClass) throws InitializationError {
+      super(testClass);
+    }
+
+    @Override protected ClassHandler createClassHandler(ShadowMap shadowMap) {
+      return super.createClassHandler(shadowMap);
+    }
+  }
+
   @Ignore @Config(emulateSdk = 1, manifest = "foo", reportSdk = 2, shadows = Test1.class, qualifiers = "from-test")
   public static class Test1 {
     @Test public void withoutAnnotation() throws Exception {
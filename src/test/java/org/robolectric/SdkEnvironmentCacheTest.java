@@ -0,0 +1,114 @@
+package org.robolectric;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class SdkEnvironmentCacheTest {
+  private SdkConfig sdkConfig;
+  private SdkEnvironmentCache.Key key;
+  private SdkEnvironmentCache.Key otherKey;
+  private SdkEnvironment.Factory factory;
+
+  @Before public void setUp() throws Exception {
+    sdkConfig = new SdkConfig("4.1.2_r1_rc");
+    key = new SdkEnvironmentCache.Key("runner", sdkConfig, "setup");
+    otherKey = new SdkEnvironmentCache.Key("runner", sdkConfig, "other setup");
+    factory = new SdkEnvironment.Factory() {
+      @Override public SdkEnvironment create() {
+        return new SdkEnvironment(sdkConfig, getClass().getClassLoader());
+      }
+    };
+  }
+
+  @Test
+  public void shouldGiveEachConcurrentCheckOutItsOwnEnvironment() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(10, Long.MAX_VALUE);
+    SdkEnvironment first = cache.checkOut(key, factory);
+    SdkEnvironment second = cache.checkOut(key, factory);
+
+    assertThat(second).isNotSameAs(first);
+    assertThat(cache.getBuildCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldReuseEnvironmentsOnceCheckedIn() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(10, Long.MAX_VALUE);
+    SdkEnvironment first = cache.checkOut(key, factory);
+    cache.checkIn(key, first);
+
+    assertThat(cache.checkOut(key, factory)).isSameAs(first);
+    assertThat(cache.getBuildCount()).isEqualTo(1);
+    assertThat(cache.getReuseCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotReuseEnvironmentsForOtherKeys() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(10, Long.MAX_VALUE);
+    SdkEnvironment first = cache.checkOut(key, factory);
+    cache.checkIn(key, first);
+
+    assertThat(cache.checkOut(otherKey, factory)).isNotSameAs(first);
+    assertThat(cache.getBuildCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedEnvironmentWhenOverBudget() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(1, Long.MAX_VALUE);
+    SdkEnvironment first = cache.checkOut(key, factory);
+    SdkEnvironment second = cache.checkOut(otherKey, factory);
+    cache.checkIn(key, first);
+    cache.checkIn(otherKey, second);
+
+    assertThat(cache.getEvictionCount()).isEqualTo(1);
+    assertThat(cache.getIdleCount()).isEqualTo(1);
+    assertThat(cache.checkOut(otherKey, factory)).isSameAs(second);
+    assertThat(cache.checkOut(key, factory)).isNotSameAs(first);
+    assertThat(cache.getBuildCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldEvictWhenOverByteBudget() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(10, 150);
+    SdkEnvironment first = sizedEnvironment(100);
+    SdkEnvironment second = sizedEnvironment(100);
+    cache.checkIn(key, first);
+    cache.checkIn(otherKey, second);
+
+    assertThat(cache.getEvictionCount()).isEqualTo(1);
+    assertThat(cache.getIdleCount()).isEqualTo(1);
+    assertThat(cache.getEstimatedRetainedBytes()).isEqualTo(100);
+    assertThat(cache.checkOut(otherKey, factory)).isSameAs(second);
+  }
+
+  @Test
+  public void shouldKeepOneEnvironmentEvenIfItIsOverByteBudget() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(10, 50);
+    SdkEnvironment first = sizedEnvironment(100);
+    cache.checkIn(key, first);
+
+    assertThat(cache.getEvictionCount()).isEqualTo(0);
+    assertThat(cache.checkOut(key, factory)).isSameAs(first);
+  }
+
+  @Test
+  public void clear_shouldForgetIdleEnvironments() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(10, Long.MAX_VALUE);
+    SdkEnvironment first = cache.checkOut(key, factory);
+    cache.checkIn(key, first);
+    cache.clear();
+
+    assertThat(cache.getIdleCount()).isEqualTo(0);
+    assertThat(cache.checkOut(key, factory)).isNotSameAs(first);
+    assertThat(cache.getBuildCount()).isEqualTo(2);
+  }
+
+  private SdkEnvironment sizedEnvironment(final long estimatedSize) {
+    return new SdkEnvironment(sdkConfig, getClass().getClassLoader()) {
+      @Override public long getEstimatedSize() {
+        return estimatedSize;
+      }
+    };
+  }
+}
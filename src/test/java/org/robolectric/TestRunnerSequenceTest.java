@@ -12,8 +12,10 @@ import org.robolectric.res.FsFile;
 import org.robolectric.util.Transcript;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.fest.assertions.api.Assertions.fail;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.robolectric.util.TestUtil.resourceFile;
 
@@ -70,12 +72,69 @@ public class TestRunnerSequenceTest {
     assertTrue(robolectricTestRunner.allStateIsCleared());
   }
 
+  @Test public void shouldPlanTestClassOnlyOncePerEnvironment() throws Exception {
+    StateHolder.transcript = new Transcript();
+    final AtomicInteger helperTestRunnerCount = new AtomicInteger();
+    assertNoFailures(run(new Runner(TwoTests.class) {
+      @Override protected HelperTestRunner getHelperTestRunner(Class bootstrappedTestClass) {
+        helperTestRunnerCount.incrementAndGet();
+        return super.getHelperTestRunner(bootstrappedTestClass);
+      }
+    }));
+    assertEquals(1, helperTestRunnerCount.get());
+  }
+
+  @Test public void whenApplicationSetUpIsDeferred_shouldOnlySetUpApplicationForTestsThatUseIt() throws Exception {
+    System.setProperty(Setup.DEFER_APPLICATION_SET_UP_PROPERTY, "true");
+    try {
+      StateHolder.transcript = new Transcript();
+      assertNoFailures(run(new LazyApplicationRunner(TestWithoutApplication.class)));
+      StateHolder.transcript.assertEventsSoFar(
+          "configureShadows",
+          "createApplication",
+          "TEST!"
+      );
+
+      assertNoFailures(run(new LazyApplicationRunner(TestWithApplication.class)));
+      StateHolder.transcript.assertEventsSoFar(
+          "configureShadows",
+          "createApplication",
+          "application.onCreate",
+          "TEST! application is set up",
+          "application.onTerminate"
+      );
+    } finally {
+      System.clearProperty(Setup.DEFER_APPLICATION_SET_UP_PROPERTY);
+    }
+  }
+
   public static class SimpleTest {
     @Test public void shouldDoNothingMuch() throws Exception {
       StateHolder.transcript.add("TEST!");
     }
   }
 
+  public static class TwoTests {
+    @Test public void first() throws Exception {
+    }
+
+    @Test public void second() throws Exception {
+    }
+  }
+
+  public static class TestWithoutApplication {
+    @Test public void shouldNotTouchApplication() throws Exception {
+      StateHolder.transcript.add("TEST!");
+    }
+  }
+
+  public static class TestWithApplication {
+    @Test public void shouldTouchApplication() throws Exception {
+      Application application = Robolectric.application;
+      StateHolder.transcript.add("TEST! application is " + (application == null ? "missing" : "set up"));
+    }
+  }
+
   private Result run(Runner runner) throws InitializationError {
     RunNotifier notifier = new RunNotifier();
     Result result = new Result();
@@ -121,6 +180,33 @@ public class TestRunnerSequenceTest {
     }
   }
 
+  public static class LazyApplicationRunner extends Runner {
+    public LazyApplicationRunner(Class<?> testClass) throws InitializationError {
+      super(testClass);
+    }
+
+    @Override protected Class<? extends TestLifecycle> getTestLifecycleClass() {
+      return PlainApplicationTestLifecycle.class;
+    }
+  }
+
+  public static class PlainApplicationTestLifecycle extends DefaultTestLifecycle {
+    @Override public Application createApplication(Method method, AndroidManifest appManifest) {
+      StateHolder.transcript.add("createApplication");
+      return new PlainApplication();
+    }
+
+    private static class PlainApplication extends Application {
+      @Override public void onCreate() {
+        StateHolder.transcript.add("application.onCreate");
+      }
+
+      @Override public void onTerminate() {
+        StateHolder.transcript.add("application.onTerminate");
+      }
+    }
+  }
+
   public static class MyTestLifecycle extends DefaultTestLifecycle {
     @Override public Application createApplication(Method method, AndroidManifest appManifest) {
       StateHolder.transcript.add("createApplication");
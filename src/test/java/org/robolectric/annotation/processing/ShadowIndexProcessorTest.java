@@ -0,0 +1,111 @@
+package org.robolectric.annotation.processing;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.robolectric.test.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ShadowIndexProcessorTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  private File sourceDir;
+  private File outputDir;
+  private ByteArrayOutputStream compilerOutput;
+
+  @Before
+  public void setUp() throws Exception {
+    sourceDir = temporaryFolder.newFolder("src");
+    outputDir = temporaryFolder.newFolder("classes");
+    compilerOutput = new ByteArrayOutputStream();
+  }
+
+  @Test
+  public void shouldIndexEachShadow() throws Exception {
+    File shadowFoo = temporaryFolder.newFile("src/com/example/ShadowFoo.java",
+        "package com.example;\n"
+            + "@org.robolectric.annotation.Implements(value = Object.class, className = \"com.example.Foo\", callThroughByDefault = false)\n"
+            + "public class ShadowFoo {}\n");
+    File shadowBar = temporaryFolder.newFile("src/com/example/ShadowBar.java",
+        "package com.example;\n"
+            + "@org.robolectric.annotation.Implements(value = Object.class, className = \"com.example.Bar\", looseSignatures = true)\n"
+            + "public class ShadowBar {}\n");
+
+    assertThat(compile(shadowFoo, shadowBar)).as(compilerOutput.toString()).isTrue();
+    assertThat(readIndex()).containsExactly(
+        "com.example.Bar com.example.ShadowBar true false true",
+        "com.example.Foo com.example.ShadowFoo false false false");
+  }
+
+  @Test
+  public void whenTwoShadowsImplementTheSameClass_shouldIndexTheOneNamedByConvention() throws Exception {
+    File shadowOuter = temporaryFolder.newFile("src/org/robolectric/shadows/ShadowOuter.java",
+        "package org.robolectric.shadows;\n"
+            + "public class ShadowOuter {\n"
+            + "  @org.robolectric.annotation.Implements(value = Object.class, className = \"com.example.Outer$Inner\")\n"
+            + "  public static class InnerImpl {}\n"
+            + "  @org.robolectric.annotation.Implements(value = Object.class, className = \"com.example.Outer$Inner\", inheritImplementationMethods = true)\n"
+            + "  public static class ShadowInner {}\n"
+            + "}\n");
+
+    assertThat(compile(shadowOuter)).as(compilerOutput.toString()).isTrue();
+    assertThat(readIndex()).containsExactly(
+        "com.example.Outer$Inner org.robolectric.shadows.ShadowOuter$ShadowInner true true false");
+  }
+
+  @Test
+  public void whenTwoShadowsImplementTheSameClassAndNeitherIsNamedByConvention_shouldFail() throws Exception {
+    File shadowFoo = temporaryFolder.newFile("src/com/example/ShadowFoo.java",
+        "package com.example;\n"
+            + "@org.robolectric.annotation.Implements(value = Object.class, className = \"com.example.Foo\")\n"
+            + "public class ShadowFoo {}\n");
+    File otherShadowFoo = temporaryFolder.newFile("src/com/example/OtherShadowFoo.java",
+        "package com.example;\n"
+            + "@org.robolectric.annotation.Implements(value = Object.class, className = \"com.example.Foo\")\n"
+            + "public class OtherShadowFoo {}\n");
+
+    assertThat(compile(shadowFoo, otherShadowFoo)).isFalse();
+    assertThat(compilerOutput.toString()).contains("com.example.Foo is shadowed by");
+  }
+
+  private boolean compile(File... sourceFiles) {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    List<String> args = new ArrayList<String>(Arrays.asList(
+        "-classpath", System.getProperty("java.class.path"),
+        "-processor", ShadowIndexProcessor.class.getName(),
+        "-d", outputDir.getPath()));
+    for (File sourceFile : sourceFiles) {
+      args.add(sourceFile.getPath());
+    }
+    return compiler.run(null, compilerOutput, compilerOutput, args.toArray(new String[args.size()])) == 0;
+  }
+
+  private List<String> readIndex() throws IOException {
+    File indexFile = new File(outputDir, ShadowIndexProcessor.INDEX_RESOURCE_NAME);
+    FileInputStream in = new FileInputStream(indexFile);
+    try {
+      byte[] bytes = new byte[(int) indexFile.length()];
+      int offset = 0;
+      while (offset < bytes.length) {
+        offset += in.read(bytes, offset, bytes.length - offset);
+      }
+      List<String> lines = new ArrayList<String>();
+      for (String line : new String(bytes, "UTF-8").split("\n")) {
+        if (!line.trim().isEmpty()) lines.add(line.trim());
+      }
+      return lines;
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -1,8 +1,21 @@
 package org.robolectric.bytecode;
 
 import org.junit.Test;
+import org.robolectric.bytecode.testing.AClassWithMethodReturningInteger;
+import org.robolectric.bytecode.testing.AnExampleClass;
 import org.robolectric.util.Transcript;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.fest.assertions.api.Assertions.assertThat;
+
 public class AsmInstrumentingClassLoaderTest extends InstrumentingClassLoaderTestBase {
   protected ClassLoader createClassLoader(Setup setup) throws ClassNotFoundException {
     return new AsmInstrumentingClassLoader(setup);
@@ -32,4 +45,37 @@ public class AsmInstrumentingClassLoaderTest extends InstrumentingClassLoaderTes
 
     transcript.assertEventsSoFar("find foo.AClass");
   }
+
+  @Test public void shouldLoadEachClassOnceWhenLoadingInParallel() throws Exception {
+    final AsmInstrumentingClassLoader classLoader = new AsmInstrumentingClassLoader(new Setup());
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Class<?>>> futures = new ArrayList<Future<Class<?>>>();
+      for (int i = 0; i < 32; i++) {
+        futures.add(executorService.submit(new Callable<Class<?>>() {
+          @Override public Class<?> call() throws Exception {
+            return classLoader.loadClass(AnExampleClass.class.getName());
+          }
+        }));
+      }
+
+      Class<?> firstClass = futures.get(0).get();
+      assertThat(firstClass.getClassLoader()).isSameAs(classLoader);
+      for (Future<Class<?>> future : futures) {
+        assertThat(future.get()).isSameAs(firstClass);
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test public void preloader_shouldLoadClassesInTheBackground() throws Exception {
+    AsmInstrumentingClassLoader classLoader = new AsmInstrumentingClassLoader(new Setup());
+    ClassPreloader classPreloader = new ClassPreloader(classLoader, 2);
+    classPreloader.preload(asList(AnExampleClass.class.getName(), AClassWithMethodReturningInteger.class.getName(),
+        "org.robolectric.bytecode.testing.NoSuchClass"));
+
+    assertThat(classPreloader.awaitCompletion(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(classPreloader.getLoadedCount()).isEqualTo(2);
+  }
 }
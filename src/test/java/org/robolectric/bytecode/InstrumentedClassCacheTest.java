@@ -0,0 +1,86 @@
+package org.robolectric.bytecode;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.robolectric.test.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Map;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class InstrumentedClassCacheTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File cacheBaseDir;
+  private byte[] origBytes = {1, 2, 3};
+  private byte[] instrumentedBytes = {4, 5, 6, 7};
+
+  @Before
+  public void setUp() throws Exception {
+    cacheBaseDir = temporaryFolder.newFolder("cache");
+  }
+
+  @Test
+  public void shouldReturnCachedBytesAcrossInstances() throws Exception {
+    new InstrumentedClassCache(cacheBaseDir, new Setup()).put(origBytes, instrumentedBytes);
+
+    InstrumentedClassCache cache = new InstrumentedClassCache(cacheBaseDir, new Setup());
+    assertThat(cache.get(origBytes)).isEqualTo(instrumentedBytes);
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(cache.getMissCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldReturnOriginalBytesForUninstrumentedClasses() throws Exception {
+    InstrumentedClassCache cache = new InstrumentedClassCache(cacheBaseDir, new Setup());
+    cache.put(origBytes, origBytes);
+    assertThat(cache.get(origBytes)).isSameAs(origBytes);
+  }
+
+  @Test
+  public void shouldMissWhenNothingIsCached() throws Exception {
+    InstrumentedClassCache cache = new InstrumentedClassCache(cacheBaseDir, new Setup());
+    assertThat(cache.get(origBytes)).isNull();
+    assertThat(cache.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldKeyEntriesByOriginalClassBytes() throws Exception {
+    InstrumentedClassCache cache = new InstrumentedClassCache(cacheBaseDir, new Setup());
+    cache.put(origBytes, instrumentedBytes);
+
+    assertThat(cache.get(new byte[] {9, 9, 9})).isNull();
+    assertThat(cache.getStaleCount()).isEqualTo(0);
+    assertThat(cache.get(origBytes)).isEqualTo(instrumentedBytes);
+  }
+
+  @Test
+  public void shouldTreatCorruptEntriesAsStale() throws Exception {
+    InstrumentedClassCache cache = new InstrumentedClassCache(cacheBaseDir, new Setup());
+    cache.put(origBytes, instrumentedBytes);
+
+    FileOutputStream out = new FileOutputStream(cache.getCacheDir().listFiles()[0]);
+    out.write(new byte[] {0, 1});
+    out.close();
+
+    assertThat(cache.get(origBytes)).isNull();
+    assertThat(cache.getStaleCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotShareEntriesBetweenDifferentSetups() throws Exception {
+    new InstrumentedClassCache(cacheBaseDir, new Setup()).put(origBytes, instrumentedBytes);
+
+    InstrumentedClassCache cache = new InstrumentedClassCache(cacheBaseDir, new Setup() {
+      @Override public Map<String, String> classNameTranslations() {
+        Map<String, String> map = super.classNameTranslations();
+        map.put("a.C", "a.D");
+        return map;
+      }
+    });
+    assertThat(cache.get(origBytes)).isNull();
+  }
+}
@@ -21,6 +21,7 @@ import org.robolectric.bytecode.testing.AClassWithNativeMethod;
 import org.robolectric.bytecode.testing.AClassWithNativeMethodReturningPrimitive;
 import org.robolectric.bytecode.testing.AClassWithNoDefaultConstructor;
 import org.robolectric.bytecode.testing.AClassWithStaticMethod;
+import org.robolectric.bytecode.testing.AClassWithStaticState;
 import org.robolectric.bytecode.testing.AClassWithoutEqualsHashCodeToString;
 import org.robolectric.bytecode.testing.AFinalClass;
 import org.robolectric.bytecode.testing.AnEnum;
@@ -29,6 +30,7 @@ import org.robolectric.bytecode.testing.AnInstrumentedChild;
 import org.robolectric.bytecode.testing.AnInstrumentedClassWithoutToStringWithSuperToString;
 import org.robolectric.bytecode.testing.AnUninstrumentedClass;
 import org.robolectric.bytecode.testing.AnUninstrumentedParent;
+import org.robolectric.bytecode.testing.ShadowAClassWithMethodReturningInteger;
 import org.robolectric.util.Transcript;
 import org.robolectric.util.Util;
 
@@ -127,6 +129,48 @@ abstract public class InstrumentingClassLoaderTestBase { // don't end in "Test"
         "methodInvoked: AnExampleClass.normalMethod(java.lang.String value1, int 123)");
   }
 
+  @Test
+  public void shouldAskClassHandlerForPlanOncePerMethodUntilClassHandlerChanges() throws Exception {
+    Class<?> exampleClass = loadClass(AnExampleClass.class);
+    Method normalMethod = exampleClass.getMethod("normalMethod", String.class, int.class);
+
+    Object exampleInstance = exampleClass.newInstance();
+    normalMethod.invoke(exampleInstance, "value1", 123);
+    normalMethod.invoke(exampleInstance, "value2", 456);
+    assertEquals(2, classHandler.planRequestCount); // __constructor__ and normalMethod
+
+    MyClassHandler otherClassHandler = new MyClassHandler(transcript);
+    RobolectricTestRunner.injectClassHandler(classLoader, otherClassHandler);
+    normalMethod.invoke(exampleInstance, "value3", 789);
+    assertEquals(1, otherClassHandler.planRequestCount);
+  }
+
+  @Test
+  public void shouldExposeShadowThroughShadowedObjectInterface() throws Exception {
+    Class<?> exampleClass = loadClass(AnExampleClass.class);
+    Object exampleInstance = exampleClass.newInstance();
+    assertThat(exampleInstance).isInstanceOf(ShadowedObject.class);
+    assertThat(((ShadowedObject) exampleInstance).$$robo$getData()).isEqualTo("a shadow!");
+  }
+
+  @Test
+  public void shouldRestoreChangedStaticFieldsFromSnapshot() throws Exception {
+    System.setProperty(StaticStateSnapshot.SNAPSHOT_STATIC_STATE_PROPERTY, "true");
+    try {
+      Class<?> theClass = loadClass(AClassWithStaticState.class);
+      theClass.getField("name").set(null, "changed");
+      theClass.getField("count").set(null, 42);
+
+      Class<?> snapshotClass = classLoader.loadClass(StaticStateSnapshot.class.getName());
+      assertEquals(2, snapshotClass.getMethod("restoreAll").invoke(null));
+      assertNull(theClass.getField("name").get(null));
+      assertEquals(0, theClass.getField("count").get(null));
+      assertEquals(0, snapshotClass.getMethod("restoreAll").invoke(null));
+    } finally {
+      System.clearProperty(StaticStateSnapshot.SNAPSHOT_STATIC_STATE_PROPERTY);
+    }
+  }
+
   @Test
   public void shouldGenerateClassSpecificDirectAccessMethod() throws Exception {
     Class<?> exampleClass = loadClass(AnExampleClass.class);
@@ -200,6 +244,21 @@ abstract public class InstrumentingClassLoaderTestBase { // don't end in "Test"
         "methodInvoked: AClassWithMethodReturningInteger.normalMethodReturningInteger(int 123)");
   }
 
+  @Test
+  public void whenPlanTakesUnboxedParams_shouldCallItWithoutGoingThroughGenericRun() throws Exception {
+    Class<?> exampleClass = loadClass(AClassWithMethodReturningInteger.class);
+    Class<?> shadowClass = classLoader.loadClass(ShadowAClassWithMethodReturningInteger.class.getName());
+    ClassHandler.Plan plan = new ShadowInvokerGenerator()
+        .generate(shadowClass.getMethod("normalMethodReturningInteger", int.class), "(I)I");
+    assertThat(plan.getClass().getInterfaces()[1].getName()).isEqualTo(SpecializedPlans.interfaceNameFor("(I)I"));
+    classHandler.plansByMethodName.put("normalMethodReturningInteger", plan);
+
+    Method normalMethod = exampleClass.getMethod("normalMethodReturningInteger", int.class);
+    Object exampleInstance = exampleClass.newInstance();
+    assertEquals(1230, normalMethod.invoke(exampleInstance, 123));
+    transcript.assertEventsSoFar("methodInvoked: AClassWithMethodReturningInteger.__constructor__()");
+  }
+
   @Test
   public void callingMethodReturningDoubleShouldInvokeClassHandler() throws Exception {
     Class<?> exampleClass = loadClass(AClassWithMethodReturningDouble.class);
@@ -466,6 +525,24 @@ abstract public class InstrumentingClassLoaderTestBase { // don't end in "Test"
         "intercept: org/robolectric/bytecode/testing/AClassToForget/longReturningMethod(Ljava/lang/String;IJ)J with params (str str, 123 123, 456 456)");
   }
 
+  @Test
+  public void shouldAskInterceptingClassHandlerForInterceptionPlanOncePerCallSiteUntilClassHandlerChanges() throws Exception {
+    setClassLoader(createClassLoader(new MethodInterceptingSetup(new Setup.MethodRef(AClassToForget.class, "*"))));
+    MyInterceptingClassHandler interceptingClassHandler = new MyInterceptingClassHandler(transcript);
+    classHandler = interceptingClassHandler;
+    Class<?> theClass = loadClass(AClassThatRefersToAForgettableClassInMethodCallsReturningPrimitive.class);
+    Object instance = theClass.newInstance();
+    directlyOn(instance, (Class<Object>) theClass, "longMethod").invoke();
+    directlyOn(instance, (Class<Object>) theClass, "longMethod").invoke();
+    directlyOn(instance, (Class<Object>) theClass, "intMethod").invoke();
+    assertEquals(2, interceptingClassHandler.interceptionPlanRequestCount); // longReturningMethod and intReturningMethod
+
+    MyInterceptingClassHandler otherClassHandler = new MyInterceptingClassHandler(transcript);
+    RobolectricTestRunner.injectClassHandler(classLoader, otherClassHandler);
+    directlyOn(instance, (Class<Object>) theClass, "longMethod").invoke();
+    assertEquals(1, otherClassHandler.interceptionPlanRequestCount);
+  }
+
   @Test
   public void shouldRemapClassesWhileInterceptingMethods() throws Exception {
     setClassLoader(createClassLoader(new MethodInterceptingClassRemappingSetup(new Setup.MethodRef(AClassThatCallsAMethodReturningAForgettableClass.class, "getAForgettableClass"))));
@@ -511,6 +588,8 @@ abstract public class InstrumentingClassLoaderTestBase { // don't end in "Test"
     private Transcript transcript;
     private Object valueToReturn = GENERATE_YOUR_OWN_VALUE;
     private Object valueToReturnFromIntercept = null;
+    private int planRequestCount = 0;
+    private Map<String, Plan> plansByMethodName = new HashMap<String, Plan>();
 
     public MyClassHandler(Transcript transcript) {
       this.transcript = transcript;
@@ -542,7 +621,11 @@ abstract public class InstrumentingClassLoaderTestBase { // don't end in "Test"
 
     @Override
     public Plan methodInvoked(String signature, boolean isStatic, Class<?> theClass) {
+      planRequestCount++;
       final InvocationProfile invocationProfile = new InvocationProfile(signature, isStatic, getClass().getClassLoader());
+      if (plansByMethodName.containsKey(invocationProfile.methodName)) {
+        return plansByMethodName.get(invocationProfile.methodName);
+      }
       return new Plan() {
         @Override public Object run(Object instance, Object roboData, Object[] params) throws Exception {
           try {
@@ -575,6 +658,24 @@ abstract public class InstrumentingClassLoaderTestBase { // don't end in "Test"
     }
   }
 
+  public static class MyInterceptingClassHandler extends MyClassHandler implements InterceptingClassHandler {
+    private int interceptionPlanRequestCount = 0;
+
+    public MyInterceptingClassHandler(Transcript transcript) {
+      super(transcript);
+    }
+
+    @Override
+    public Plan interceptionPlan(final String signature, final Class<?> theClass) {
+      interceptionPlanRequestCount++;
+      return new Plan() {
+        @Override public Object run(Object instance, Object roboData, Object[] params) throws Throwable {
+          return intercept(signature, instance, params, theClass);
+        }
+      };
+    }
+  }
+
   private static class MySetup extends Setup {
     private final boolean shouldAcquire;
     private final boolean shouldInstrument;
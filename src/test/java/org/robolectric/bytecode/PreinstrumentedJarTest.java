@@ -0,0 +1,98 @@
+package org.robolectric.bytecode;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.robolectric.test.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class PreinstrumentedJarTest {
+  // not on the test classpath, so class loaders can only find it in the jar
+  private static final String CLASS_NAME = "android.preinstrumented.Example";
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private byte[] origBytes;
+  private File jarFile;
+
+  @Before
+  public void setUp() throws Exception {
+    String classFileName = CLASS_NAME.replace('.', '/') + ".class";
+    origBytes = generateClass(CLASS_NAME.replace('.', '/'));
+
+    File inputJar = new File(temporaryFolder.newFolder("in"), "input.jar");
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(inputJar));
+    out.putNextEntry(new ZipEntry(classFileName));
+    out.write(origBytes);
+    out.closeEntry();
+    out.close();
+
+    jarFile = new File(temporaryFolder.newFolder("out"), PreinstrumentedJar.fileNameFor("1.0"));
+    int classCount = PreinstrumentedJar.write(jarFile, new Setup(), "1.0", Collections.singletonList(inputJar.toURI().toURL()));
+    assertThat(classCount).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldHaveInstrumentedClasses() throws Exception {
+    PreinstrumentedJar preinstrumentedJar = PreinstrumentedJar.open(jarFile, new Setup(), "1.0");
+    assertThat(preinstrumentedJar).isNotNull();
+    assertThat(preinstrumentedJar.get(CLASS_NAME)).isNotNull().isNotEqualTo(origBytes);
+    assertThat(preinstrumentedJar.get("some.OtherClass")).isNull();
+    preinstrumentedJar.close();
+  }
+
+  @Test
+  public void shouldBeIgnoredForOtherSdkVersionsOrSetups() throws Exception {
+    assertThat(PreinstrumentedJar.open(jarFile, new Setup(), "2.0")).isNull();
+    assertThat(PreinstrumentedJar.open(jarFile, new Setup() {}, "1.0")).isNull();
+  }
+
+  @Test
+  public void classLoaderShouldDefineClassesFromJar() throws Exception {
+    PreinstrumentedJar preinstrumentedJar = PreinstrumentedJar.open(jarFile, new Setup(), "1.0");
+    ClassLoader classLoader = new AsmInstrumentingClassLoader(new Setup(), null, preinstrumentedJar, new URL[0]);
+
+    Class<?> theClass = classLoader.loadClass(CLASS_NAME);
+    assertThat(theClass.getClassLoader()).isSameAs(classLoader);
+    assertThat(ShadowedObject.class.isAssignableFrom(theClass)).isTrue();
+    preinstrumentedJar.close();
+  }
+
+  @Test
+  public void fromSystemProperties_shouldShareOneJarPerFile() throws Exception {
+    System.setProperty(PreinstrumentedJar.PREINSTRUMENTED_JAR_DIR_PROPERTY, jarFile.getParent());
+    try {
+      PreinstrumentedJar preinstrumentedJar = PreinstrumentedJar.fromSystemProperties(new Setup(), "1.0");
+      assertThat(preinstrumentedJar).isNotNull();
+      assertThat(PreinstrumentedJar.fromSystemProperties(new Setup(), "1.0")).isSameAs(preinstrumentedJar);
+      assertThat(PreinstrumentedJar.fromSystemProperties(new Setup() {}, "1.0")).isNull();
+    } finally {
+      System.clearProperty(PreinstrumentedJar.PREINSTRUMENTED_JAR_DIR_PROPERTY);
+    }
+  }
+
+  private static byte[] generateClass(String internalName) {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    classWriter.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, internalName, null, "java/lang/Object", null);
+    MethodVisitor constructor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    constructor.visitCode();
+    constructor.visitVarInsn(Opcodes.ALOAD, 0);
+    constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+    constructor.visitInsn(Opcodes.RETURN);
+    constructor.visitMaxs(0, 0);
+    constructor.visitEnd();
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+}
@@ -0,0 +1,76 @@
+package org.robolectric.bytecode;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.robolectric.annotation.processing.ShadowIndexProcessor;
+import org.robolectric.test.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ShadowIndexTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  private File firstDir;
+  private File secondDir;
+
+  @Before
+  public void setUp() throws Exception {
+    firstDir = temporaryFolder.newFolder("first");
+    secondDir = temporaryFolder.newFolder("second");
+  }
+
+  @Test
+  public void load_shouldReadShadowConfigsFromIndexResources() throws Exception {
+    writeIndex(firstDir,
+        "com.example.Real com.example.ShadowReal true false false",
+        "com.example.Other com.example.ShadowOther false true true");
+
+    ShadowIndex shadowIndex = ShadowIndex.load(classLoaderFor(firstDir));
+    assertThat(shadowIndex.size()).isEqualTo(2);
+    assertThat(shadowIndex.get("com.example.Real"))
+        .isEqualTo(new ShadowConfig("com.example.ShadowReal", true, false, false));
+    assertThat(shadowIndex.get("com.example.Other"))
+        .isEqualTo(new ShadowConfig("com.example.ShadowOther", false, true, true));
+    assertThat(shadowIndex.get("com.example.Unshadowed")).isNull();
+  }
+
+  @Test
+  public void load_shouldPreferIndexEarlierOnClasspathAndSkipMalformedLines() throws Exception {
+    writeIndex(firstDir, "com.example.Real com.example.ShadowReal true false false", "garbage");
+    writeIndex(secondDir,
+        "com.example.Real com.example.OtherShadowReal true false false",
+        "com.example.Other com.example.ShadowOther true false false");
+
+    ShadowIndex shadowIndex = ShadowIndex.load(classLoaderFor(firstDir, secondDir));
+    assertThat(shadowIndex.size()).isEqualTo(2);
+    assertThat(shadowIndex.get("com.example.Real").shadowClassName).isEqualTo("com.example.ShadowReal");
+    assertThat(shadowIndex.get("com.example.Other").shadowClassName).isEqualTo("com.example.ShadowOther");
+  }
+
+  private URLClassLoader classLoaderFor(File... dirs) throws IOException {
+    URL[] urls = new URL[dirs.length];
+    for (int i = 0; i < dirs.length; i++) {
+      urls[i] = dirs[i].toURI().toURL();
+    }
+    return new URLClassLoader(urls, null);
+  }
+
+  private void writeIndex(File dir, String... lines) throws IOException {
+    File indexFile = new File(dir, ShadowIndexProcessor.INDEX_RESOURCE_NAME);
+    indexFile.getParentFile().mkdirs();
+    FileWriter writer = new FileWriter(indexFile);
+    try {
+      for (String line : lines) {
+        writer.write(line + "\n");
+      }
+    } finally {
+      writer.close();
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package org.robolectric.bytecode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ShadowInvokerGeneratorTest {
+  private ShadowInvokerGenerator generator;
+
+  @Before
+  public void setUp() throws Exception {
+    generator = new ShadowInvokerGenerator();
+  }
+
+  @Test
+  public void generatedPlan_shouldCallInstanceMethodWithUnboxedParams() throws Throwable {
+    ClassHandler.Plan plan = generator.generate(method("describe", int.class, long.class, boolean.class, String.class));
+
+    Object result = plan.run(null, new SampleShadow("shadow"), new Object[]{1, 2L, true, "four"});
+    assertThat(result).isEqualTo("shadow:1:2:true:four");
+  }
+
+  @Test
+  public void generatedPlan_shouldBoxPrimitiveReturnValues() throws Throwable {
+    ClassHandler.Plan plan = generator.generate(method("twice", double.class));
+
+    assertThat(plan.run(null, new SampleShadow("shadow"), new Object[]{1.5})).isEqualTo(3.0);
+  }
+
+  @Test
+  public void generatedPlan_shouldReturnNullForVoidMethods() throws Throwable {
+    SampleShadow shadow = new SampleShadow("shadow");
+    ClassHandler.Plan plan = generator.generate(method("rename", String.class));
+
+    assertThat(plan.run(null, shadow, new Object[]{"renamed"})).isNull();
+    assertThat(shadow.name).isEqualTo("renamed");
+  }
+
+  @Test
+  public void generatedPlan_shouldCallStaticMethods() throws Throwable {
+    ClassHandler.Plan plan = generator.generate(method("join", String.class, String.class));
+
+    assertThat(plan.run(null, null, new Object[]{"a", "b"})).isEqualTo("a+b");
+  }
+
+  @Test
+  public void generatedPlan_shouldPropagateExceptionsUnwrapped() throws Throwable {
+    ClassHandler.Plan plan = generator.generate(method("explode"));
+
+    try {
+      plan.run(null, new SampleShadow("shadow"), new Object[0]);
+      fail("should have thrown");
+    } catch (UnsupportedOperationException e) {
+      assertThat(e.getMessage()).isEqualTo("kaboom");
+    }
+  }
+
+  @Test
+  public void generatedPlan_shouldComplainAboutWrongShadowType() throws Throwable {
+    ClassHandler.Plan plan = generator.generate(method("explode"));
+
+    try {
+      plan.run(null, "not a shadow", new Object[0]);
+      fail("should have thrown");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("String doesn't extend SampleShadow");
+    }
+  }
+
+  @Test
+  public void generatedPlan_shouldThrowNullPointerExceptionForNullShadow() throws Throwable {
+    ClassHandler.Plan plan = generator.generate(method("explode"));
+
+    try {
+      plan.run(null, null, new Object[0]);
+      fail("should have thrown");
+    } catch (NullPointerException e) {
+      // as Method.invoke() would
+    }
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void generatedPlan_shouldThrowNullPointerExceptionForNullPrimitiveParams() throws Throwable {
+    generator.generate(method("twice", double.class)).run(null, new SampleShadow("shadow"), new Object[]{null});
+  }
+
+  @Test(expected = ClassCastException.class)
+  public void generatedPlan_shouldThrowClassCastExceptionForParamsOfTheWrongType() throws Throwable {
+    generator.generate(method("rename", String.class)).run(null, new SampleShadow("shadow"), new Object[]{42});
+  }
+
+  @Test
+  public void canGenerateFor_shouldRejectMethodsWithInaccessibleTypes() throws Exception {
+    assertThat(ShadowInvokerGenerator.canGenerateFor(method("join", String.class, String.class))).isTrue();
+    assertThat(ShadowInvokerGenerator.canGenerateFor(method("hidden", HiddenType.class))).isFalse();
+    assertThat(ShadowInvokerGenerator.canGenerateFor(HiddenType.class.getMethod("toString"))).isFalse();
+  }
+
+  private Method method(String name, Class<?>... paramTypes) throws NoSuchMethodException {
+    return SampleShadow.class.getMethod(name, paramTypes);
+  }
+
+  public static class SampleShadow {
+    private String name;
+
+    public SampleShadow(String name) {
+      this.name = name;
+    }
+
+    public String describe(int i, long l, boolean b, String s) {
+      return name + ":" + i + ":" + l + ":" + b + ":" + s;
+    }
+
+    public double twice(double d) {
+      return d * 2;
+    }
+
+    public void rename(String name) {
+      this.name = name;
+    }
+
+    public void explode() {
+      throw new UnsupportedOperationException("kaboom");
+    }
+
+    public static String join(String a, String b) {
+      return a + "+" + b;
+    }
+
+    public void hidden(HiddenType hiddenType) {
+    }
+  }
+
+  static class HiddenType {
+    @Override public String toString() {
+      return "hidden";
+    }
+  }
+}
@@ -2,6 +2,9 @@ package org.robolectric.bytecode;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
 import org.robolectric.util.Function;
 
 import java.util.LinkedHashMap;
@@ -51,4 +54,84 @@ public class ShadowWranglerUnitTest {
     assertThat(result.getKey()).isEqualTo(1);
     assertThat(result.getValue()).isEqualTo("one");
   }
+
+  @Test
+  public void methodInvoked_shouldCalculateEachPlanOnlyOnce() throws Exception {
+    String signature = "org/robolectric/bytecode/ShadowWranglerUnitTest/setup()V";
+    assertThat(shadowWrangler.methodInvoked(signature, false, getClass())).isNull();
+    assertThat(shadowWrangler.methodInvoked(signature, false, getClass())).isNull();
+    assertThat(shadowWrangler.methodInvoked(signature, false, getClass())).isNull();
+
+    assertThat(shadowWrangler.getPlanCacheMissCount()).isEqualTo(1);
+    assertThat(shadowWrangler.getPlanCacheHitCount()).isEqualTo(2);
+    assertThat(shadowWrangler.getPlanCacheSize()).isEqualTo(1);
+  }
+
+  @Test
+  public void methodInvoked_shouldCallShadowMethodsThroughGeneratedInvokersOnlyWhenAskedTo() throws Throwable {
+    ShadowMap shadowMap = new ShadowMap.Builder().addShadowClass(Counter.class, ShadowCounter.class, false, false, false).build();
+    String signature = "org/robolectric/bytecode/ShadowWranglerUnitTest$Counter/add(I)I";
+
+    ClassHandler.Plan reflectivePlan = new ShadowWrangler(shadowMap).methodInvoked(signature, false, Counter.class);
+    assertThat(reflectivePlan.getClass().getName()).doesNotContain(ShadowInvokerGenerator.INVOKER_CLASS_MARKER);
+    assertThat(reflectivePlan.run(new Counter(), new ShadowCounter(), new Object[]{2})).isEqualTo(3);
+
+    ClassHandler.Plan plan = new ShadowWrangler(shadowMap, true).methodInvoked(signature, false, Counter.class);
+    assertThat(plan.getClass().getName()).contains(ShadowInvokerGenerator.INVOKER_CLASS_MARKER);
+    assertThat(plan.run(new Counter(), new ShadowCounter(), new Object[]{2})).isEqualTo(3);
+  }
+
+  @Test
+  public void createShadowFor_shouldCreateDistinctShadowsWithRealObjectsForEachInstance() throws Exception {
+    ShadowMap shadowMap = new ShadowMap.Builder().addShadowClass(Thing.class, ShadowThing.class, true, false, false).build();
+    shadowWrangler = new ShadowWrangler(shadowMap);
+
+    Thing thing1 = new Thing();
+    Thing thing2 = new SubThing();
+    ShadowThing shadow1 = (ShadowThing) shadowWrangler.createShadowFor(thing1);
+    ShadowThing shadow2 = (ShadowThing) shadowWrangler.createShadowFor(thing2);
+    ShadowThing shadow3 = (ShadowThing) shadowWrangler.createShadowFor(thing1);
+
+    assertThat(shadow1).isNotSameAs(shadow3);
+    assertThat(shadow1.constructedWith).isSameAs(thing1);
+    assertThat(shadow1.realThing).isSameAs(thing1);
+    assertThat(shadow2.constructedWith).isSameAs(thing2);
+    assertThat(shadow2.realThing).isSameAs(thing2);
+    assertThat(shadow3.realThing).isSameAs(thing1);
+  }
+
+  @Test
+  public void createShadowFor_whenClassHasNoShadow_shouldReturnPlainObject() throws Exception {
+    Object shadow = shadowWrangler.createShadowFor(new Thing());
+    assertThat(shadow.getClass().getName()).isEqualTo(Object.class.getName());
+  }
+
+  public static class Thing {
+  }
+
+  public static class SubThing extends Thing {
+  }
+
+  public static class Counter {
+    public int add(int count) {
+      return count;
+    }
+  }
+
+  @Implements(Counter.class)
+  public static class ShadowCounter {
+    @Implementation
+    public int add(int count) {
+      return count + 1;
+    }
+  }
+
+  public static class ShadowThing {
+    private final Thing constructedWith;
+    @RealObject private Thing realThing;
+
+    public ShadowThing(Thing thing) {
+      this.constructedWith = thing;
+    }
+  }
 }
@@ -0,0 +1,12 @@
+package org.robolectric.bytecode.testing;
+
+import org.robolectric.internal.Instrument;
+
+@SuppressWarnings("UnusedDeclaration")
+@Instrument
+public class AClassWithStaticState {
+  public static String name;
+  public static int count;
+  public static Object untouched;
+  public static final String CONSTANT = "constant";
+}
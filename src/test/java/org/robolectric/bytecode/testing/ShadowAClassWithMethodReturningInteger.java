@@ -0,0 +1,8 @@
+package org.robolectric.bytecode.testing;
+
+@SuppressWarnings("UnusedDeclaration")
+public class ShadowAClassWithMethodReturningInteger {
+  public static int normalMethodReturningInteger(int intArg) {
+    return intArg * 10;
+  }
+}
@@ -0,0 +1,53 @@
+package org.robolectric.res;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.robolectric.util.TestUtil.TEST_PACKAGE;
+import static org.robolectric.util.TestUtil.testResources;
+
+public class DocumentLoaderTest {
+  @Test
+  public void shouldLoadTheSameResourcesConcurrentlyAsSequentially() throws Exception {
+    ResBunch sequentialData = new ResBunch();
+    ResBundle<LazyXmlBlock> sequentialXml = new ResBundle<LazyXmlBlock>();
+    load(new DocumentLoader(testResources(), 1), sequentialData, sequentialXml);
+
+    ResBunch concurrentData = new ResBunch();
+    ResBundle<LazyXmlBlock> concurrentXml = new ResBundle<LazyXmlBlock>();
+    load(new DocumentLoader(testResources(), 4), concurrentData, concurrentXml);
+
+    Map<ResName, ResBunch.Values> expectedValues = sequentialData.getAllValues();
+    Map<ResName, ResBunch.Values> actualValues = concurrentData.getAllValues();
+    assertThat(actualValues.keySet()).isEqualTo(expectedValues.keySet());
+    for (Map.Entry<ResName, ResBunch.Values> entry : expectedValues.entrySet()) {
+      ResBunch.Values actual = actualValues.get(entry.getKey());
+      assertThat(actual.size()).as(entry.getKey().getFullyQualifiedName()).isEqualTo(entry.getValue().size());
+      for (int i = 0; i < actual.size(); i++) {
+        assertThat(actual.get(i).qualifiers).isEqualTo(entry.getValue().get(i).qualifiers);
+        assertThat(actual.get(i).xmlContext.getXmlFile()).isEqualTo(entry.getValue().get(i).xmlContext.getXmlFile());
+      }
+    }
+    assertThat(concurrentXml.getAllValues().keySet()).isEqualTo(sequentialXml.getAllValues().keySet());
+
+    assertThat(concurrentData.get(new ResName(TEST_PACKAGE, "string", "hello"), "fr").getData()).isEqualTo("Bonjour");
+    assertThat(concurrentXml.get(new ResName(TEST_PACKAGE, "layout", "main"), "")).isNotNull();
+  }
+
+  @Test
+  public void getExecutorService_shouldShareOnePoolPerThreadCount() throws Exception {
+    assertThat(DocumentLoader.getExecutorService(2)).isSameAs(DocumentLoader.getExecutorService(2));
+    assertThat(DocumentLoader.getExecutorService(2)).isNotSameAs(DocumentLoader.getExecutorService(3));
+  }
+
+  private void load(DocumentLoader documentLoader, ResBunch data, ResBundle<LazyXmlBlock> xmlBlocks) throws Exception {
+    documentLoader.load("values",
+        new ValueResourceLoader(data, "/resources/string", "string", ResType.CHAR_SEQUENCE),
+        new ValueResourceLoader(data, "/resources/string-array", "array", ResType.CHAR_SEQUENCE_ARRAY),
+        new AttrResourceLoader(data),
+        new StyleResourceLoader(data));
+    documentLoader.load("res/layout", new OpaqueFileLoader(data, "layout"), new XmlFileLoader(xmlBlocks, "layout"));
+  }
+}
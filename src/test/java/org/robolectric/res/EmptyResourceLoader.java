@@ -5,7 +5,7 @@ public class EmptyResourceLoader extends XResourceLoader {
     super(new ResourceExtractor());
   }
 
-  void doInitialize() {
+  void doInitialize(Category category) {
   }
 
   @Override public boolean providesFor(String namespace) {
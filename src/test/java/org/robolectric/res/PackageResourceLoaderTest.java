@@ -0,0 +1,103 @@
+package org.robolectric.res;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.robolectric.test.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.robolectric.util.TestUtil.TEST_PACKAGE;
+import static org.robolectric.util.TestUtil.lib1Resources;
+import static org.robolectric.util.TestUtil.testResources;
+
+public class PackageResourceLoaderTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldLoadOnlyTheCategoriesQueried() throws Exception {
+    PackageResourceLoader resourceLoader = new PackageResourceLoader(testResources());
+    assertThat(resourceLoader.getLoadedCategories()).isEmpty();
+
+    assertThat(resourceLoader.getValue(new ResName(TEST_PACKAGE, "string", "hello"), "").getData()).isEqualTo("Hello");
+    assertThat(resourceLoader.getLoadedCategories()).containsOnly(XResourceLoader.Category.VALUES);
+
+    assertThat(resourceLoader.getXml(new ResName(TEST_PACKAGE, "layout", "main"), "")).isNotNull();
+    assertThat(resourceLoader.getLoadedCategories())
+        .containsOnly(XResourceLoader.Category.VALUES, XResourceLoader.Category.LAYOUT);
+
+    assertThat(resourceLoader.getMenuNode(new ResName(TEST_PACKAGE, "menu", "test"), "")).isNotNull();
+    assertThat(resourceLoader.getLoadedCategories())
+        .containsOnly(XResourceLoader.Category.VALUES, XResourceLoader.Category.LAYOUT, XResourceLoader.Category.MENU);
+  }
+
+  @Test
+  public void shouldFindColorsFromValuesAndColorStateLists() throws Exception {
+    PackageResourceLoader resourceLoader = new PackageResourceLoader(testResources());
+
+    assertThat(resourceLoader.getValue(new ResName(TEST_PACKAGE, "color", "white"), "").getData()).isEqualTo("#FFFFFF");
+    assertThat(resourceLoader.getValue(new ResName(TEST_PACKAGE, "color", "color_state_list"), "").getResType())
+        .isEqualTo(ResType.COLOR_STATE_LIST);
+    assertThat(resourceLoader.getLoadedCategories())
+        .containsOnly(XResourceLoader.Category.VALUES, XResourceLoader.Category.COLOR);
+  }
+
+  @Test
+  public void shouldCombineColorsFromBothCategoriesOnlyOnce() throws Exception {
+    PackageResourceLoader resourceLoader = new PackageResourceLoader(testResources());
+    ResName white = new ResName(TEST_PACKAGE, "color", "white");
+    XResourceLoader.Category[] categories = XResourceLoader.Category.forValueType("color");
+
+    TypedResource value = resourceLoader.getValue(white, "");
+    ResBunch.Values combinedValues = resourceLoader.getCombinedValues(white, categories);
+    assertThat(resourceLoader.getCombinedValues(white, categories)).isSameAs(combinedValues);
+    assertThat(resourceLoader.getValue(white, "")).isSameAs(value);
+  }
+
+  @Test
+  public void overlay_shouldLoadOnlyTheCategoriesQueriedFromEachLibrary() throws Exception {
+    PackageResourceLoader appResourceLoader = new PackageResourceLoader(testResources());
+    PackageResourceLoader libResourceLoader = new PackageResourceLoader(lib1Resources());
+    OverlayResourceLoader overlayResourceLoader = new OverlayResourceLoader(TEST_PACKAGE,
+        Arrays.asList(appResourceLoader, libResourceLoader));
+
+    assertThat(overlayResourceLoader.getValue(new ResName(TEST_PACKAGE, "string", "hello"), "")).isNotNull();
+
+    assertThat(overlayResourceLoader.getLoadedCategories()).containsOnly(XResourceLoader.Category.VALUES);
+    assertThat(appResourceLoader.getLoadedCategories()).containsOnly(XResourceLoader.Category.VALUES);
+    assertThat(libResourceLoader.getLoadedCategories()).containsOnly(XResourceLoader.Category.VALUES);
+  }
+
+  @Test
+  public void overlay_shouldLetEarlierLibrariesOverrideColorsFromEitherCategory() throws Exception {
+    temporaryFolder.newFile("lib/res/values/colors.xml", "<resources>\n"
+        + "  <color name=\"white\">#FEFEFE</color>\n"
+        + "  <color name=\"color_state_list\">#00FF00</color>\n"
+        + "</resources>\n");
+    File libResDir = temporaryFolder.newFolder("lib/res");
+    ResourcePath libResourcePath = new ResourcePath(org.robolectric.lib1.R.class, "org.robolectric.lib1",
+        Fs.newFile(libResDir), Fs.newFile(temporaryFolder.newFolder("lib/assets")));
+
+    OverlayResourceLoader appFirst = new OverlayResourceLoader(TEST_PACKAGE,
+        Arrays.asList(new PackageResourceLoader(testResources()), new PackageResourceLoader(libResourcePath)));
+    assertThat(appFirst.getValue(new ResName(TEST_PACKAGE, "color", "white"), "").getData()).isEqualTo("#FFFFFF");
+    assertThat(appFirst.getValue(new ResName(TEST_PACKAGE, "color", "color_state_list"), "").getResType())
+        .isEqualTo(ResType.COLOR_STATE_LIST);
+
+    OverlayResourceLoader libFirst = new OverlayResourceLoader(TEST_PACKAGE,
+        Arrays.asList(new PackageResourceLoader(libResourcePath), new PackageResourceLoader(testResources())));
+    assertThat(libFirst.getValue(new ResName(TEST_PACKAGE, "color", "white"), "").getData()).isEqualTo("#FEFEFE");
+    assertThat(libFirst.getValue(new ResName(TEST_PACKAGE, "color", "color_state_list"), "").getData())
+        .isEqualTo("#00FF00");
+  }
+
+  @Test
+  public void shouldNotLoadAnythingForTypesWithNoValues() throws Exception {
+    PackageResourceLoader resourceLoader = new PackageResourceLoader(testResources());
+
+    assertThat(resourceLoader.getValue(new ResName(TEST_PACKAGE, "menu", "test"), "")).isNull();
+    assertThat(resourceLoader.getValue(new ResName(TEST_PACKAGE, "raw", "raw_resource"), "")).isNull();
+    assertThat(resourceLoader.getLoadedCategories()).isEmpty();
+  }
+}
@@ -3,6 +3,8 @@ package org.robolectric.res;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 public class ResBundleTest {
   @Test
@@ -17,6 +19,31 @@ public class ResBundleTest {
         "port-notouch-12key"), "en-GB-port-hdpi-notouch-12key").value);
   }
 
+  @Test
+  public void shouldLetEarlierQualifiersTakePrecedence() throws Exception {
+    ResBundle.Values<String> values = asValues("", "land", "xlarge");
+
+    assertEquals("land", ResBundle.pick(values, "doesnotexist-land-xlarge").value);
+    assertEquals("xlarge", ResBundle.pick(values, "xlarge-land").value);
+    assertEquals("", ResBundle.pick(values, "doesnotexist").value);
+  }
+
+  @Test
+  public void shouldRememberWhatItPickedForEachSetOfQualifiers() throws Exception {
+    ResBundle.Values<String> values = asValues("", "fr", "fr-land");
+
+    assertEquals("fr-land", values.pick("fr-land").value);
+    assertSame(values.pick("fr-land"), values.pick("fr-land"));
+    assertEquals("fr", values.pick("fr-port").value);
+    assertEquals("", values.pick("en").value);
+  }
+
+  @Test
+  public void shouldPickNothingFromNoValues() throws Exception {
+    assertNull(ResBundle.pick(asValues(), "en"));
+    assertNull(new ResBundle<String>().get(new ResName("pkg", "string", "missing"), "en"));
+  }
+
   private ResBundle.Values<String> asValues(String... qualifierses) {
     ResBundle.Values<String> values = new ResBundle.Values<String>();
     for (String qualifiers : qualifierses) {
@@ -0,0 +1,97 @@
+package org.robolectric.res;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.robolectric.test.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.robolectric.util.TestUtil.TEST_PACKAGE;
+import static org.robolectric.util.TestUtil.lib1Resources;
+import static org.robolectric.util.TestUtil.testResources;
+
+public class ResourceTableCacheTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File cacheDir;
+
+  @Before public void setUp() throws Exception {
+    cacheDir = temporaryFolder.newFolder("resource-cache");
+    System.setProperty(ResourceTableCache.CACHE_DIR_PROPERTY, cacheDir.getPath());
+  }
+
+  @After public void tearDown() throws Exception {
+    System.clearProperty(ResourceTableCache.CACHE_DIR_PROPERTY);
+  }
+
+  @Test
+  public void shouldLoadTheSameValuesFromCache() throws Exception {
+    assertValuesLoaded(new PackageResourceLoader(testResources()));
+    assertThat(cacheDir.list()).hasSize(1);
+    assertThat(cacheDir.list()[0]).endsWith(".res");
+
+    assertValuesLoaded(new PackageResourceLoader(testResources()));
+  }
+
+  @Test
+  public void shouldFillBundlesFromCachedEntry() throws Exception {
+    new PackageResourceLoader(testResources()).getValue(new ResName(TEST_PACKAGE, "string", "hello"), "");
+
+    ResourceTableCache cache = new ResourceTableCache(cacheDir);
+    ResBunch data = new ResBunch();
+    ResBundle<PluralResourceLoader.PluralRules> pluralsData = new ResBundle<PluralResourceLoader.PluralRules>();
+    assertThat(cache.load(cache.keyFor(testResources()), testResources(), data, pluralsData)).isTrue();
+
+    assertThat(data.get(new ResName(TEST_PACKAGE, "string", "hello"), "fr").getData()).isEqualTo("Bonjour");
+    assertThat(pluralsData.get(new ResName(TEST_PACKAGE, "plurals", "beer"), "").find(1).getString()).isEqualTo("One beer");
+    assertThat(data.get(new ResName(TEST_PACKAGE, "layout", "main"), "")).isNull();
+  }
+
+  @Test
+  public void shouldIgnoreUnreadableEntries() throws Exception {
+    new PackageResourceLoader(testResources()).getValue(new ResName(TEST_PACKAGE, "string", "hello"), "");
+    FileWriter writer = new FileWriter(new File(cacheDir, cacheDir.list()[0]));
+    try {
+      writer.write("not a resource table");
+    } finally {
+      writer.close();
+    }
+
+    assertValuesLoaded(new PackageResourceLoader(testResources()));
+  }
+
+  @Test
+  public void keyFor_shouldDependOnPackageValues() throws Exception {
+    ResourceTableCache cache = new ResourceTableCache(cacheDir);
+
+    assertThat(cache.keyFor(testResources())).isEqualTo(cache.keyFor(testResources()));
+    assertThat(cache.keyFor(testResources())).isNotEqualTo(cache.keyFor(lib1Resources()));
+  }
+
+  @Test
+  public void loadingCodeHash_shouldHashEveryLoadingClassFile() throws Exception {
+    assertThat(ResourceTableCache.loadingCodeHash()).doesNotContain(".class");
+  }
+
+  private void assertValuesLoaded(PackageResourceLoader resourceLoader) {
+    assertThat(resourceLoader.getValue(new ResName(TEST_PACKAGE, "string", "hello"), "").getData()).isEqualTo("Hello");
+    assertThat(resourceLoader.getValue(new ResName(TEST_PACKAGE, "string", "hello"), "fr").getData()).isEqualTo("Bonjour");
+
+    TypedResource[] greetings = (TypedResource[]) resourceLoader.getValue(new ResName(TEST_PACKAGE, "array", "greetings"), "").getData();
+    assertThat(greetings.length).isGreaterThan(0);
+
+    AttrData itemType = (AttrData) resourceLoader.getValue(new ResName(TEST_PACKAGE, "attr", "itemType"), "").getData();
+    assertThat(itemType.getFormat()).isEqualTo("enum");
+    assertThat(itemType.getValueFor("marsupial")).isEqualTo("0");
+
+    StyleData theme = (StyleData) resourceLoader.getValue(new ResName(TEST_PACKAGE, "style", "Theme_AnotherTheme"), "").getData();
+    assertThat(theme.getParent()).isEqualTo("@style/Theme.Robolectric");
+
+    assertThat(resourceLoader.getPlural(new ResName(TEST_PACKAGE, "plurals", "beer"), 1, "").getString()).isEqualTo("One beer");
+    assertThat(resourceLoader.getValue(new ResName(TEST_PACKAGE, "layout", "main"), "")).isNotNull();
+  }
+}
@@ -0,0 +1,98 @@
+package org.robolectric.res;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class XmlBlockTest {
+  private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+
+  @Test
+  public void shouldKeepElementsAndTextInDocumentOrder() throws Exception {
+    XmlBlock xmlBlock = create("<LinearLayout>\n  <TextView>hi</TextView>\n  <!-- ignored -->\n  <Button/>\n</LinearLayout>");
+
+    int root = xmlBlock.getRoot();
+    assertThat(xmlBlock.getName(root)).isEqualTo("LinearLayout");
+    assertThat(xmlBlock.getParent(root)).isEqualTo(XmlBlock.NO_NODE);
+
+    int whitespace = xmlBlock.getFirstChild(root);
+    assertThat(xmlBlock.isIgnorable(whitespace)).isTrue();
+
+    int textView = xmlBlock.getNextSibling(whitespace);
+    assertThat(xmlBlock.getName(textView)).isEqualTo("TextView");
+    assertThat(xmlBlock.getParent(textView)).isEqualTo(root);
+    int text = xmlBlock.getFirstChild(textView);
+    assertThat(xmlBlock.isElement(text)).isFalse();
+    assertThat(xmlBlock.isIgnorable(text)).isFalse();
+    assertThat(xmlBlock.getTextContent(text)).isEqualTo("hi");
+    assertThat(xmlBlock.getTextContent(textView)).isEqualTo("hi");
+
+    int button = nextElement(xmlBlock, textView);
+    assertThat(xmlBlock.getName(button)).isEqualTo("Button");
+    assertThat(xmlBlock.getFirstChild(button)).isEqualTo(XmlBlock.NO_NODE);
+    assertThat(nextElement(xmlBlock, button)).isEqualTo(XmlBlock.NO_NODE);
+  }
+
+  @Test
+  public void shouldFindAttributesByNamespaceAndName() throws Exception {
+    XmlBlock xmlBlock = create("<item xmlns:android=\"" + ANDROID_NS + "\" android:drawable=\"@drawable/an_image\" plain=\"value\"/>");
+
+    int item = xmlBlock.getRoot();
+    assertThat(xmlBlock.getAttributeValue(item, ANDROID_NS, "drawable")).isEqualTo("@drawable/an_image");
+    assertThat(xmlBlock.getAttributeValue(item, "android:drawable")).isEqualTo("@drawable/an_image");
+    assertThat(xmlBlock.getAttributeValue(item, null, "plain")).isEqualTo("value");
+    assertThat(xmlBlock.getAttributeValue(item, ANDROID_NS, "plain")).isNull();
+    assertThat(xmlBlock.getAttributeValue(item, "android:missing")).isNull();
+
+    assertThat(xmlBlock.getAttributeCount(item)).isEqualTo(3);
+    for (int i = 0; i < xmlBlock.getAttributeCount(item); i++) {
+      if (xmlBlock.getAttributeName(item, i).equals("android:drawable")) {
+        assertThat(xmlBlock.getAttributeNamespace(item, i)).isEqualTo(ANDROID_NS);
+      }
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void shouldRejectMissingAttributeIndexes() throws Exception {
+    XmlBlock xmlBlock = create("<foo bar=\"bar\"/>");
+    xmlBlock.getAttributeValue(xmlBlock.getRoot(), 1);
+  }
+
+  @Test
+  public void shouldInternNames() throws Exception {
+    XmlBlock first = create("<foo bar=\"1\"/>");
+    XmlBlock second = create("<foo bar=\"2\"/>");
+
+    assertThat(first.getName(first.getRoot())).isSameAs(second.getName(second.getRoot()));
+    assertThat(first.getAttributeName(first.getRoot(), 0)).isSameAs(second.getAttributeName(second.getRoot(), 0));
+  }
+
+  @Test
+  public void getElementsByName_shouldFindNestedElements() throws Exception {
+    XmlBlock xmlBlock = create("<selector><item/><group><item/></group></selector>");
+
+    int[] items = xmlBlock.getElementsByName("item");
+    assertThat(items).hasSize(2);
+    assertThat(xmlBlock.getParent(items[0])).isEqualTo(xmlBlock.getRoot());
+    assertThat(xmlBlock.getName(xmlBlock.getParent(items[1]))).isEqualTo("group");
+    assertThat(xmlBlock.getElementsByName("layer-list")).isEmpty();
+  }
+
+  private int nextElement(XmlBlock xmlBlock, int node) {
+    do {
+      node = xmlBlock.getNextSibling(node);
+    } while (node != XmlBlock.NO_NODE && !xmlBlock.isElement(node));
+    return node;
+  }
+
+  private XmlBlock create(String xml) throws Exception {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+    return XmlBlock.create(document, null);
+  }
+}
@@ -50,20 +50,20 @@ public class XmlFileLoaderTest {
   private XmlFileLoader xmlFileLoader;
   private XmlFileBuilder xmlFileBuilder;
   private XmlResourceParserImpl parser;
-  private ResBundle<Document> resBundle;
+  private ResBundle<LazyXmlBlock> resBundle;
   private ResourceIndex resourceIndex;
 
   @Before
   public void setUp() throws Exception {
-    resBundle = new ResBundle<Document>();
+    resBundle = new ResBundle<LazyXmlBlock>();
     xmlFileLoader = new XmlFileLoader(resBundle, "xml");
     new DocumentLoader(testResources()).load("xml", xmlFileLoader);
     xmlFileBuilder = new XmlFileBuilder();
 
     ResName resName = new ResName(TEST_PACKAGE, "xml", "preferences");
-    Document document = resBundle.get(resName, "");
+    XmlBlock xmlBlock = resBundle.get(resName, "").get();
     resourceIndex = new MergedResourceIndex(new ResourceExtractor(testResources()), new ResourceExtractor());
-    parser = (XmlResourceParserImpl) xmlFileBuilder.getXml(document, resName.getFullyQualifiedName(), "packageName", resourceIndex);
+    parser = (XmlResourceParserImpl) xmlFileBuilder.getXml(xmlBlock, resName.getFullyQualifiedName(), "packageName", resourceIndex);
   }
 
   @After